@@ -1,8 +1,11 @@
+import db.DBConnection;
 import ui.MainFrame;
 import javax.swing.*;
 
 public class Main {
     public static void main(String[] args) {
+        // Schema upgrades must finish before any panel queries the database
+        DBConnection.migrateSchema();
         SwingUtilities.invokeLater(() -> {
             MainFrame frame = new MainFrame();
             try {
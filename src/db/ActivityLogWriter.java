@@ -0,0 +1,192 @@
+package db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background writer for activity_log. Events are queued without blocking the
+ * caller (safe on the EDT) and written with JDBC batch inserts every
+ * BATCH_SIZE events or FLUSH_INTERVAL_MS, whichever comes first.
+ */
+public class ActivityLogWriter {
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 200;
+    private static final long FLUSH_INTERVAL_MS = 500;
+    private static final long RETRY_DELAY_MS = 2000;
+    private static final int MAX_RETRIES = 5;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO activity_log (student_id, exam_id, event_time, event_type, description) VALUES (?, ?, ?, ?, ?)";
+
+    private static ActivityLogWriter instance;
+
+    private final BlockingQueue<LogEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private ActivityLogWriter() {
+        writerThread = new Thread(this::run, "activity-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        DBConnection.addShutdownFlush(() -> flush(3000));
+    }
+
+    public static synchronized ActivityLogWriter getInstance() {
+        if (instance == null) {
+            instance = new ActivityLogWriter();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues an event without blocking. Returns false if the queue is full and
+     * the event was dropped (the DB is far behind; blocking the UI would be worse).
+     */
+    public boolean log(int studentId, int examId, String eventType, String description) {
+        LogEvent event = new LogEvent(studentId, examId, System.currentTimeMillis(), eventType, description, null);
+        if (queue.offer(event)) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+        if (dropped.incrementAndGet() % 100 == 1) {
+            System.err.println("Activity log queue full; dropped " + dropped.get() + " event(s) so far");
+        }
+        return false;
+    }
+
+    /** Asks the writer to flush what it has now, without waiting. Safe on the EDT. */
+    public void requestFlush() {
+        queue.offer(LogEvent.flushMarker(null));
+    }
+
+    /**
+     * Flushes every event queued before this call and waits for it to reach the
+     * database. Must not be called on the EDT. Returns false on timeout.
+     */
+    public boolean flush(long timeoutMillis) {
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            if (!queue.offer(LogEvent.flushMarker(done), timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public long getEnqueuedCount() { return enqueued.get(); }
+    public long getWrittenCount() { return written.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getBatchCount() { return batches.get(); }
+    public int getQueueSize() { return queue.size(); }
+
+    private void run() {
+        List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+        List<CountDownLatch> waiters = new ArrayList<>();
+        while (true) {
+            try {
+                LogEvent first = queue.take();
+                long deadline = System.currentTimeMillis() + FLUSH_INTERVAL_MS;
+                LogEvent next = first;
+                // Collect until the batch is full, the interval elapses, or someone asks for a flush
+                while (next != null) {
+                    if (next.isFlushMarker()) {
+                        if (next.flushed != null) waiters.add(next.flushed);
+                        break;
+                    }
+                    batch.add(next);
+                    if (batch.size() >= BATCH_SIZE) break;
+                    long remaining = deadline - System.currentTimeMillis();
+                    next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                }
+                if (!batch.isEmpty()) {
+                    writeWithRetry(batch);
+                    batch.clear();
+                }
+                for (CountDownLatch latch : waiters) latch.countDown();
+                waiters.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void writeWithRetry(List<LogEvent> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(batch);
+                written.addAndGet(batch.size());
+                batches.incrementAndGet();
+                return;
+            } catch (SQLException | IOException e) {
+                if (attempt >= MAX_RETRIES) {
+                    dropped.addAndGet(batch.size());
+                    System.err.println("Giving up on " + batch.size() + " activity log event(s): " + e.getMessage());
+                    return;
+                }
+                Thread.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+    }
+
+    private void writeBatch(List<LogEvent> batch) throws SQLException, IOException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            conn.setAutoCommit(false);
+            for (LogEvent event : batch) {
+                ps.setInt(1, event.studentId);
+                ps.setInt(2, event.examId);
+                ps.setTimestamp(3, new Timestamp(event.eventTime));
+                ps.setString(4, event.eventType);
+                ps.setString(5, event.description);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        }
+        for (LogEvent event : batch) StatsService.onActivityWritten(event.studentId, event.eventTime);
+    }
+
+    /** One queued activity_log row, or a flush marker when eventType is null. */
+    private static class LogEvent {
+        final int studentId;
+        final int examId;
+        final long eventTime;
+        final String eventType;
+        final String description;
+        final CountDownLatch flushed;
+
+        LogEvent(int studentId, int examId, long eventTime, String eventType, String description, CountDownLatch flushed) {
+            this.studentId = studentId;
+            this.examId = examId;
+            this.eventTime = eventTime;
+            this.eventType = eventType;
+            this.description = description;
+            this.flushed = flushed;
+        }
+
+        static LogEvent flushMarker(CountDownLatch flushed) {
+            return new LogEvent(0, 0, 0, null, null, flushed);
+        }
+
+        boolean isFlushMarker() {
+            return eventType == null;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one attempt's answers in student_answers, one row per question, for
+ * re-grading, item analysis and disputes. Changes are coalesced in memory
+ * (only a question's latest letter matters) and written as one multi-row
+ * upsert every FLUSH_INTERVAL_MS; on submit, whatever is left goes into the
+ * submit transaction through {@link #writePending}.
+ */
+public class AnswerStore {
+    private static final long FLUSH_INTERVAL_MS = 5000;
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "answer-store-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int studentId;
+    private final int examId;
+    private final Map<Integer, Change> dirty = new LinkedHashMap<>(); // guarded by this
+    private final Object writeLock = new Object();
+    private final ScheduledFuture<?> task;
+    private long sequence = 0;
+    private boolean clearFirst;
+
+    /** Answers not yet written, as taken by {@link #writePending}; pass back to {@link #committed}. */
+    public static final class Batch {
+        private final Map<Integer, Change> changes;
+        private final boolean cleared;
+
+        Batch(Map<Integer, Change> changes, boolean cleared) {
+            this.changes = changes;
+            this.cleared = cleared;
+        }
+    }
+
+    private static final class Change {
+        final String letter;
+        final long time;
+        final long sequence;
+
+        Change(String letter, long time, long sequence) {
+            this.letter = letter;
+            this.time = time;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * @param freshAttempt true when the attempt starts from nothing, so rows left
+     *                     from an earlier sitting of this exam are removed first
+     */
+    public AnswerStore(int studentId, int examId, boolean freshAttempt) {
+        this.studentId = studentId;
+        this.examId = examId;
+        this.clearFirst = freshAttempt;
+        task = FLUSHER.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /** Notes an answer change; cheap enough for the EDT. */
+    public synchronized void record(int questionId, String letter) {
+        dirty.put(questionId, new Change(letter, System.currentTimeMillis(), ++sequence));
+    }
+
+    /** Writes pending answers on a connection of its own. */
+    public void flush() throws SQLException, IOException {
+        synchronized (writeLock) {
+            Batch batch = take();
+            if (batch.changes.isEmpty() && !batch.cleared) return;
+            try (Connection conn = DBConnection.getConnection()) {
+                write(conn, batch);
+            }
+            committed(batch);
+        }
+    }
+
+    /**
+     * Writes pending answers with the caller's connection, typically inside the
+     * submit transaction, and stops the periodic flush. Call {@link #committed}
+     * once that commits; if it rolls back, the answers stay pending for close().
+     */
+    public Batch writePending(Connection conn) throws SQLException {
+        task.cancel(false);
+        synchronized (writeLock) {
+            Batch batch = take();
+            write(conn, batch);
+            return batch;
+        }
+    }
+
+    /** Forgets the answers in {@code batch} unless they changed again since it was taken. */
+    public synchronized void committed(Batch batch) {
+        if (batch.cleared) clearFirst = false;
+        for (Map.Entry<Integer, Change> e : batch.changes.entrySet()) {
+            Change current = dirty.get(e.getKey());
+            if (current != null && current.sequence == e.getValue().sequence) dirty.remove(e.getKey());
+        }
+    }
+
+    /** Stops the periodic flush and writes what is left. Blocks; keep it off the EDT. */
+    public void close() {
+        task.cancel(false);
+        flushQuietly();
+    }
+
+    private synchronized Batch take() {
+        return new Batch(new LinkedHashMap<>(dirty), clearFirst);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | IOException e) {
+            System.err.println("Answer store flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    private void write(Connection conn, Batch batch) throws SQLException {
+        if (batch.cleared) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "DELETE FROM student_answers WHERE exam_id = ? AND student_id = ?")) {
+                ps.setInt(1, examId);
+                ps.setInt(2, studentId);
+                ps.executeUpdate();
+            }
+        }
+        List<Map.Entry<Integer, Change>> rows = new ArrayList<>(batch.changes.entrySet());
+        for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+            int to = Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT);
+            StringBuilder sql = new StringBuilder(
+                "INSERT INTO student_answers (exam_id, student_id, question_id, answer, answered_at) VALUES ");
+            for (int i = from; i < to; i++) sql.append(i == from ? "(?,?,?,?,?)" : ",(?,?,?,?,?)");
+            sql.append(" ON DUPLICATE KEY UPDATE answer=VALUES(answer), answered_at=VALUES(answered_at)");
+            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                int p = 1;
+                for (int i = from; i < to; i++) {
+                    Map.Entry<Integer, Change> row = rows.get(i);
+                    ps.setInt(p++, examId);
+                    ps.setInt(p++, studentId);
+                    ps.setInt(p++, row.getKey());
+                    ps.setString(p++, row.getValue().letter);
+                    ps.setTimestamp(p++, new Timestamp(row.getValue().time));
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+}
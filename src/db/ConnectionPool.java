@@ -0,0 +1,361 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded JDBC connection pool. Callers get a proxy whose close() hands the
+ * physical connection back to the pool instead of tearing it down, so the
+ * usual try-with-resources pattern keeps working unchanged.
+ */
+public class ConnectionPool {
+    /** Upper bounds (ms) of the wait-time histogram buckets; the last bucket is open-ended. */
+    public static final long[] WAIT_BUCKETS_MS = { 1, 5, 20, 100, 500, 2000 };
+
+    private final String url;
+    private final Properties connectionProps = new Properties();
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final long validateAfterMillis;
+    private final int validationTimeoutSeconds;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(WAIT_BUCKETS_MS.length + 1);
+
+    public ConnectionPool(Properties props) {
+        this.url = props.getProperty("DB_URL");
+        this.connectionProps.setProperty("user", props.getProperty("DB_USER", ""));
+        this.connectionProps.setProperty("password", props.getProperty("DB_PASSWORD", ""));
+        // Let Connector/J collapse executeBatch() into multi-row INSERTs
+        this.connectionProps.setProperty("rewriteBatchedStatements",
+                props.getProperty("DB_REWRITE_BATCHED_STATEMENTS", "true"));
+        this.maxSize = Math.max(1, intProp(props, "POOL_MAX_SIZE", 10));
+        this.minIdle = Math.min(maxSize, Math.max(0, intProp(props, "POOL_MIN_IDLE", 2)));
+        this.maxWaitMillis = intProp(props, "POOL_MAX_WAIT_MS", 5000);
+        this.idleTimeoutMillis = intProp(props, "POOL_IDLE_TIMEOUT_MS", 300_000);
+        this.leakThresholdMillis = intProp(props, "POOL_LEAK_THRESHOLD_MS", 60_000);
+        this.validateAfterMillis = intProp(props, "POOL_VALIDATE_AFTER_MS", 30_000);
+        this.validationTimeoutSeconds = Math.max(1, intProp(props, "POOL_VALIDATION_TIMEOUT_S", 2));
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, 30_000));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static int intProp(Properties props, String key, int def) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) return def;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /** Borrows a connection, waiting at most POOL_MAX_WAIT_MS for one to become free. */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + maxWaitMillis + " ms waiting for a database connection ("
+                        + active.size() + "/" + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait((System.nanoTime() - start) / 1_000_000L);
+
+        try {
+            PooledConnection pc = takeIdle();
+            if (pc == null) {
+                pc = new PooledConnection(DriverManager.getConnection(url, connectionProps));
+                created.incrementAndGet();
+            }
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            pc.leakReported = false;
+            active.add(pc);
+            borrowed.incrementAndGet();
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Pops the most recently used idle connection, discarding ones that fail validation. */
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) return null;
+            if (System.currentTimeMillis() - pc.lastReturned < validateAfterMillis || isValid(pc.physical)) {
+                return pc;
+            }
+            destroy(pc);
+        }
+    }
+
+    private boolean isValid(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        active.remove(pc);
+        boolean reusable = !closed;
+        try {
+            pc.closeStatements();
+            if (reusable && !pc.physical.getAutoCommit()) {
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+            reusable = reusable && !pc.physical.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (reusable) {
+            pc.lastReturned = System.currentTimeMillis();
+            synchronized (idle) {
+                idle.addFirst(pc);
+            }
+        } else {
+            destroy(pc);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pc) {
+        destroyed.incrementAndGet();
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {
+            // Already broken; nothing else to do
+        }
+    }
+
+    private void recordWait(long millis) {
+        int bucket = 0;
+        while (bucket < WAIT_BUCKETS_MS.length && millis >= WAIT_BUCKETS_MS[bucket]) bucket++;
+        waitHistogram.incrementAndGet(bucket);
+    }
+
+    /** Evicts idle connections past POOL_IDLE_TIMEOUT_MS (keeping POOL_MIN_IDLE) and reports leaks. */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > minIdle) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastReturned > idleTimeoutMillis) {
+                    it.remove();
+                    evicted.add(pc);
+                }
+            }
+        }
+        for (PooledConnection pc : evicted) destroy(pc);
+
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pc : active) {
+                if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMillis) {
+                    pc.leakReported = true;
+                    leaksDetected.incrementAndGet();
+                    System.err.println("Possible connection leak: held for " + (now - pc.borrowedAt) + " ms");
+                    if (pc.borrowSite != null) pc.borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /** Closes idle connections and stops the housekeeper; borrowed ones are closed when returned. */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        List<PooledConnection> drained;
+        synchronized (idle) {
+            drained = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PooledConnection pc : drained) destroy(pc);
+    }
+
+    public Stats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        long[] histogram = new long[waitHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) histogram[i] = waitHistogram.get(i);
+        return new Stats(active.size(), idleCount, maxSize, permits.getQueueLength(), created.get(),
+                destroyed.get(), borrowed.get(), timeouts.get(), leaksDetected.get(), histogram);
+    }
+
+    /** Immutable snapshot of pool counters, safe to read from the EDT. */
+    public static class Stats {
+        public final int active;
+        public final int idle;
+        public final int maxSize;
+        public final int waiting;
+        public final long created;
+        public final long destroyed;
+        public final long borrowed;
+        public final long timeouts;
+        public final long leaks;
+        public final long[] waitHistogram;
+
+        Stats(int active, int idle, int maxSize, int waiting, long created, long destroyed,
+              long borrowed, long timeouts, long leaks, long[] waitHistogram) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.waiting = waiting;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.borrowed = borrowed;
+            this.timeouts = timeouts;
+            this.leaks = leaks;
+            this.waitHistogram = waitHistogram;
+        }
+
+        /** Smallest bucket bound (ms) that covers the given fraction of borrows, or -1 if open-ended. */
+        public long waitPercentileMillis(double fraction) {
+            long total = 0;
+            for (long c : waitHistogram) total += c;
+            if (total == 0) return 0;
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < waitHistogram.length; i++) {
+                seen += waitHistogram[i];
+                if (seen >= target) return i < WAIT_BUCKETS_MS.length ? WAIT_BUCKETS_MS[i] : -1;
+            }
+            return -1;
+        }
+    }
+
+    /** A physical connection plus the bookkeeping the pool keeps about it. */
+    private class PooledConnection {
+        final Connection physical;
+        final List<Statement> openStatements = new ArrayList<>();
+        volatile long borrowedAt;
+        volatile long lastReturned = System.currentTimeMillis();
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+
+        /** Callers often forget to close statements; close them before the next borrower sees this connection. */
+        void closeStatements() {
+            synchronized (openStatements) {
+                for (Statement st : openStatements) {
+                    try {
+                        st.close();
+                    } catch (SQLException ignored) {
+                        // Statement already unusable
+                    }
+                }
+                openStatements.clear();
+            }
+        }
+    }
+
+    /** Proxy handler: close() returns to the pool, and the handle is dead afterwards. */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned = false;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pc.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) throw new SQLException("Connection has already been returned to the pool");
+            try {
+                Object result = method.invoke(pc.physical, args);
+                if (result instanceof Statement) {
+                    synchronized (pc.openStatements) {
+                        pc.openStatements.add((Statement) result);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
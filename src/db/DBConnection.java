@@ -4,43 +4,113 @@ package db;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 import javax.swing.JOptionPane;
 
 public class DBConnection {
-    private static Connection connection;
+    private static ConnectionPool pool;
+    private static Properties config;
+    private static final List<Runnable> shutdownFlushes = new ArrayList<>();
+    private static boolean shutdownHookInstalled;
 
+    /** Borrows a pooled connection; closing it returns it to the pool. */
     public static Connection getConnection() throws SQLException, IOException {
-        if (connection == null || connection.isClosed()) {
+        return getPool().borrow();
+    }
+
+    /** Contents of db_config.properties, loaded once; other services read their settings from it too. */
+    public static synchronized Properties getConfig() throws IOException {
+        if (config == null) {
             Properties props = new Properties();
-            FileInputStream fis = new FileInputStream("db_config.properties");
-            props.load(fis);
-            String url = props.getProperty("DB_URL");
-            String user = props.getProperty("DB_USER");
-            String password = props.getProperty("DB_PASSWORD");
-            connection = DriverManager.getConnection(url, user, password);
+            try (FileInputStream fis = new FileInputStream("db_config.properties")) {
+                props.load(fis);
+            }
+            config = props;
+        }
+        return config;
+    }
+
+    /** Lazily creates the pool from db_config.properties (see ConnectionPool for the POOL_* keys). */
+    public static synchronized ConnectionPool getPool() throws IOException {
+        if (pool == null) {
+            pool = new ConnectionPool(getConfig());
+            installShutdownHook();
+        }
+        return pool;
+    }
+
+    /**
+     * Registers work that must reach the database before the JVM exits (queued
+     * log events, screenshot rows). Everything registered runs from the one
+     * shutdown hook, in registration order, and only then is the pool closed;
+     * separate hooks would run concurrently and could find the pool gone.
+     */
+    public static synchronized void addShutdownFlush(Runnable flush) {
+        shutdownFlushes.add(flush);
+        installShutdownHook();
+    }
+
+    private static void installShutdownHook() {
+        if (shutdownHookInstalled) return;
+        shutdownHookInstalled = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(DBConnection::flushAndShutdown, "db-shutdown"));
+    }
+
+    private static void flushAndShutdown() {
+        List<Runnable> flushes;
+        synchronized (DBConnection.class) {
+            flushes = new ArrayList<>(shutdownFlushes); // Flushes borrow connections; don't hold the lock
+        }
+        for (Runnable flush : flushes) {
+            try {
+                flush.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
         }
-        return connection;
+        shutdown();
     }
 
+    /** Current pool metrics, or null if no connection has been requested yet. */
+    public static synchronized ConnectionPool.Stats getPoolStats() {
+        return pool != null ? pool.getStats() : null;
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /** Upgrades the schema (see SchemaMigrator); run at startup before any panel queries the database. */
+    public static void migrateSchema() {
+        try (Connection conn = getConnection()) {
+            SchemaMigrator.migrate(conn);
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            showDatabaseError(e);
+        }
+    }
+
+    /**
+     * Upgrades the schema and seeds a sample exam into an empty database. Not
+     * run at startup; no account is created, so the first admin is added by
+     * hand with a password of the operator's choosing.
+     */
     public static void initializeDatabase() {
         try (Connection conn = getConnection()) {
-            // Create admin user if not exists
-           PreparedStatement stmt = conn.prepareStatement(
-    "INSERT IGNORE INTO users (username, password_hash, full_name, role, email) VALUES (?, ?, ?, ?, ?)");
-stmt.setString(1, "admin01");
-stmt.setString(2, util.PasswordUtils.hashPassword("admin123")); // Hashes the plain text password
-stmt.setString(3, "Feleke Eshetu");
-stmt.setString(4, "admin");
-stmt.setString(5, "admin01@example.com");
-stmt.executeUpdate();
-            
-            // Create sample exam if none exists
-            stmt = conn.prepareStatement(
-                "INSERT IGNORE INTO exams (title, duration_minutes) VALUES (?, ?)");
-            stmt.setString(1, "Java Fundamentals");
-            stmt.setInt(2, 30);
-            stmt.executeUpdate();
+            SchemaMigrator.migrate(conn);
+
+            // Create sample exam if none exists (exams has no unique key, so IGNORE alone would add one per start)
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT IGNORE INTO exams (title, duration_minutes) SELECT ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM exams)")) {
+                stmt.setString(1, "Java Fundamentals");
+                stmt.setInt(2, 30);
+                stmt.executeUpdate();
+            }
         } catch (SQLException | IOException e) {
             showDatabaseError(e);
         }
@@ -0,0 +1,327 @@
+package db;
+
+import model.Exam;
+import ui.ExamTakingPanel.QuestionData;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of exam snapshots: the exam row (including the password
+ * hashes) and its question list, shared by the entry/exit password
+ * prompts, the question loader and LAN exam serving.
+ *
+ * Every write to an exam or its questions bumps exams.version (see
+ * {@link #bumpVersion}) and, once committed, drops the local copy (see
+ * {@link #invalidate}). A cached snapshot is trusted for VALIDATE_MS after it
+ * was last checked; after that one "SELECT version" decides whether it is
+ * still current, so an edit made on another machine is seen within that
+ * window and an edit made here is seen at once.
+ *
+ * Exams starting soon are prefetched in the background, so pressing
+ * "Start Exam" usually needs no query at all.
+ */
+public final class ExamCache {
+    private static final int MAX_ENTRIES = 64;
+    private static final long VALIDATE_MS = 15_000;
+    private static final long PREFETCH_PERIOD_S = 60;
+    private static final int PREFETCH_AHEAD_MINUTES = 30;
+
+    private static volatile ExamCache instance;
+
+    private final ScheduledExecutorService prefetcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "exam-cache-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Access-ordered, so iteration order is least recently used first
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** One exam as it was at a given version; never modified after construction. */
+    public static final class Snapshot {
+        public final int examId;
+        public final int version;
+        public final String title;
+        public final String description;
+        public final String startTime;
+        public final String endTime;
+        public final int durationMinutes;
+        public final int createdBy;
+        public final String entryPasswordHash;
+        public final String exitPasswordHash;
+        private final List<QuestionData> questions;
+
+        Snapshot(int examId, int version, String title, String description, String startTime, String endTime,
+                 int durationMinutes, int createdBy, String entryPasswordHash, String exitPasswordHash,
+                 List<QuestionData> questions) {
+            this.examId = examId;
+            this.version = version;
+            this.title = title;
+            this.description = description;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.durationMinutes = durationMinutes;
+            this.createdBy = createdBy;
+            this.entryPasswordHash = entryPasswordHash;
+            this.exitPasswordHash = exitPasswordHash;
+            this.questions = Collections.unmodifiableList(questions);
+        }
+
+        /** Questions in id order. */
+        public List<QuestionData> getQuestions() {
+            return questions;
+        }
+
+        /** A fresh mutable Exam with every field of this snapshot. */
+        public Exam toExam() {
+            return new Exam(examId, title, description, startTime, endTime, durationMinutes, createdBy,
+                    entryPasswordHash, exitPasswordHash);
+        }
+    }
+
+    /** Counters since start-up. */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long revalidations;
+        public final long evictions;
+        public final int size;
+
+        Stats(long hits, long misses, long revalidations, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.revalidations = revalidations;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private static final class Entry {
+        final Snapshot snapshot;
+        volatile long validatedAt;
+
+        Entry(Snapshot snapshot, long validatedAt) {
+            this.snapshot = snapshot;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    private ExamCache() {
+        prefetcher.scheduleWithFixedDelay(this::prefetchUpcoming, 0, PREFETCH_PERIOD_S, TimeUnit.SECONDS);
+    }
+
+    public static ExamCache getInstance() {
+        if (instance == null) {
+            synchronized (ExamCache.class) {
+                if (instance == null) instance = new ExamCache();
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * The exam with its questions, or null if it no longer exists. May query
+     * the database, so call it off the EDT where the exam might not be cached.
+     */
+    public Snapshot get(int examId) throws SQLException, IOException {
+        Entry e = lookup(examId);
+        long now = System.currentTimeMillis();
+        if (e != null) {
+            if (now - e.validatedAt < VALIDATE_MS) {
+                hits.incrementAndGet();
+                return e.snapshot;
+            }
+            try (Connection conn = DBConnection.getConnection()) {
+                Integer version = currentVersion(conn, examId);
+                if (version == null) {
+                    invalidate(examId);
+                    misses.incrementAndGet();
+                    return null;
+                }
+                if (version == e.snapshot.version) {
+                    e.validatedAt = now;
+                    revalidations.incrementAndGet();
+                    hits.incrementAndGet();
+                    return e.snapshot;
+                }
+                misses.incrementAndGet();
+                return load(conn, examId);
+            }
+        }
+        misses.incrementAndGet();
+        try (Connection conn = DBConnection.getConnection()) {
+            return load(conn, examId);
+        }
+    }
+
+    /**
+     * Marks an exam as changed: bumps exams.version on the caller's connection
+     * (inside its transaction, if any). Call after any write to the exam row or
+     * its questions, and call {@link #invalidate} once that write is committed.
+     */
+    public static void bumpVersion(Connection conn, int examId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE exams SET version = version + 1 WHERE id = ?")) {
+            ps.setInt(1, examId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Drops the local copy. Call only after the write is committed: before
+     * that, a concurrent load would read the old row and keep it for up to
+     * VALIDATE_MS.
+     */
+    public static void invalidate(int examId) {
+        ExamCache cache = instance;
+        if (cache == null) return;
+        synchronized (cache.entries) {
+            cache.entries.remove(examId);
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.get(), misses.get(), revalidations.get(), evictions.get(), size);
+    }
+
+    /** The stats of the running cache, or null if nothing has used it yet. */
+    public static Stats statsIfRunning() {
+        ExamCache cache = instance;
+        return cache == null ? null : cache.getStats();
+    }
+
+    private Entry lookup(int examId) {
+        synchronized (entries) {
+            return entries.get(examId);
+        }
+    }
+
+    private void put(Snapshot snapshot, long validatedAt) {
+        synchronized (entries) {
+            entries.put(snapshot.examId, new Entry(snapshot, validatedAt));
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > MAX_ENTRIES && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private Snapshot load(Connection conn, int examId) throws SQLException {
+        Snapshot snapshot = null;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT id, version, title, description, start_time, end_time, duration_minutes, created_by, "
+                + "entry_password, exit_password FROM exams WHERE id = ?")) {
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    snapshot = new Snapshot(
+                            rs.getInt("id"),
+                            rs.getInt("version"),
+                            rs.getString("title"),
+                            rs.getString("description"),
+                            rs.getString("start_time"),
+                            rs.getString("end_time"),
+                            rs.getInt("duration_minutes"),
+                            rs.getInt("created_by"),
+                            rs.getString("entry_password"),
+                            rs.getString("exit_password"),
+                            loadQuestions(conn, examId));
+                }
+            }
+        }
+        if (snapshot == null) {
+            invalidate(examId);
+            return null;
+        }
+        put(snapshot, System.currentTimeMillis());
+        return snapshot;
+    }
+
+    private static Integer currentVersion(Connection conn, int examId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT version FROM exams WHERE id = ?")) {
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private static List<QuestionData> loadQuestions(Connection conn, int examId) throws SQLException {
+        List<QuestionData> questions = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT id, question_text, option_a, option_b, option_c, option_d, correct_option "
+                + "FROM questions WHERE exam_id = ? ORDER BY id")) {
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    questions.add(new QuestionData(
+                            rs.getInt("id"),
+                            rs.getString("question_text"),
+                            rs.getString("option_a"),
+                            rs.getString("option_b"),
+                            rs.getString("option_c"),
+                            rs.getString("option_d"),
+                            rs.getString("correct_option")));
+                }
+            }
+        }
+        return questions;
+    }
+
+    private void prefetchUpcoming() {
+        List<Integer> upcoming = new ArrayList<>();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT id FROM exams WHERE start_time BETWEEN NOW() - INTERVAL 5 MINUTE "
+                     + "AND NOW() + INTERVAL ? MINUTE ORDER BY start_time")) {
+            ps.setInt(1, PREFETCH_AHEAD_MINUTES);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && upcoming.size() < MAX_ENTRIES / 2) upcoming.add(rs.getInt(1));
+            }
+            for (int examId : upcoming) {
+                Entry e = lookup(examId);
+                long now = System.currentTimeMillis();
+                if (e != null) {
+                    if (now - e.validatedAt < VALIDATE_MS) continue;
+                    Integer version = currentVersion(conn, examId);
+                    if (version != null && version == e.snapshot.version) {
+                        e.validatedAt = now;
+                        continue;
+                    }
+                }
+                load(conn, examId);
+            }
+        } catch (SQLException | IOException e) {
+            // Prefetch is best effort; the next get() loads on demand
+            System.err.println("Exam prefetch failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * The exams a student may take now or later: assigned to them in
+ * student_exam (or not assigned to anyone, which keeps exams open to all
+ * when assignments are not used), not yet ended and not already submitted.
+ * The filtering is one indexed query on the server, and rows are handed
+ * over as they stream in so the list can show the first cards at once.
+ */
+public final class ExamCatalog {
+    private static final String SQL =
+            "SELECT e.id, e.title, e.description, e.start_time, e.end_time, e.duration_minutes "
+          + "FROM exams e "
+          + "WHERE (e.end_time IS NULL OR e.end_time >= NOW()) "
+          + "AND (EXISTS (SELECT 1 FROM student_exam se WHERE se.exam_id = e.id AND se.student_id = ?) "
+          + "OR NOT EXISTS (SELECT 1 FROM student_exam se WHERE se.exam_id = e.id)) "
+          + "AND NOT EXISTS (SELECT 1 FROM results r WHERE r.exam_id = e.id AND r.student_id = ?) "
+          + "ORDER BY e.start_time, e.id";
+
+    /** The columns an exam card shows. */
+    public static final class Entry {
+        public final int examId;
+        public final String title;
+        public final String description;
+        public final String startTime;
+        public final String endTime;
+        public final int durationMinutes;
+
+        Entry(int examId, String title, String description, String startTime, String endTime, int durationMinutes) {
+            this.examId = examId;
+            this.title = title;
+            this.description = description;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.durationMinutes = durationMinutes;
+        }
+    }
+
+    private ExamCatalog() {
+    }
+
+    /**
+     * Streams the student's exams, soonest first, to the sink on the calling
+     * thread; returns how many were delivered.
+     */
+    public static int forStudent(int studentId, Consumer<Entry> sink, BooleanSupplier cancelled)
+            throws SQLException, IOException {
+        int count = 0;
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Stream rows so the first card does not wait for the last
+            ps.setInt(1, studentId);
+            ps.setInt(2, studentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (cancelled.getAsBoolean()) {
+                        ps.cancel();
+                        throw new CancellationException();
+                    }
+                    sink.accept(new Entry(
+                            rs.getInt(1),
+                            rs.getString(2),
+                            rs.getString(3),
+                            rs.getString(4),
+                            rs.getString(5),
+                            rs.getInt(6)));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,105 @@
+package db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import util.GradingEngine;
+
+/**
+ * Re-scores every stored attempt of an exam against its current answer key,
+ * e.g. after a mis-keyed question is corrected. Works from results.answer_vector;
+ * results saved before answers were stored are left alone.
+ */
+public final class ResultRegrader {
+
+    public static class Outcome {
+        public final int regraded;
+        public final int changed;
+        public final int skipped;
+
+        Outcome(int regraded, int changed, int skipped) {
+            this.regraded = regraded;
+            this.changed = changed;
+            this.skipped = skipped;
+        }
+    }
+
+    private ResultRegrader() {
+    }
+
+    public static Outcome regrade(int examId) throws SQLException, IOException {
+        try (Connection conn = DBConnection.getConnection()) {
+            GradingEngine.AnswerKey key = loadKey(conn, examId);
+            List<Integer> ids = new ArrayList<>();
+            List<Integer> oldScores = new ArrayList<>();
+            List<Integer> oldTotals = new ArrayList<>();
+            List<long[]> attempts = new ArrayList<>();
+            int skipped = 0;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id, score, total_questions, answer_vector FROM results WHERE exam_id = ?")) {
+                ps.setInt(1, examId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        byte[] vector = rs.getBytes(4);
+                        long[] packed;
+                        try {
+                            packed = vector != null ? key.decode(vector) : null;
+                        } catch (IllegalArgumentException e) {
+                            System.err.println("Unreadable answer vector for result " + rs.getInt(1) + ": " + e.getMessage());
+                            packed = null;
+                        }
+                        if (packed == null) {
+                            skipped++;
+                            continue;
+                        }
+                        ids.add(rs.getInt(1));
+                        oldScores.add(rs.getInt(2));
+                        oldTotals.add(rs.getInt(3));
+                        attempts.add(packed);
+                    }
+                }
+            }
+            int[] scores = GradingEngine.scoreAll(key, attempts);
+            int total = key.getQuestionCount();
+            int changed = 0;
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE results SET score = ?, total_questions = ? WHERE id = ?")) {
+                for (int i = 0; i < scores.length; i++) {
+                    if (scores[i] == oldScores.get(i) && total == oldTotals.get(i)) continue;
+                    ps.setInt(1, scores[i]);
+                    ps.setInt(2, total);
+                    ps.setInt(3, ids.get(i));
+                    ps.addBatch();
+                    changed++;
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return new Outcome(scores.length, changed, skipped);
+        }
+    }
+
+    /** The exam's current answer key from questions. */
+    public static GradingEngine.AnswerKey loadKey(Connection conn, int examId) throws SQLException {
+        Map<Integer, String> correct = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id, correct_option FROM questions WHERE exam_id = ?")) {
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) correct.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return new GradingEngine.AnswerKey(correct);
+    }
+}
@@ -0,0 +1,184 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Brings an existing database up to the current schema. Each migration has a
+ * version number and is recorded in schema_version once applied, so it runs
+ * at most once per database. MySQL commits DDL implicitly, so a migration
+ * cannot be rolled back; instead its statements are written so a re-run after
+ * a crash halfway through is harmless (an index that already exists, or is
+ * already gone, is skipped).
+ *
+ * Several machines can start at once against the same server, so the run is
+ * serialized with a named server lock.
+ */
+public final class SchemaMigrator {
+    private static final String LOCK_NAME = "offline_exam_proctor.schema";
+    private static final int LOCK_TIMEOUT_S = 60;
+
+    // MySQL error codes that mean "already done" for a re-run statement
+    private static final int ER_DUP_KEYNAME = 1061;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_CANT_DROP_FIELD_OR_KEY = 1091;
+
+    private static final Migration[] MIGRATIONS = {
+        new Migration(1, "activity_log: append-only event_time, indexes for log filters and dashboard windows",
+            // event_time is when the event happened; ON UPDATE would rewrite it on any later edit
+            "ALTER TABLE activity_log MODIFY event_time timestamp NOT NULL DEFAULT current_timestamp()",
+            // Log viewer: exam (+ student) filter, newest first
+            "CREATE INDEX idx_activity_exam_student_time ON activity_log (exam_id, student_id, event_time)",
+            // Log viewer: student-only filter
+            "CREATE INDEX idx_activity_student_time ON activity_log (student_id, event_time)",
+            // Unfiltered log view and the dashboard's "last N days / minutes" counts. InnoDB appends the
+            // primary key, so this is really (event_time, id): the log viewer's keyset order, no filesort
+            "CREATE INDEX idx_activity_time ON activity_log (event_time)"),
+        new Migration(2, "results: indexes for result filters, student history and dashboard window",
+            "CREATE INDEX idx_results_exam_student_time ON results (exam_id, student_id, taken_at)",
+            "CREATE INDEX idx_results_student_time ON results (student_id, taken_at)",
+            "CREATE INDEX idx_results_time ON results (taken_at)",
+            // The single-column foreign key indexes are now left prefixes of the ones above
+            "DROP INDEX student_id ON results",
+            "DROP INDEX exam_id ON results"),
+        new Migration(3, "activity_log: index for the log viewer's exam-only filter",
+            "CREATE INDEX idx_activity_exam_time ON activity_log (exam_id, event_time)"),
+        new Migration(4, "student_answers table and per-attempt answer vector on results",
+            "CREATE TABLE IF NOT EXISTS student_answers ("
+                + "exam_id int(11) NOT NULL, "
+                + "student_id int(11) NOT NULL, "
+                + "question_id int(11) NOT NULL, "
+                + "answer char(1) DEFAULT NULL, "
+                + "answered_at timestamp NOT NULL DEFAULT current_timestamp(), "
+                + "PRIMARY KEY (exam_id, student_id, question_id), "
+                + "KEY idx_answers_student (student_id), "
+                + "CONSTRAINT student_answers_ibfk_1 FOREIGN KEY (student_id) REFERENCES users (id), "
+                + "CONSTRAINT student_answers_ibfk_2 FOREIGN KEY (exam_id) REFERENCES exams (id)"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=latin1",
+            // Packed answers of the graded attempt (see GradingEngine.AnswerKey.encode), for re-grading
+            "ALTER TABLE results ADD COLUMN answer_vector varbinary(8192) DEFAULT NULL"),
+        new Migration(5, "exams.version for cache invalidation",
+            // Bumped on every write to an exam or its questions (see ExamCache.bumpVersion)
+            "ALTER TABLE exams ADD COLUMN version int(11) NOT NULL DEFAULT 0"),
+        new Migration(6, "indexes for the student's exam catalog (see ExamCatalog)",
+            // Range scan over exams that have not ended yet
+            "CREATE INDEX idx_exams_end_time ON exams (end_time)",
+            // Assignment probes per exam; also serves the exam_id foreign key
+            "CREATE INDEX idx_student_exam_exam_student ON student_exam (exam_id, student_id)",
+            "DROP INDEX exam_id ON student_exam"),
+        new Migration(7, "screenshots table for exam screen capture (see ScreenshotService)",
+            "CREATE TABLE IF NOT EXISTS screenshots ("
+                + "id int(11) NOT NULL AUTO_INCREMENT, "
+                + "student_id int(11) NOT NULL, "
+                + "exam_id int(11) NOT NULL, "
+                + "image_path varchar(255) NOT NULL, "
+                + "captured_at timestamp NOT NULL DEFAULT current_timestamp(), "
+                + "frame_type enum('KEYFRAME','DELTA','DUPLICATE') NOT NULL DEFAULT 'KEYFRAME', "
+                + "change_score float NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (id), "
+                + "KEY exam_student_time (exam_id, student_id, captured_at), "
+                + "CONSTRAINT screenshots_ibfk_1 FOREIGN KEY (student_id) REFERENCES users (id), "
+                + "CONSTRAINT screenshots_ibfk_2 FOREIGN KEY (exam_id) REFERENCES exams (id)"
+                + ") ENGINE=InnoDB DEFAULT CHARSET=latin1",
+            // A table created from an older copy of mysql_schema.sql lacks the capture columns and key
+            "ALTER TABLE screenshots ADD COLUMN frame_type enum('KEYFRAME','DELTA','DUPLICATE') NOT NULL DEFAULT 'KEYFRAME'",
+            "ALTER TABLE screenshots ADD COLUMN change_score float NOT NULL DEFAULT 0",
+            "CREATE INDEX exam_student_time ON screenshots (exam_id, student_id, captured_at)"),
+    };
+
+    private SchemaMigrator() {
+    }
+
+    /** Applies every migration this database has not seen yet; returns how many ran. */
+    public static int migrate(Connection conn) throws SQLException {
+        if (!acquireLock(conn)) {
+            throw new SQLException("Timed out waiting for another client to finish upgrading the schema");
+        }
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                         + "version int(11) NOT NULL, "
+                         + "description varchar(255) NOT NULL, "
+                         + "applied_at timestamp NOT NULL DEFAULT current_timestamp(), "
+                         + "PRIMARY KEY (version)) ENGINE=InnoDB DEFAULT CHARSET=latin1");
+            }
+            Set<Integer> applied = appliedVersions(conn);
+            int count = 0;
+            for (Migration m : MIGRATIONS) {
+                if (applied.contains(m.version)) continue;
+                apply(conn, m);
+                count++;
+            }
+            return count;
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    private static void apply(Connection conn, Migration m) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (String sql : m.statements) {
+                try {
+                    st.execute(sql);
+                } catch (SQLException e) {
+                    int code = e.getErrorCode();
+                    if (code != ER_DUP_KEYNAME && code != ER_DUP_FIELDNAME && code != ER_CANT_DROP_FIELD_OR_KEY) {
+                        throw new SQLException("Schema migration " + m.version + " failed at: " + sql, e);
+                    }
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.description);
+            ps.executeUpdate();
+        }
+        System.err.println("Applied schema migration " + m.version + ": " + m.description);
+    }
+
+    private static Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) versions.add(rs.getInt(1));
+        }
+        return versions;
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_S);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            // The lock is released with the session anyway
+        }
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final String[] statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+    }
+}
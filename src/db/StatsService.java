@@ -0,0 +1,247 @@
+package db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dashboard counters kept in memory instead of being counted on every visit.
+ * Writes made by this process bump them as they happen (the on* hooks, which
+ * do nothing until the admin dashboard has started the service); a background
+ * pass every RECONCILE_INTERVAL_MS recounts from the database, which picks up
+ * writes from other machines and corrects any drift. {@link #snapshot()} only
+ * reads atomics and concurrent maps, so it is cheap enough for a UI timer.
+ *
+ * The 7-day windows are kept in hourly buckets, so their oldest edge is
+ * accurate to the hour.
+ */
+public final class StatsService {
+    private static final long RECONCILE_INTERVAL_MS = 60_000;
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long RECENT_WINDOW_MS = 7 * 24 * HOUR_MS;
+    private static final long SESSION_WINDOW_MS = 10 * 60_000L;
+
+    private static volatile StatsService instance;
+
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stats-reconcile");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong students = new AtomicLong();
+    private final AtomicLong questions = new AtomicLong();
+    private final HourlyWindow results = new HourlyWindow();
+    private final HourlyWindow logs = new HourlyWindow();
+    private final Map<Integer, Long> lastSeen = new ConcurrentHashMap<>(); // student id -> newest activity time
+    private volatile long[] examWindows = new long[0]; // start, end pairs of exams not yet over
+    private volatile long reconciledAt = 0;
+
+    /** Point-in-time dashboard numbers; immutable. */
+    public static class Snapshot {
+        public final long totalStudents;
+        public final int activeExams;
+        public final long totalQuestions;
+        public final long recentResults;
+        public final long systemLogs;
+        public final int activeSessions;
+        public final long reconciledAt; // 0 until the first database pass has finished
+
+        Snapshot(long totalStudents, int activeExams, long totalQuestions, long recentResults, long systemLogs,
+                 int activeSessions, long reconciledAt) {
+            this.totalStudents = totalStudents;
+            this.activeExams = activeExams;
+            this.totalQuestions = totalQuestions;
+            this.recentResults = recentResults;
+            this.systemLogs = systemLogs;
+            this.activeSessions = activeSessions;
+            this.reconciledAt = reconciledAt;
+        }
+
+        public boolean isReady() {
+            return reconciledAt > 0;
+        }
+    }
+
+    private StatsService() {
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, 0, RECONCILE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Starts the service on first use; the first recount runs in the background. */
+    public static StatsService getInstance() {
+        StatsService s = instance;
+        if (s == null) {
+            synchronized (StatsService.class) {
+                if (instance == null) instance = new StatsService();
+                s = instance;
+            }
+        }
+        return s;
+    }
+
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        long[] windows = examWindows;
+        int activeExams = 0;
+        for (int i = 0; i < windows.length; i += 2) {
+            if (windows[i] <= now && now <= windows[i + 1]) activeExams++;
+        }
+        int sessions = 0;
+        for (Iterator<Long> it = lastSeen.values().iterator(); it.hasNext(); ) {
+            if (it.next() >= now - SESSION_WINDOW_MS) sessions++;
+            else it.remove();
+        }
+        return new Snapshot(students.get(), activeExams, questions.get(), results.sum(now - RECENT_WINDOW_MS),
+                logs.sum(now - RECENT_WINDOW_MS), sessions, reconciledAt);
+    }
+
+    /** Recounts everything soon, for writes whose effect is not known (imports, bulk changes). */
+    public static void requestReconcile() {
+        StatsService s = instance;
+        if (s != null) s.reconciler.execute(s::reconcileQuietly);
+    }
+
+    public static void onStudentsChanged(int delta) {
+        StatsService s = instance;
+        if (s != null) s.students.addAndGet(delta);
+    }
+
+    public static void onQuestionsChanged(int delta) {
+        StatsService s = instance;
+        if (s != null) s.questions.addAndGet(delta);
+    }
+
+    /** An exam was created or its schedule edited; only the (small) list of exam windows is reloaded. */
+    public static void onExamsChanged() {
+        StatsService s = instance;
+        if (s != null) s.reconciler.execute(() -> {
+            try (Connection conn = DBConnection.getConnection()) {
+                s.loadExamWindows(conn);
+            } catch (SQLException | IOException e) {
+                System.err.println("Could not reload exam schedule for stats: " + e.getMessage());
+            }
+        });
+    }
+
+    public static void onResultsRecorded(int count, long time) {
+        StatsService s = instance;
+        if (s != null) s.results.add(time, count);
+    }
+
+    public static void onActivityWritten(int studentId, long time) {
+        StatsService s = instance;
+        if (s == null) return;
+        s.logs.add(time, 1);
+        s.lastSeen.merge(studentId, time, Math::max);
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (SQLException | IOException e) {
+            System.err.println("Stats reconciliation failed, keeping current counters: " + e.getMessage());
+        }
+    }
+
+    /** Replaces every counter with a fresh count; each query is an index range scan or a small table count. */
+    private void reconcile() throws SQLException, IOException {
+        try (Connection conn = DBConnection.getConnection()) {
+            students.set(count(conn, "SELECT COUNT(*) FROM users WHERE role = 'student'"));
+            questions.set(count(conn, "SELECT COUNT(*) FROM questions"));
+            loadExamWindows(conn);
+            results.replace(buckets(conn, "SELECT UNIX_TIMESTAMP(taken_at) DIV 3600, COUNT(*) FROM results "
+                    + "WHERE taken_at >= NOW() - INTERVAL 7 DAY GROUP BY 1"));
+            logs.replace(buckets(conn, "SELECT UNIX_TIMESTAMP(event_time) DIV 3600, COUNT(*) FROM activity_log "
+                    + "WHERE event_time >= NOW() - INTERVAL 7 DAY GROUP BY 1"));
+            Map<Integer, Long> seen = new ConcurrentHashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement("SELECT student_id, MAX(event_time) FROM activity_log "
+                    + "WHERE event_time >= NOW() - INTERVAL 10 MINUTE GROUP BY student_id");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) seen.put(rs.getInt(1), rs.getTimestamp(2).getTime());
+            }
+            lastSeen.keySet().retainAll(seen.keySet());
+            for (Map.Entry<Integer, Long> e : seen.entrySet()) lastSeen.merge(e.getKey(), e.getValue(), Math::max);
+        }
+        reconciledAt = System.currentTimeMillis();
+    }
+
+    private void loadExamWindows(Connection conn) throws SQLException {
+        List<Long> windows = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT start_time, end_time FROM exams WHERE start_time IS NOT NULL AND end_time >= NOW()");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Timestamp start = rs.getTimestamp(1);
+                Timestamp end = rs.getTimestamp(2);
+                windows.add(start.getTime());
+                windows.add(end.getTime());
+            }
+        }
+        long[] packed = new long[windows.size()];
+        for (int i = 0; i < packed.length; i++) packed[i] = windows.get(i);
+        examWindows = packed;
+    }
+
+    private static long count(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static Map<Long, Long> buckets(Connection conn, String sql) throws SQLException {
+        Map<Long, Long> buckets = new ConcurrentHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) buckets.put(rs.getLong(1), rs.getLong(2));
+        }
+        return buckets;
+    }
+
+    /** Event counts per hour over a sliding window; old hours are dropped as new ones are added. */
+    private static final class HourlyWindow {
+        private volatile Map<Long, LongAdder> hours = new ConcurrentHashMap<>();
+
+        void add(long time, int count) {
+            Map<Long, LongAdder> current = hours;
+            long hour = time / HOUR_MS;
+            LongAdder adder = current.get(hour);
+            if (adder == null) {
+                long oldest = (System.currentTimeMillis() - RECENT_WINDOW_MS) / HOUR_MS;
+                current.keySet().removeIf(k -> k < oldest);
+                adder = current.computeIfAbsent(hour, h -> new LongAdder());
+            }
+            adder.add(count);
+        }
+
+        long sum(long from) {
+            long oldest = from / HOUR_MS;
+            long total = 0;
+            for (Map.Entry<Long, LongAdder> e : hours.entrySet()) {
+                if (e.getKey() >= oldest) total += e.getValue().sum();
+            }
+            return total;
+        }
+
+        void replace(Map<Long, Long> counts) {
+            Map<Long, LongAdder> fresh = new ConcurrentHashMap<>();
+            for (Map.Entry<Long, Long> e : counts.entrySet()) {
+                LongAdder adder = new LongAdder();
+                adder.add(e.getValue());
+                fresh.put(e.getKey(), adder);
+            }
+            hours = fresh;
+        }
+    }
+}
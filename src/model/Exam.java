@@ -1,6 +1,7 @@
 package model;
 
-public class Exam {
+public class Exam implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
     private int id;
     private String title;
     private String description;
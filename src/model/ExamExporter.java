@@ -1,46 +1,68 @@
 package model;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.sql.*;
 
 public class ExamExporter {
-    public static JSONObject getExamAsJson(int examId, Connection conn) throws Exception {
-        JSONObject examJson = new JSONObject();
+    /**
+     * Writes the exam as JSON: the exam fields first, then the "questions"
+     * array streamed straight from the result set, so memory does not grow
+     * with the question bank and an importer can write the exam row before
+     * its questions. Returns the number of questions written.
+     */
+    public static int writeExam(int examId, Connection conn, Writer out) throws SQLException, IOException {
+        JSONWriter json = new JSONWriter(out);
+        json.object();
 
         // Get exam info
-        PreparedStatement ps = conn.prepareStatement("SELECT * FROM exams WHERE id=?");
-        ps.setInt(1, examId);
-        ResultSet rs = ps.executeQuery();
-        if (rs.next()) {
-            examJson.put("id", rs.getInt("id"));
-            examJson.put("title", rs.getString("title"));
-            examJson.put("description", rs.getString("description"));
-            examJson.put("start_time", rs.getString("start_time"));
-            examJson.put("end_time", rs.getString("end_time"));
-            examJson.put("duration_minutes", rs.getInt("duration_minutes"));
-            examJson.put("entry_password", rs.getString("entry_password"));
-            examJson.put("exit_password", rs.getString("exit_password"));
+        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM exams WHERE id=?")) {
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Exam " + examId + " does not exist");
+                json.key("id").value(rs.getInt("id"));
+                json.key("title").value(rs.getString("title"));
+                json.key("description").value(rs.getString("description"));
+                json.key("start_time").value(rs.getString("start_time"));
+                json.key("end_time").value(rs.getString("end_time"));
+                json.key("duration_minutes").value(rs.getInt("duration_minutes"));
+                // Present even when unset, for import compatibility
+                json.key("entry_password").value(nonNull(rs.getString("entry_password")));
+                json.key("exit_password").value(nonNull(rs.getString("exit_password")));
+            }
         }
 
         // Get questions
-        JSONArray questionsArr = new JSONArray();
-        ps = conn.prepareStatement("SELECT * FROM questions WHERE exam_id=?");
-        ps.setInt(1, examId);
-        rs = ps.executeQuery();
-        while (rs.next()) {
-            JSONObject q = new JSONObject();
-            q.put("id", rs.getInt("id"));
-            q.put("question_text", rs.getString("question_text"));
-            q.put("option_a", rs.getString("option_a"));
-            q.put("option_b", rs.getString("option_b"));
-            q.put("option_c", rs.getString("option_c"));
-            q.put("option_d", rs.getString("option_d"));
-            q.put("correct_option", rs.getString("correct_option"));
-            questionsArr.put(q);
+        json.key("questions").array();
+        int count = 0;
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT id, question_text, option_a, option_b, option_c, option_d, correct_option "
+                + "FROM questions WHERE exam_id=? ORDER BY id",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Stream rows instead of buffering the bank
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    json.object()
+                        .key("id").value(rs.getInt("id"))
+                        .key("question_text").value(rs.getString("question_text"))
+                        .key("option_a").value(rs.getString("option_a"))
+                        .key("option_b").value(rs.getString("option_b"))
+                        .key("option_c").value(rs.getString("option_c"))
+                        .key("option_d").value(rs.getString("option_d"))
+                        .key("correct_option").value(rs.getString("correct_option"))
+                        .endObject();
+                    count++;
+                }
+            }
         }
-        examJson.put("questions", questionsArr);
+        json.endArray();
+        json.endObject();
+        return count;
+    }
 
-        return examJson;
+    private static String nonNull(String s) {
+        return s == null ? "" : s;
     }
 }
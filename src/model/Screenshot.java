@@ -6,6 +6,8 @@ public class Screenshot {
     private int examId;
     private String imagePath;
     private String capturedAt;
+    private String frameType;   // KEYFRAME, DELTA or DUPLICATE
+    private double changeScore; // Fraction of screen tiles changed since the previous capture
 
     // Getters and setters
     public int getId() { return id; }
@@ -18,4 +20,8 @@ public class Screenshot {
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
     public String getCapturedAt() { return capturedAt; }
     public void setCapturedAt(String capturedAt) { this.capturedAt = capturedAt; }
+    public String getFrameType() { return frameType; }
+    public void setFrameType(String frameType) { this.frameType = frameType; }
+    public double getChangeScore() { return changeScore; }
+    public void setChangeScore(double changeScore) { this.changeScore = changeScore; }
 }
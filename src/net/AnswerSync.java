@@ -0,0 +1,188 @@
+package net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import util.ProctorEventBus;
+
+/**
+ * Streams an exam client's progress to the LAN server over one long-lived
+ * connection. Answer changes are coalesced in memory (last value per question
+ * wins) and sent with the position and remaining time once per heartbeat, so
+ * the EDT only ever touches a map. After a reconnect the full answer set is
+ * resent, so the proctor's view heals itself.
+ */
+public class AnswerSync implements AutoCloseable {
+    private static final long HEARTBEAT_MS = 2000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int MAX_CHANGES_PER_MESSAGE = 4000;
+    private static final int MAX_PENDING_EVENTS = 64;
+
+    private static final ScheduledExecutorService SENDER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "answer-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String host;
+    private final int port;
+    private final int examId;
+    private final int studentId;
+    private final String passwordHash; // Signs the hello (see ExamCodec.encodeSyncHello)
+    private final ScheduledFuture<?> task;
+
+    private final Map<Integer, Byte> allAnswers = new TreeMap<>();
+    private final Map<Integer, Byte> changed = new TreeMap<>();
+    private final ByteArrayOutputStream events = new ByteArrayOutputStream();
+    private int timeLeftSeconds;
+    private int currentIndex;
+    private boolean fullResync = true;
+    private boolean closed = false;
+
+    // Only touched on the sender thread
+    private Socket socket;
+    private OutputStream out;
+    private long nextConnectAttempt = 0;
+
+    public AnswerSync(String host, int port, int examId, int studentId, String passwordHash) {
+        this.host = host;
+        this.port = port;
+        this.examId = examId;
+        this.studentId = studentId;
+        this.passwordHash = passwordHash;
+        task = SENDER.scheduleWithFixedDelay(this::heartbeat, 0, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Records an answer change; a null or empty answer clears it. Cheap enough for the EDT. */
+    public synchronized void answerChanged(int questionId, String answer) {
+        byte letter = (byte) (answer == null || answer.isEmpty() ? 0 : answer.charAt(0));
+        if (letter == 0) {
+            allAnswers.remove(questionId);
+        } else {
+            allAnswers.put(questionId, letter);
+        }
+        changed.put(questionId, letter);
+    }
+
+    /**
+     * Queues a proctor event and sends it right away rather than at the next
+     * heartbeat. Events raised while the server is unreachable are kept up to
+     * MAX_PENDING_EVENTS and go out after reconnecting.
+     */
+    public void event(ProctorEventBus.Type type) {
+        synchronized (this) {
+            if (closed || events.size() >= MAX_PENDING_EVENTS) return;
+            events.write(type.code);
+        }
+        SENDER.execute(this::heartbeat);
+    }
+
+    public synchronized void updatePosition(int timeLeftSeconds, int currentIndex) {
+        this.timeLeftSeconds = timeLeftSeconds;
+        this.currentIndex = currentIndex;
+    }
+
+    private void heartbeat() {
+        if (socket == null && !connect()) return;
+        ExamCodec.SyncUpdate[] messages;
+        synchronized (this) {
+            if (closed) return;
+            messages = drain(fullResync ? allAnswers : changed, events.toByteArray());
+            changed.clear();
+            events.reset();
+            fullResync = false;
+        }
+        try {
+            for (ExamCodec.SyncUpdate message : messages) {
+                out.write(ExamCodec.encodeSyncUpdate(message));
+            }
+            out.flush();
+        } catch (IOException e) {
+            disconnect();
+        }
+    }
+
+    /** Splits pending changes into messages that fit the 2-byte length prefix. */
+    private ExamCodec.SyncUpdate[] drain(Map<Integer, Byte> source, byte[] pendingEvents) {
+        int count = source.size();
+        int messageCount = Math.max(1, (count + MAX_CHANGES_PER_MESSAGE - 1) / MAX_CHANGES_PER_MESSAGE);
+        ExamCodec.SyncUpdate[] messages = new ExamCodec.SyncUpdate[messageCount];
+        Iterator<Map.Entry<Integer, Byte>> it = source.entrySet().iterator();
+        for (int m = 0; m < messageCount; m++) {
+            int n = Math.min(MAX_CHANGES_PER_MESSAGE, count - m * MAX_CHANGES_PER_MESSAGE);
+            int[] ids = new int[n];
+            byte[] letters = new byte[n];
+            for (int i = 0; i < n; i++) {
+                Map.Entry<Integer, Byte> e = it.next();
+                ids[i] = e.getKey();
+                letters[i] = e.getValue();
+            }
+            messages[m] = new ExamCodec.SyncUpdate(timeLeftSeconds, currentIndex, ids, letters,
+                    m == 0 ? pendingEvents : new byte[0]);
+        }
+        return messages;
+    }
+
+    private boolean connect() {
+        long now = System.currentTimeMillis();
+        if (now < nextConnectAttempt) return false;
+        nextConnectAttempt = now + RECONNECT_DELAY_MS;
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            s.setTcpNoDelay(true);
+            OutputStream o = s.getOutputStream();
+            byte[] hello = ExamCodec.encodeSyncHello(examId, studentId, passwordHash);
+            byte[] request = new byte[1 + hello.length];
+            request[0] = ExamCodec.OP_SYNC;
+            System.arraycopy(hello, 0, request, 1, hello.length);
+            o.write(request);
+            o.flush();
+            socket = s;
+            out = o;
+            synchronized (this) {
+                fullResync = true;
+            }
+            return true;
+        } catch (IOException e) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // Nothing to clean up
+            }
+            return false;
+        }
+    }
+
+    private void disconnect() {
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException ignored) {
+            // Already broken
+        }
+        socket = null;
+        out = null;
+        synchronized (this) {
+            fullResync = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        task.cancel(false);
+        SENDER.execute(this::disconnect);
+    }
+}
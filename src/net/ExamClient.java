@@ -0,0 +1,59 @@
+package net;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import model.ExamTransfer;
+
+/** Student-side calls to an {@link ExamServer}; one short connection per request. */
+public final class ExamClient {
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private ExamClient() {
+    }
+
+    public static ExamTransfer fetchExam(String host, int port) throws IOException {
+        try (Socket socket = connect(host, port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(ExamCodec.OP_FETCH_EXAM);
+            out.flush();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            return ExamCodec.read(in);
+        }
+    }
+
+    /**
+     * Sends the answers, signed with the logged-in student's password hash,
+     * and blocks until the server has stored the result. Not for the EDT.
+     */
+    public static ExamCodec.Ack submit(String host, int port, ExamCodec.Submission submission, String passwordHash)
+            throws IOException {
+        byte[] frame = ExamCodec.encodeSubmission(submission, passwordHash);
+        try (Socket socket = connect(host, port)) {
+            OutputStream out = socket.getOutputStream();
+            byte[] request = new byte[1 + frame.length];
+            request[0] = ExamCodec.OP_SUBMIT;
+            System.arraycopy(frame, 0, request, 1, frame.length);
+            out.write(request);
+            out.flush();
+            return ExamCodec.readAck(new BufferedInputStream(socket.getInputStream()));
+        }
+    }
+
+    private static Socket connect(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import model.Exam;
+import model.ExamTransfer;
+import ui.ExamTakingPanel.QuestionData;
+
+/**
+ * Versioned binary wire format for exams sent over the LAN, replacing Java
+ * serialization (which is bulky, tied to class layouts and unsafe to run on
+ * untrusted input).
+ *
+ * A client opens a connection, sends one op byte and gets one frame back:
+ * OP_FETCH_EXAM returns the exam; OP_SUBMIT is followed by a submission frame
+ * and answered with an ack frame. A submission body ends with an HMAC-SHA256
+ * of the preceding bytes keyed by the student's stored password hash, so the
+ * server can tell the sender logged in as that student. OP_SYNC keeps the connection open for a
+ * stream of small length-prefixed messages: a hello (exam id, student id,
+ * signed the same way as a submission) followed by heartbeats with the position, remaining time and any answers
+ * changed since the previous heartbeat.
+ *
+ * Frame: magic(4) version(1) flags(1) bodyLength(4) storedLength(4) crc32(4) body
+ * Exam body: string table (varint count, then varint length + UTF-8 bytes each),
+ *        exam fields, varint question count, then per question a zigzag varint
+ *        id delta and string-table references. Reference 0 means null.
+ */
+public final class ExamCodec {
+    public static final int MAGIC = 0x4558414D; // "EXAM"
+    public static final int SUBMIT_MAGIC = 0x5355424D; // "SUBM"
+    public static final int ACK_MAGIC = 0x5341434B; // "SACK"
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 18;
+    public static final int FLAG_DEFLATE = 1;
+
+    /** First byte a client sends after connecting: what it wants from the server. */
+    public static final byte OP_FETCH_EXAM = 1;
+    public static final byte OP_SUBMIT = 2;
+    public static final byte OP_SYNC = 3;
+
+    /** Sync messages carry a 2-byte length prefix; this is the largest body it allows. */
+    public static final int MAX_SYNC_MESSAGE = 0xFFFF;
+
+    /** Upper bound on an accepted body; anything larger is treated as garbage. */
+    private static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+
+    private ExamCodec() {
+    }
+
+    public static byte[] encode(ExamTransfer transfer, boolean compress) {
+        StringTable strings = new StringTable();
+        Buffer refs = new Buffer(1024);
+        Exam exam = transfer.exam;
+        refs.putVarint(exam.getId());
+        refs.putVarint(strings.ref(exam.getTitle()));
+        refs.putVarint(strings.ref(exam.getDescription()));
+        refs.putVarint(strings.ref(exam.getStartTime()));
+        refs.putVarint(strings.ref(exam.getEndTime()));
+        refs.putVarint(exam.getDurationMinutes());
+        refs.putVarint(exam.getCreatedBy());
+        refs.putVarint(strings.ref(exam.getEntryPassword()));
+        refs.putVarint(strings.ref(exam.getExitPassword()));
+
+        List<QuestionData> questions = transfer.questions != null ? transfer.questions : new ArrayList<QuestionData>();
+        refs.putVarint(questions.size());
+        int previousId = 0;
+        for (QuestionData q : questions) {
+            refs.putVarint(zigzag(q.id - previousId));
+            previousId = q.id;
+            refs.putVarint(strings.ref(q.question));
+            refs.putVarint(strings.ref(q.optionA));
+            refs.putVarint(strings.ref(q.optionB));
+            refs.putVarint(strings.ref(q.optionC));
+            refs.putVarint(strings.ref(q.optionD));
+            refs.putVarint(strings.ref(q.answer));
+        }
+
+        Buffer body = new Buffer(refs.size + strings.byteSize + 16);
+        strings.writeTo(body);
+        body.put(refs.data, 0, refs.size);
+
+        return frame(MAGIC, body, compress);
+    }
+
+    /** Reads one exam frame from the stream; throws IOException on any malformed or tampered input. */
+    public static ExamTransfer read(InputStream in) throws IOException {
+        return decodeBody(ByteBuffer.wrap(readBody(in, MAGIC)));
+    }
+
+    public static ExamTransfer decode(byte[] frame) throws IOException {
+        return read(new ByteArrayInputStream(frame));
+    }
+
+    /** A student's answers as sent to the LAN server; letters keyed by question id. */
+    public static class Submission {
+        public final int examId;
+        public final int studentId;
+        public final Map<Integer, String> answers;
+        private byte[] signed; // Decoded submissions: the body bytes the proof covers
+        private byte[] proof;
+
+        public Submission(int examId, int studentId, Map<Integer, String> answers) {
+            this.examId = examId;
+            this.studentId = studentId;
+            this.answers = answers;
+        }
+
+        /** True if the frame carried a proof made with this password hash. */
+        public boolean isSignedBy(String passwordHash) {
+            return verifyProof(proof, signed, passwordHash);
+        }
+    }
+
+    /** The first sync message; the student id is only to be trusted once {@link #isSignedBy} holds. */
+    public static class SyncHello {
+        public final int examId;
+        public final int studentId;
+        private final byte[] signed;
+        private final byte[] proof;
+
+        SyncHello(int examId, int studentId, byte[] signed, byte[] proof) {
+            this.examId = examId;
+            this.studentId = studentId;
+            this.signed = signed;
+            this.proof = proof;
+        }
+
+        /** True if the hello carried a proof made with this password hash. */
+        public boolean isSignedBy(String passwordHash) {
+            return verifyProof(proof, signed, passwordHash);
+        }
+    }
+
+    /** Server reply to a submission; sent only after the result is committed (or definitely failed). */
+    public static class Ack {
+        public final boolean ok;
+        public final int score;
+        public final int totalQuestions;
+        public final String message;
+
+        public Ack(boolean ok, int score, int totalQuestions, String message) {
+            this.ok = ok;
+            this.score = score;
+            this.totalQuestions = totalQuestions;
+            this.message = message;
+        }
+    }
+
+    /** Encodes the submission, signed with the student's password hash (see Submission#isSignedBy). */
+    public static byte[] encodeSubmission(Submission submission, String passwordHash) {
+        Buffer body = new Buffer(16 + submission.answers.size() * 3);
+        body.putVarint(submission.examId);
+        body.putVarint(submission.studentId);
+        List<Integer> ids = new ArrayList<>(submission.answers.keySet());
+        Collections.sort(ids);
+        body.putVarint(ids.size());
+        int previousId = 0;
+        for (int id : ids) {
+            String letter = submission.answers.get(id);
+            body.putVarint(zigzag(id - previousId));
+            previousId = id;
+            body.putByte(letter == null || letter.isEmpty() ? 0 : letter.charAt(0));
+        }
+        if (passwordHash != null && !passwordHash.isEmpty()) {
+            byte[] proof = hmac(passwordHash, body.data, body.size);
+            body.putVarint(proof.length);
+            body.put(proof, 0, proof.length);
+        }
+        return frame(SUBMIT_MAGIC, body, false);
+    }
+
+    /** Decodes a complete submission frame (header included). */
+    public static Submission decodeSubmission(byte[] frame) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(readBody(new ByteArrayInputStream(frame), SUBMIT_MAGIC));
+        try {
+            int examId = getVarint(in);
+            int studentId = getVarint(in);
+            int count = getVarint(in);
+            if (count < 0 || count > in.remaining()) throw new IOException("Corrupt answer count");
+            Map<Integer, String> answers = new HashMap<>(count * 2);
+            int previousId = 0;
+            for (int i = 0; i < count; i++) {
+                int id = previousId + unzigzag(getRawVarint(in));
+                previousId = id;
+                byte letter = in.get();
+                if (letter != 0) answers.put(id, String.valueOf((char) letter));
+            }
+            Submission submission = new Submission(examId, studentId, answers);
+            if (in.hasRemaining()) {
+                submission.signed = Arrays.copyOf(in.array(), in.position());
+                int len = getVarint(in);
+                if (len < 0 || len > in.remaining()) throw new IOException("Corrupt submission proof");
+                submission.proof = new byte[len];
+                in.get(submission.proof);
+            }
+            return submission;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated submission frame", e);
+        }
+    }
+
+    public static byte[] encodeAck(Ack ack) {
+        byte[] message = (ack.message != null ? ack.message : "").getBytes(StandardCharsets.UTF_8);
+        Buffer body = new Buffer(16 + message.length);
+        body.putByte(ack.ok ? 1 : 0);
+        body.putVarint(ack.score);
+        body.putVarint(ack.totalQuestions);
+        body.putVarint(message.length);
+        body.put(message, 0, message.length);
+        return frame(ACK_MAGIC, body, false);
+    }
+
+    public static Ack readAck(InputStream in) throws IOException {
+        ByteBuffer body = ByteBuffer.wrap(readBody(in, ACK_MAGIC));
+        try {
+            boolean ok = body.get() == 1;
+            int score = getVarint(body);
+            int total = getVarint(body);
+            int len = getVarint(body);
+            if (len < 0 || len > body.remaining()) throw new IOException("Corrupt acknowledgement");
+            String message = new String(body.array(), body.position(), len, StandardCharsets.UTF_8);
+            return new Ack(ok, score, total, message);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated acknowledgement", e);
+        }
+    }
+
+    /** One heartbeat from an exam client: where the student is, plus changed answers. */
+    public static class SyncUpdate {
+        public final int timeLeftSeconds;
+        public final int currentIndex;
+        public final int[] questionIds;
+        public final byte[] letters; // 0 = answer cleared
+        public final byte[] events; // ProctorEventBus.Type codes raised since the last heartbeat
+
+        public SyncUpdate(int timeLeftSeconds, int currentIndex, int[] questionIds, byte[] letters) {
+            this(timeLeftSeconds, currentIndex, questionIds, letters, new byte[0]);
+        }
+
+        public SyncUpdate(int timeLeftSeconds, int currentIndex, int[] questionIds, byte[] letters, byte[] events) {
+            this.timeLeftSeconds = timeLeftSeconds;
+            this.currentIndex = currentIndex;
+            this.questionIds = questionIds;
+            this.letters = letters;
+            this.events = events;
+        }
+    }
+
+    /** Encodes a hello signed with the student's password hash, like a submission. */
+    public static byte[] encodeSyncHello(int examId, int studentId, String passwordHash) {
+        Buffer body = new Buffer(48);
+        body.putVarint(examId);
+        body.putVarint(studentId);
+        if (passwordHash != null && !passwordHash.isEmpty()) {
+            byte[] proof = hmac(passwordHash, body.data, body.size);
+            body.putVarint(proof.length);
+            body.put(proof, 0, proof.length);
+        }
+        return syncMessage(body);
+    }
+
+    /**
+     * Encodes a heartbeat; questionIds must be sorted. A heartbeat with no
+     * changes is about 5 bytes on the wire, each change about 2-3 more. Proctor
+     * events follow the changes as a count and one byte each; servers that
+     * predate them ignore the trailing bytes.
+     */
+    public static byte[] encodeSyncUpdate(SyncUpdate update) {
+        Buffer body = new Buffer(16 + update.questionIds.length * 3);
+        body.putVarint(Math.max(0, update.timeLeftSeconds));
+        body.putVarint(Math.max(0, update.currentIndex));
+        body.putVarint(update.questionIds.length);
+        int previousId = 0;
+        for (int i = 0; i < update.questionIds.length; i++) {
+            body.putVarint(zigzag(update.questionIds[i] - previousId));
+            previousId = update.questionIds[i];
+            body.putByte(update.letters[i]);
+        }
+        body.putVarint(update.events.length);
+        for (byte event : update.events) body.putByte(event);
+        return syncMessage(body);
+    }
+
+    /** Decodes a hello body (length prefix already stripped); the proof is checked separately. */
+    public static SyncHello decodeSyncHello(ByteBuffer body) throws IOException {
+        try {
+            int examId = getVarint(body);
+            int studentId = getVarint(body);
+            if (!body.hasRemaining()) return new SyncHello(examId, studentId, null, null);
+            byte[] signed = Arrays.copyOfRange(body.array(), body.arrayOffset(), body.arrayOffset() + body.position());
+            int len = getVarint(body);
+            if (len < 0 || len > body.remaining()) throw new IOException("Corrupt sync hello");
+            byte[] proof = new byte[len];
+            body.get(proof);
+            return new SyncHello(examId, studentId, signed, proof);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated sync hello", e);
+        }
+    }
+
+    /** Decodes a heartbeat body (length prefix already stripped). */
+    public static SyncUpdate decodeSyncUpdate(ByteBuffer body) throws IOException {
+        try {
+            int timeLeft = getVarint(body);
+            int index = getVarint(body);
+            int count = getVarint(body);
+            if (count < 0 || count > body.remaining()) throw new IOException("Corrupt sync update");
+            int[] ids = new int[count];
+            byte[] letters = new byte[count];
+            int previousId = 0;
+            for (int i = 0; i < count; i++) {
+                ids[i] = previousId + unzigzag(getRawVarint(body));
+                previousId = ids[i];
+                letters[i] = body.get();
+            }
+            byte[] events = new byte[0];
+            if (body.hasRemaining()) { // Older clients send no event trailer
+                int eventCount = getVarint(body);
+                if (eventCount < 0 || eventCount > body.remaining()) throw new IOException("Corrupt sync update");
+                events = new byte[eventCount];
+                body.get(events);
+            }
+            return new SyncUpdate(timeLeft, index, ids, letters, events);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated sync update", e);
+        }
+    }
+
+    private static byte[] syncMessage(Buffer body) {
+        if (body.size > MAX_SYNC_MESSAGE) throw new IllegalArgumentException("Sync message too large");
+        byte[] out = new byte[2 + body.size];
+        out[0] = (byte) (body.size >>> 8);
+        out[1] = (byte) body.size;
+        System.arraycopy(body.data, 0, out, 2, body.size);
+        return out;
+    }
+
+    /**
+     * Returns the number of bytes that follow a frame header, so a non-blocking
+     * reader knows how much more to collect. The header must be complete.
+     */
+    public static int remainingFrameBytes(ByteBuffer header, int expectedMagic, int maxBytes) throws IOException {
+        if (header.getInt(0) != expectedMagic) throw new IOException("Unexpected frame type");
+        int storedLength = header.getInt(10);
+        if (storedLength < 0 || storedLength > maxBytes) throw new IOException("Frame too large");
+        return storedLength;
+    }
+
+    private static byte[] frame(int magic, Buffer body, boolean compress) {
+        CRC32 crc = new CRC32();
+        crc.update(body.data, 0, body.size);
+        byte[] stored = compress ? deflate(body.data, body.size) : null;
+        // Keep the raw body when compression would not pay off (tiny or already dense exams)
+        boolean deflated = stored != null && stored.length < body.size;
+        if (!deflated) stored = Arrays.copyOf(body.data, body.size);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + stored.length);
+        frame.putInt(magic)
+             .put(VERSION)
+             .put((byte) (deflated ? FLAG_DEFLATE : 0))
+             .putInt(body.size)
+             .putInt(stored.length)
+             .putInt((int) crc.getValue())
+             .put(stored);
+        return frame.array();
+    }
+
+    /** Reads one frame of the given type and returns its verified, decompressed body. */
+    private static byte[] readBody(InputStream in, int expectedMagic) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] header = new byte[HEADER_SIZE];
+        data.readFully(header);
+        ByteBuffer h = ByteBuffer.wrap(header);
+        if (h.getInt() != expectedMagic) throw new IOException("Unexpected frame type");
+        byte version = h.get();
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported exam format version " + version);
+        int flags = h.get();
+        int bodyLength = h.getInt();
+        int storedLength = h.getInt();
+        int expectedCrc = h.getInt();
+        if (bodyLength < 0 || bodyLength > MAX_BODY_BYTES || storedLength < 0 || storedLength > MAX_BODY_BYTES) {
+            throw new IOException("Exam frame too large");
+        }
+        byte[] stored = new byte[storedLength];
+        data.readFully(stored);
+        byte[] body = (flags & FLAG_DEFLATE) != 0 ? inflate(stored, bodyLength) : stored;
+        if (body.length != bodyLength) throw new IOException("Exam frame length mismatch");
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        if ((int) crc.getValue() != expectedCrc) throw new IOException("Exam frame checksum mismatch");
+        return body;
+    }
+
+    private static ExamTransfer decodeBody(ByteBuffer in) throws IOException {
+        try {
+            int stringCount = getVarint(in);
+            if (stringCount < 0 || stringCount > in.remaining()) throw new IOException("Corrupt string table");
+            String[] table = new String[stringCount + 1];
+            for (int i = 1; i <= stringCount; i++) {
+                int len = getVarint(in);
+                if (len < 0 || len > in.remaining()) throw new IOException("Corrupt string table");
+                table[i] = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+                in.position(in.position() + len);
+            }
+            int id = getVarint(in);
+            String title = str(table, getVarint(in));
+            String description = str(table, getVarint(in));
+            String start = str(table, getVarint(in));
+            String end = str(table, getVarint(in));
+            int duration = getVarint(in);
+            int createdBy = getVarint(in);
+            String entry = str(table, getVarint(in));
+            String exit = str(table, getVarint(in));
+            Exam exam = new Exam(id, title, description, start, end, duration, createdBy, entry, exit);
+
+            int count = getVarint(in);
+            if (count < 0 || count > in.remaining()) throw new IOException("Corrupt question count");
+            ArrayList<QuestionData> questions = new ArrayList<>(count);
+            int previousId = 0;
+            for (int i = 0; i < count; i++) {
+                int qid = previousId + unzigzag(getRawVarint(in));
+                previousId = qid;
+                questions.add(new QuestionData(qid,
+                        str(table, getVarint(in)), str(table, getVarint(in)), str(table, getVarint(in)),
+                        str(table, getVarint(in)), str(table, getVarint(in)), str(table, getVarint(in))));
+            }
+            return new ExamTransfer(exam, questions);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated exam frame", e);
+        }
+    }
+
+    private static String str(String[] table, int ref) throws IOException {
+        if (ref < 0 || ref >= table.length) throw new IOException("Bad string reference " + ref);
+        return table[ref];
+    }
+
+    private static boolean verifyProof(byte[] proof, byte[] signed, String passwordHash) {
+        if (proof == null || passwordHash == null || passwordHash.isEmpty()) return false;
+        return MessageDigest.isEqual(proof, hmac(passwordHash, signed, signed.length));
+    }
+
+    private static byte[] hmac(String passwordHash, byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(passwordHash.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Reads a count, length, id or string reference; these are never negative. */
+    private static int getVarint(ByteBuffer in) throws IOException {
+        int result = getRawVarint(in);
+        if (result < 0) throw new IOException("Negative varint " + result);
+        return result;
+    }
+
+    /** Reads any 32-bit varint, as written for zigzag deltas; a fifth byte may only carry the top 4 bits. */
+    private static int getRawVarint(ByteBuffer in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            if (shift == 28 && (b & 0xF0) != 0) throw new IOException("Varint overflows 32 bits");
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static byte[] deflate(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int expectedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[expectedLength];
+            int n = 0;
+            while (n < expectedLength && !inflater.finished()) {
+                int r = inflater.inflate(out, n, expectedLength - n);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += r;
+            }
+            if (n != expectedLength || !inflater.finished()) throw new IOException("Corrupt compressed exam body");
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed exam body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Deduplicating string table; index 0 is reserved for null. */
+    private static class StringTable {
+        final Map<String, Integer> index = new HashMap<>();
+        final List<byte[]> entries = new ArrayList<>();
+        int byteSize = 0;
+
+        int ref(String s) {
+            if (s == null) return 0;
+            Integer existing = index.get(s);
+            if (existing != null) return existing;
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            entries.add(utf8);
+            byteSize += utf8.length + 5;
+            int ref = entries.size();
+            index.put(s, ref);
+            return ref;
+        }
+
+        void writeTo(Buffer out) {
+            out.putVarint(entries.size());
+            for (byte[] e : entries) {
+                out.putVarint(e.length);
+                out.put(e, 0, e.length);
+            }
+        }
+    }
+
+    /** Minimal growable byte buffer with varint support. */
+    private static class Buffer {
+        byte[] data;
+        int size;
+
+        Buffer(int capacity) {
+            data = new byte[Math.max(16, capacity)];
+        }
+
+        void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void putVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                data[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        void putByte(int b) {
+            ensure(1);
+            data[size++] = (byte) b;
+        }
+
+        void put(byte[] src, int off, int len) {
+            ensure(len);
+            System.arraycopy(src, off, data, size, len);
+            size += len;
+        }
+    }
+}
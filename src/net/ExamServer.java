@@ -0,0 +1,497 @@
+package net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * LAN exam distribution server. A single selector thread serves every client
+ * concurrently: the exam payload is encoded once into a read-only direct
+ * buffer and each client just gets its own duplicate() view of it, so no
+ * bytes are copied per connection.
+ *
+ * The same port also takes answer submissions (see {@link ExamCodec}). They are
+ * handed to a {@link SubmissionHandler}; the client is only acknowledged once
+ * the handler replies, i.e. after the result is durably stored. Exam clients
+ * may also keep a sync connection open and stream progress heartbeats, which
+ * are passed to a {@link SyncHandler}.
+ */
+public class ExamServer {
+    public static final int DEFAULT_PORT = 5000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 512; // Room of live-synced clients plus fetches/submits
+    public static final long DEFAULT_CLIENT_TIMEOUT_MS = 15_000;
+
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final int MAX_SUBMISSION_BYTES = 1024 * 1024;
+
+    /** Receives decoded submissions on the selector thread. */
+    public interface SubmissionHandler {
+        /**
+         * Must not block. Call reply exactly once, from any thread, when the
+         * submission is stored or has definitely failed.
+         */
+        void submit(ExamCodec.Submission submission, Consumer<ExamCodec.Ack> reply);
+    }
+
+    /** Receives live progress from connected exam clients, on the selector thread; must be cheap. */
+    public interface SyncHandler {
+        /**
+         * Checks a hello's proof. Must not block; call verdict exactly once,
+         * from any thread. A connection that fails is closed unheard.
+         */
+        void authenticate(ExamCodec.SyncHello hello, Consumer<Boolean> verdict);
+
+        void onConnect(int examId, int studentId);
+
+        void onUpdate(int examId, int studentId, ExamCodec.SyncUpdate update);
+
+        void onDisconnect(int examId, int studentId);
+    }
+
+    private final int port;
+    private final ByteBuffer payload;
+    private final int maxConnections;
+    private final long clientTimeoutMillis;
+    private final SubmissionHandler submissionHandler;
+    private final SyncHandler syncHandler;
+    private final Queue<PendingReply> replies = new ConcurrentLinkedQueue<>();
+    private final Queue<PendingHello> hellos = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    private volatile int connected = 0;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong syncMessages = new AtomicLong();
+    private final AtomicLong syncBytes = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount = 0;
+
+    public ExamServer(int port, byte[] payloadBytes) {
+        this(port, payloadBytes, null, null);
+    }
+
+    public ExamServer(int port, byte[] payloadBytes, SubmissionHandler submissionHandler, SyncHandler syncHandler) {
+        this(port, payloadBytes, submissionHandler, syncHandler, DEFAULT_MAX_CONNECTIONS, DEFAULT_CLIENT_TIMEOUT_MS);
+    }
+
+    public ExamServer(int port, byte[] payloadBytes, SubmissionHandler submissionHandler, SyncHandler syncHandler,
+                      int maxConnections, long clientTimeoutMillis) {
+        this.port = port;
+        ByteBuffer direct = ByteBuffer.allocateDirect(payloadBytes.length);
+        direct.put(payloadBytes);
+        direct.flip();
+        this.payload = direct.asReadOnlyBuffer();
+        this.maxConnections = maxConnections;
+        this.clientTimeoutMillis = clientTimeoutMillis;
+        this.submissionHandler = submissionHandler;
+        this.syncHandler = syncHandler;
+    }
+
+    /** Binds the port and starts the selector thread; throws if the port is unavailable. */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port), maxConnections);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        thread = new Thread(this::run, "exam-server-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(250);
+                deliverReplies();
+                admitHellos();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        closeClient(key);
+                    } catch (RuntimeException e) {
+                        // A malformed packet must only cost its own client, never the server loop
+                        e.printStackTrace();
+                        failed.incrementAndGet();
+                        closeClient(key);
+                    }
+                }
+                expireIdleClients();
+            }
+        } catch (IOException e) {
+            System.err.println("Exam server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Client) closeClient(key);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+            running = false;
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            accepted.incrementAndGet();
+            if (connected >= maxConnections) {
+                rejected.incrementAndGet();
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Client());
+            connected++;
+        }
+    }
+
+    /**
+     * Reads whatever the client has sent: the op byte, then a submission frame
+     * or a stream of length-prefixed sync messages.
+     */
+    private void read(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (true) {
+            int n = channel.read(client.in);
+            if (n < 0) throw new IOException("Client closed the connection");
+            if (client.in.hasRemaining()) return;
+            client.lastProgress = System.currentTimeMillis();
+            if (!advance(key, client)) return;
+        }
+    }
+
+    /** Acts on a completely filled input buffer; returns true if more input is expected. */
+    private boolean advance(SelectionKey key, Client client) throws IOException {
+        switch (client.state) {
+            case Client.READ_OP:
+                byte op = client.in.get(0);
+                if (op == ExamCodec.OP_FETCH_EXAM) {
+                    startWrite(key, client, payload.duplicate(), true);
+                    return false;
+                }
+                if (op == ExamCodec.OP_SUBMIT && submissionHandler != null) {
+                    client.in = ByteBuffer.allocate(ExamCodec.HEADER_SIZE);
+                    client.state = Client.READ_HEADER;
+                    return true;
+                }
+                if (op == ExamCodec.OP_SYNC && syncHandler != null) {
+                    client.in = client.lengthBuffer;
+                    client.state = Client.READ_SYNC_LENGTH;
+                    return true;
+                }
+                throw new IOException("Unsupported request " + op);
+            case Client.READ_HEADER:
+                int rest = ExamCodec.remainingFrameBytes(client.in, ExamCodec.SUBMIT_MAGIC, MAX_SUBMISSION_BYTES);
+                ByteBuffer frame = ByteBuffer.allocate(ExamCodec.HEADER_SIZE + rest);
+                client.in.flip();
+                frame.put(client.in);
+                client.in = frame;
+                client.state = Client.READ_BODY;
+                return true;
+            case Client.READ_BODY:
+                ExamCodec.Submission submission = ExamCodec.decodeSubmission(client.in.array());
+                client.state = Client.WAITING;
+                key.interestOps(0);
+                submissions.incrementAndGet();
+                submissionHandler.submit(submission, ack -> {
+                    replies.add(new PendingReply(key, ExamCodec.encodeAck(ack)));
+                    selector.wakeup();
+                });
+                return false;
+            case Client.READ_SYNC_LENGTH:
+                int length = ((client.in.get(0) & 0xFF) << 8) | (client.in.get(1) & 0xFF);
+                client.in = client.syncBuffer(length);
+                client.state = Client.READ_SYNC_BODY;
+                return true;
+            case Client.READ_SYNC_BODY:
+                client.in.flip();
+                syncMessages.incrementAndGet();
+                syncBytes.addAndGet(2 + client.in.remaining());
+                if (client.studentId < 0) {
+                    // Nothing more is read until the hello's proof has been checked
+                    ExamCodec.SyncHello hello = ExamCodec.decodeSyncHello(client.in);
+                    client.state = Client.WAITING;
+                    key.interestOps(0);
+                    syncHandler.authenticate(hello, ok -> {
+                        hellos.add(new PendingHello(key, hello, ok));
+                        selector.wakeup();
+                    });
+                    return false;
+                } else {
+                    syncHandler.onUpdate(client.examId, client.studentId, ExamCodec.decodeSyncUpdate(client.in));
+                }
+                client.lengthBuffer.clear();
+                client.in = client.lengthBuffer;
+                client.state = Client.READ_SYNC_LENGTH;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Resumes sync clients whose hello verified and drops the ones that did not. */
+    private void admitHellos() {
+        PendingHello pending;
+        while ((pending = hellos.poll()) != null) {
+            SelectionKey key = pending.key;
+            Object att = key.attachment();
+            if (!key.isValid() || !(att instanceof Client)) continue;
+            if (!pending.ok) {
+                failed.incrementAndGet();
+                closeClient(key);
+                continue;
+            }
+            Client client = (Client) att;
+            client.examId = pending.hello.examId;
+            client.studentId = pending.hello.studentId;
+            syncHandler.onConnect(client.examId, client.studentId);
+            client.lengthBuffer.clear();
+            client.in = client.lengthBuffer;
+            client.state = Client.READ_SYNC_LENGTH;
+            client.lastProgress = System.currentTimeMillis();
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /** Hands acks produced by the submission handler back to their waiting clients. */
+    private void deliverReplies() {
+        PendingReply reply;
+        while ((reply = replies.poll()) != null) {
+            Object att = reply.key.attachment();
+            if (reply.key.isValid() && att instanceof Client) {
+                startWrite(reply.key, (Client) att, ByteBuffer.wrap(reply.bytes), false);
+            }
+        }
+    }
+
+    private void startWrite(SelectionKey key, Client client, ByteBuffer out, boolean examFetch) {
+        client.out = out;
+        client.examFetch = examFetch;
+        client.state = Client.WRITING;
+        client.lastProgress = System.currentTimeMillis();
+        key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        int n = channel.write(client.out);
+        if (n > 0) {
+            bytesSent.addAndGet(n);
+            client.lastProgress = System.currentTimeMillis();
+        }
+        if (!client.out.hasRemaining()) {
+            if (client.examFetch) {
+                served.incrementAndGet();
+                recordLatency(System.nanoTime() - client.acceptedNanos);
+            } else {
+                acknowledged.incrementAndGet();
+            }
+            closeClient(key);
+        }
+    }
+
+    /**
+     * Drops clients that made no progress for clientTimeoutMillis (stalled or
+     * vanished). Clients waiting for an ack or a hello check are left alone; both always answer.
+     */
+    private void expireIdleClients() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Object att = key.attachment();
+            if (att instanceof Client && ((Client) att).state != Client.WAITING
+                    && now - ((Client) att).lastProgress > clientTimeoutMillis) {
+                timedOut.incrementAndGet();
+                closeClient(key);
+            }
+        }
+    }
+
+    private void closeClient(SelectionKey key) {
+        if (key.attachment() instanceof Client) {
+            Client client = (Client) key.attachment();
+            key.attach(null);
+            connected--;
+            if (client.studentId >= 0) {
+                syncHandler.onDisconnect(client.examId, client.studentId);
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Client already gone
+        }
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (latencyCount % LATENCY_SAMPLES)] = nanos;
+        latencyCount++;
+    }
+
+    /** p99 over the most recent LATENCY_SAMPLES transfers, in milliseconds. */
+    private synchronized double p99LatencyMillis() {
+        int n = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+        if (n == 0) return 0;
+        long[] copy = Arrays.copyOf(latencies, n);
+        Arrays.sort(copy);
+        int idx = (int) Math.ceil(n * 0.99) - 1;
+        return copy[Math.max(0, idx)] / 1_000_000.0;
+    }
+
+    public Stats getStats() {
+        return new Stats(running, connected, accepted.get(), served.get(), rejected.get(),
+                timedOut.get(), failed.get(), bytesSent.get(), p99LatencyMillis(),
+                submissions.get(), acknowledged.get(), syncMessages.get(), syncBytes.get());
+    }
+
+    /** Immutable snapshot of server counters, safe to read from the EDT. */
+    public static class Stats {
+        public final boolean running;
+        public final int connected;
+        public final long accepted;
+        public final long served;
+        public final long rejected;
+        public final long timedOut;
+        public final long failed;
+        public final long bytesSent;
+        public final double p99LatencyMillis;
+        public final long submissions;
+        public final long acknowledged;
+        public final long syncMessages;
+        public final long syncBytes;
+
+        Stats(boolean running, int connected, long accepted, long served, long rejected,
+              long timedOut, long failed, long bytesSent, double p99LatencyMillis,
+              long submissions, long acknowledged, long syncMessages, long syncBytes) {
+            this.running = running;
+            this.connected = connected;
+            this.accepted = accepted;
+            this.served = served;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.failed = failed;
+            this.bytesSent = bytesSent;
+            this.p99LatencyMillis = p99LatencyMillis;
+            this.submissions = submissions;
+            this.acknowledged = acknowledged;
+            this.syncMessages = syncMessages;
+            this.syncBytes = syncBytes;
+        }
+    }
+
+    /** Per-connection state: what has been read so far and what is left to write. */
+    private static class Client {
+        static final int READ_OP = 0;
+        static final int READ_HEADER = 1;
+        static final int READ_BODY = 2;
+        static final int WAITING = 3;
+        static final int WRITING = 4;
+        static final int READ_SYNC_LENGTH = 5;
+        static final int READ_SYNC_BODY = 6;
+
+        final long acceptedNanos = System.nanoTime();
+        long lastProgress = System.currentTimeMillis();
+        int state = READ_OP;
+        ByteBuffer in = ByteBuffer.allocate(1);
+        ByteBuffer out;
+        boolean examFetch;
+
+        // Live sync connections only; studentId stays -1 until the hello arrives
+        final ByteBuffer lengthBuffer = ByteBuffer.allocate(2);
+        ByteBuffer syncBody;
+        int examId = -1;
+        int studentId = -1;
+
+        /** Reuses one body buffer per connection; heartbeats are tiny, resyncs occasionally larger. */
+        ByteBuffer syncBuffer(int length) {
+            if (syncBody == null || syncBody.capacity() < length) {
+                syncBody = ByteBuffer.allocate(Math.max(64, length));
+            }
+            syncBody.clear();
+            syncBody.limit(length);
+            return syncBody;
+        }
+    }
+
+    private static class PendingHello {
+        final SelectionKey key;
+        final ExamCodec.SyncHello hello;
+        final boolean ok;
+
+        PendingHello(SelectionKey key, ExamCodec.SyncHello hello, boolean ok) {
+            this.key = key;
+            this.hello = hello;
+            this.ok = ok;
+        }
+    }
+
+    private static class PendingReply {
+        final SelectionKey key;
+        final byte[] bytes;
+
+        PendingReply(SelectionKey key, byte[] bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+}
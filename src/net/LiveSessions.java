@@ -0,0 +1,161 @@
+package net;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import util.ProctorEventBus;
+
+/**
+ * Proctor-side live table of every candidate in a LAN exam, fed by the sync
+ * heartbeats the exam clients stream to the {@link ExamServer}. Updates come
+ * from the selector thread; the UI reads immutable snapshots. Every change is
+ * also published on the {@link ProctorEventBus} for the monitoring wall.
+ * Only clients whose hello is signed by the student they name get a session.
+ */
+public class LiveSessions implements ExamServer.SyncHandler {
+    private final int examId;
+    private final int totalQuestions;
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final ProctorEventBus bus = ProctorEventBus.getInstance();
+    private final StudentCredentials credentials;
+
+    public LiveSessions(int examId, int totalQuestions, StudentCredentials credentials) {
+        this.examId = examId;
+        this.totalQuestions = totalQuestions;
+        this.credentials = credentials;
+    }
+
+    public int getExamId() {
+        return examId;
+    }
+
+    public int getTotalQuestions() {
+        return totalQuestions;
+    }
+
+    @Override
+    public void authenticate(ExamCodec.SyncHello hello, Consumer<Boolean> verdict) {
+        if (hello.examId != examId) {
+            verdict.accept(false);
+            return;
+        }
+        credentials.verify(hello, verdict);
+    }
+
+    @Override
+    public void onConnect(int examId, int studentId) {
+        if (examId != this.examId) return;
+        Session session = sessions.computeIfAbsent(studentId, Session::new);
+        synchronized (session) {
+            session.connected = true;
+            session.lastSeen = System.currentTimeMillis();
+        }
+        bus.publish(ProctorEventBus.Event.of(examId, studentId, ProctorEventBus.Type.CONNECTED));
+    }
+
+    @Override
+    public void onUpdate(int examId, int studentId, ExamCodec.SyncUpdate update) {
+        if (examId != this.examId) return;
+        Session session = sessions.computeIfAbsent(studentId, Session::new);
+        int answered;
+        long now = System.currentTimeMillis();
+        synchronized (session) {
+            for (int i = 0; i < update.questionIds.length; i++) {
+                if (update.letters[i] == 0) {
+                    session.answers.remove(update.questionIds[i]);
+                } else {
+                    session.answers.put(update.questionIds[i], (char) update.letters[i]);
+                }
+            }
+            session.timeLeftSeconds = update.timeLeftSeconds;
+            session.currentIndex = update.currentIndex;
+            session.lastSeen = now;
+            session.heartbeats++;
+            answered = session.answers.size();
+        }
+        bus.publish(new ProctorEventBus.Event(examId, studentId, ProctorEventBus.Type.PROGRESS, now, answered,
+                update.currentIndex, update.timeLeftSeconds));
+        for (byte code : update.events) {
+            ProctorEventBus.Type type = ProctorEventBus.Type.fromCode(code);
+            if (type != null) {
+                bus.publish(new ProctorEventBus.Event(examId, studentId, type, now, answered,
+                        update.currentIndex, update.timeLeftSeconds));
+            }
+        }
+    }
+
+    @Override
+    public void onDisconnect(int examId, int studentId) {
+        Session session = sessions.get(studentId);
+        if (session == null) return;
+        synchronized (session) {
+            session.connected = false;
+        }
+        bus.publish(ProctorEventBus.Event.of(examId, studentId, ProctorEventBus.Type.DISCONNECTED));
+    }
+
+    /** Marks a candidate as submitted; called once their submission has been stored. */
+    public void markSubmitted(int studentId) {
+        Session session = sessions.computeIfAbsent(studentId, Session::new);
+        synchronized (session) {
+            session.submitted = true;
+            session.lastSeen = System.currentTimeMillis();
+        }
+        bus.publish(ProctorEventBus.Event.of(examId, studentId, ProctorEventBus.Type.SUBMITTED));
+    }
+
+    /** Returns a point-in-time copy of every candidate, safe to hand to the EDT. */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> result = new ArrayList<>(sessions.size());
+        for (Session session : sessions.values()) {
+            synchronized (session) {
+                result.add(new Snapshot(session.studentId, session.answers.size(), session.currentIndex,
+                        session.timeLeftSeconds, session.lastSeen, session.connected, session.submitted,
+                        session.heartbeats));
+            }
+        }
+        return result;
+    }
+
+    /** Immutable view of one candidate's progress. */
+    public static class Snapshot {
+        public final int studentId;
+        public final int answered;
+        public final int currentIndex;
+        public final int timeLeftSeconds;
+        public final long lastSeenMillis;
+        public final boolean connected;
+        public final boolean submitted;
+        public final long heartbeats;
+
+        Snapshot(int studentId, int answered, int currentIndex, int timeLeftSeconds, long lastSeenMillis,
+                 boolean connected, boolean submitted, long heartbeats) {
+            this.studentId = studentId;
+            this.answered = answered;
+            this.currentIndex = currentIndex;
+            this.timeLeftSeconds = timeLeftSeconds;
+            this.lastSeenMillis = lastSeenMillis;
+            this.connected = connected;
+            this.submitted = submitted;
+            this.heartbeats = heartbeats;
+        }
+    }
+
+    private static class Session {
+        final int studentId;
+        final Map<Integer, Character> answers = new HashMap<>();
+        int currentIndex;
+        int timeLeftSeconds = -1;
+        long lastSeen;
+        boolean connected;
+        boolean submitted;
+        long heartbeats;
+
+        Session(int studentId) {
+            this.studentId = studentId;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net;
+
+import db.DBConnection;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Password hashes of the students in a LAN exam; they key the proofs on
+ * submissions and sync hellos (see ExamCodec). Loaded on demand and kept for
+ * the life of the server. Lookups hit the database, so never make them on the
+ * selector thread or the EDT; hellos are checked on a thread of their own.
+ */
+public class StudentCredentials {
+    private static final ExecutorService CHECKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "lan-hello-auth");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<Integer, String> hashes = new HashMap<>(); // Guarded by this; null for unknown students
+
+    /**
+     * Returns the hash of each student (null for ids that are not students),
+     * loading the ones not cached yet in one query. Nothing is cached if the
+     * query fails, so the next call tries again.
+     */
+    public Map<Integer, String> lookup(Collection<Integer> studentIds) throws SQLException, IOException {
+        Map<Integer, String> result = new HashMap<>();
+        Set<Integer> missing = new HashSet<>();
+        synchronized (this) {
+            for (int id : studentIds) {
+                if (hashes.containsKey(id)) {
+                    result.put(id, hashes.get(id));
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        if (missing.isEmpty()) return result;
+
+        StringBuilder sql = new StringBuilder("SELECT id, password_hash FROM users WHERE role = 'student' AND id IN (");
+        Map<Integer, String> loaded = new HashMap<>();
+        int i = 0;
+        for (int id : missing) {
+            sql.append(i++ == 0 ? "?" : ",?");
+            loaded.put(id, null); // Unknown ids stay null and never verify
+        }
+        sql.append(')');
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            i = 1;
+            for (int id : missing) ps.setInt(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) loaded.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        synchronized (this) {
+            hashes.putAll(loaded);
+        }
+        result.putAll(loaded);
+        return result;
+    }
+
+    /**
+     * Checks a sync hello's proof on the checker thread and calls
+     * {@code verdict} exactly once with the outcome; a failed lookup counts
+     * as not verified.
+     */
+    public void verify(ExamCodec.SyncHello hello, Consumer<Boolean> verdict) {
+        CHECKER.execute(() -> {
+            boolean ok;
+            try {
+                String hash = lookup(Collections.singleton(hello.studentId)).get(hello.studentId);
+                ok = hello.isSignedBy(hash);
+            } catch (SQLException | IOException | RuntimeException e) {
+                System.err.println("Could not check sync hello of student " + hello.studentId + ": " + e.getMessage());
+                ok = false;
+            }
+            if (!ok) System.err.println("Rejected unauthenticated sync hello for student " + hello.studentId);
+            verdict.accept(ok);
+        });
+    }
+}
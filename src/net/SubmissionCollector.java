@@ -0,0 +1,250 @@
+package net;
+
+import db.DBConnection;
+import db.StatsService;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import ui.ExamTakingPanel.QuestionData;
+import util.GradingEngine;
+
+/**
+ * Grades LAN submissions against the exam's answer key and stores them in
+ * results from a single writer thread. Submissions arriving together (the end
+ * of a sitting) are group-committed: one DELETE ... IN (...) plus one batched
+ * INSERT per transaction, and every client in the batch is acked after commit.
+ *
+ * The frame's student id is only trusted if the submission is signed with
+ * that student's password hash (see ExamCodec.Submission#isSignedBy and
+ * StudentCredentials); anything
+ * else is rejected before it reaches results.
+ */
+public class SubmissionCollector implements ExamServer.SubmissionHandler {
+    private static final int QUEUE_CAPACITY = 5000;
+    private static final int MAX_BATCH = 500;
+    private static final long COALESCE_MS = 20;
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY_MS = 500;
+
+    private final int examId;
+    private final int totalQuestions;
+    private final GradingEngine.AnswerKey answerKey;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private final StudentCredentials credentials;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public SubmissionCollector(int examId, List<QuestionData> questions, StudentCredentials credentials) {
+        this.examId = examId;
+        this.credentials = credentials;
+        this.totalQuestions = questions.size();
+        Map<Integer, String> correct = new HashMap<>();
+        for (QuestionData q : questions) {
+            correct.put(q.id, q.answer);
+        }
+        this.answerKey = new GradingEngine.AnswerKey(correct);
+        writerThread = new Thread(this::run, "lan-result-writer-" + examId);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void submit(ExamCodec.Submission submission, Consumer<ExamCodec.Ack> reply) {
+        if (submission.examId != examId) {
+            reply.accept(new ExamCodec.Ack(false, 0, 0, "This server is running a different exam"));
+            return;
+        }
+        long[] packed = answerKey.pack(submission.answers);
+        Pending pending = new Pending(submission, answerKey.score(packed), answerKey.encode(packed), reply);
+        if (!running || !queue.offer(pending)) {
+            failed.incrementAndGet();
+            reply.accept(new ExamCodec.Ack(false, 0, 0, "Server is busy, please retry"));
+        }
+    }
+
+    /** Stops accepting work, writes whatever is queued and ends the writer thread. */
+    public void stop() {
+        running = false;
+        try {
+            writerThread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getStoredCount() { return stored.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getBatchCount() { return batches.get(); }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Pending first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!running) return;
+                    continue;
+                }
+                batch.add(first);
+                // Give the rest of the room a moment to arrive so they share one commit
+                long deadline = System.currentTimeMillis() + COALESCE_MS;
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                authenticate(batch);
+                if (!batch.isEmpty()) store(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /** Removes and rejects every submission not signed by the student it claims to come from. */
+    private void authenticate(List<Pending> batch) {
+        Set<Integer> studentIds = new HashSet<>();
+        for (Pending p : batch) studentIds.add(p.studentId);
+        Map<Integer, String> passwordHashes;
+        try {
+            passwordHashes = credentials.lookup(studentIds);
+        } catch (SQLException | IOException e) {
+            failBatch(batch, e);
+            batch.clear();
+            return;
+        }
+        for (Iterator<Pending> it = batch.iterator(); it.hasNext(); ) {
+            Pending p = it.next();
+            if (!p.submission.isSignedBy(passwordHashes.get(p.studentId))) {
+                it.remove();
+                failed.incrementAndGet();
+                System.err.println("Rejected unauthenticated submission for student " + p.studentId);
+                p.reply.accept(new ExamCodec.Ack(false, 0, 0, "Submission could not be authenticated"));
+            }
+        }
+    }
+
+    private void store(List<Pending> batch) throws InterruptedException {
+        // A student who resubmits within the batch keeps only the latest result
+        Map<Integer, Pending> latest = new LinkedHashMap<>();
+        for (Pending p : batch) latest.put(p.studentId, p);
+        List<Pending> rows = new ArrayList<>(latest.values());
+        try {
+            writeWithRetry(rows);
+            stored.addAndGet(rows.size());
+            batches.incrementAndGet();
+            for (Pending p : batch) p.ack(true, totalQuestions, null);
+            return;
+        } catch (SQLException | IOException e) {
+            if (rows.size() == 1) {
+                failBatch(batch, e);
+                return;
+            }
+            System.err.println("Batched result write failed, storing individually: " + e.getMessage());
+        }
+        // One bad row (e.g. unknown student) must not sink the whole room
+        for (Pending row : rows) {
+            try {
+                writeRows(Collections.singletonList(row));
+                stored.incrementAndGet();
+                for (Pending p : batch) {
+                    if (p.studentId == row.studentId) p.ack(true, totalQuestions, null);
+                }
+            } catch (SQLException | IOException e) {
+                List<Pending> same = new ArrayList<>();
+                for (Pending p : batch) {
+                    if (p.studentId == row.studentId) same.add(p);
+                }
+                failBatch(same, e);
+            }
+        }
+    }
+
+    private void failBatch(List<Pending> pending, Exception e) {
+        e.printStackTrace();
+        failed.addAndGet(pending.size());
+        for (Pending p : pending) p.ack(false, totalQuestions, "Could not store result: " + e.getMessage());
+    }
+
+    private void writeWithRetry(List<Pending> rows) throws SQLException, IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeRows(rows);
+                return;
+            } catch (SQLException | IOException e) {
+                if (attempt >= MAX_RETRIES) throw e;
+                Thread.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+    }
+
+    private void writeRows(List<Pending> rows) throws SQLException, IOException {
+        StringBuilder deleteSql = new StringBuilder("DELETE FROM results WHERE exam_id = ? AND student_id IN (");
+        for (int i = 0; i < rows.size(); i++) deleteSql.append(i == 0 ? "?" : ",?");
+        deleteSql.append(')');
+        String insertSql = "INSERT INTO results (student_id, exam_id, score, total_questions, answer_vector) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement psDelete = conn.prepareStatement(deleteSql.toString())) {
+                psDelete.setInt(1, examId);
+                for (int i = 0; i < rows.size(); i++) psDelete.setInt(i + 2, rows.get(i).studentId);
+                psDelete.executeUpdate();
+            }
+            try (PreparedStatement psInsert = conn.prepareStatement(insertSql)) {
+                for (Pending p : rows) {
+                    psInsert.setInt(1, p.studentId);
+                    psInsert.setInt(2, examId);
+                    psInsert.setInt(3, p.score);
+                    psInsert.setInt(4, totalQuestions);
+                    psInsert.setBytes(5, p.answerVector);
+                    psInsert.addBatch();
+                }
+                psInsert.executeBatch();
+            }
+            conn.commit();
+        }
+        StatsService.onResultsRecorded(rows.size(), System.currentTimeMillis());
+    }
+
+    /** A graded submission waiting for the writer. */
+    private static class Pending {
+        final ExamCodec.Submission submission;
+        final int studentId;
+        final int score;
+        final byte[] answerVector;
+        final Consumer<ExamCodec.Ack> reply;
+
+        Pending(ExamCodec.Submission submission, int score, byte[] answerVector, Consumer<ExamCodec.Ack> reply) {
+            this.submission = submission;
+            this.studentId = submission.studentId;
+            this.score = score;
+            this.answerVector = answerVector;
+            this.reply = reply;
+        }
+
+        void ack(boolean ok, int totalQuestions, String message) {
+            reply.accept(new ExamCodec.Ack(ok, ok ? score : 0, totalQuestions, message));
+        }
+    }
+}
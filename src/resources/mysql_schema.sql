@@ -26,8 +26,10 @@ CREATE TABLE `exams` (
   `created_by` int(11) DEFAULT NULL,
   `entry_password` varchar(255) NOT NULL,
   `exit_password` varchar(255) NOT NULL,
+  `version` int(11) NOT NULL DEFAULT 0,
   PRIMARY KEY (`id`),
   KEY `created_by` (`created_by`),
+  KEY `idx_exams_end_time` (`end_time`),
   CONSTRAINT `exams_ibfk_1` FOREIGN KEY (`created_by`) REFERENCES `users` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 
@@ -54,9 +56,11 @@ CREATE TABLE `results` (
   `score` int(11) DEFAULT NULL,
   `taken_at` timestamp NOT NULL DEFAULT current_timestamp(),
   `total_questions` int(11) DEFAULT NULL,
+  `answer_vector` varbinary(8192) DEFAULT NULL,
   PRIMARY KEY (`id`),
-  KEY `student_id` (`student_id`),
-  KEY `exam_id` (`exam_id`),
+  KEY `idx_results_exam_student_time` (`exam_id`,`student_id`,`taken_at`),
+  KEY `idx_results_student_time` (`student_id`,`taken_at`),
+  KEY `idx_results_time` (`taken_at`),
   CONSTRAINT `results_ibfk_1` FOREIGN KEY (`student_id`) REFERENCES `users` (`id`),
   CONSTRAINT `results_ibfk_2` FOREIGN KEY (`exam_id`) REFERENCES `exams` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
@@ -66,10 +70,30 @@ CREATE TABLE `activity_log` (
   `id` int(11) NOT NULL AUTO_INCREMENT,
   `student_id` int(11) NOT NULL,
   `exam_id` int(11) NOT NULL,
-  `event_time` timestamp NOT NULL DEFAULT current_timestamp() ON UPDATE current_timestamp(),
+  `event_time` timestamp NOT NULL DEFAULT current_timestamp(),
   `event_type` varchar(50) NOT NULL,
   `description` varchar(255) NOT NULL,
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_activity_exam_student_time` (`exam_id`,`student_id`,`event_time`),
+  KEY `idx_activity_student_time` (`student_id`,`event_time`),
+  KEY `idx_activity_exam_time` (`exam_id`,`event_time`),
+  KEY `idx_activity_time` (`event_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+-- Table: screenshots (image_path is relative to SCREENSHOT_DIR; files are content-addressed.
+-- DUPLICATE rows reuse the previous frame's path; DELTA files need their keyframe to render)
+CREATE TABLE `screenshots` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `student_id` int(11) NOT NULL,
+  `exam_id` int(11) NOT NULL,
+  `image_path` varchar(255) NOT NULL,
+  `captured_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  `frame_type` enum('KEYFRAME','DELTA','DUPLICATE') NOT NULL DEFAULT 'KEYFRAME',
+  `change_score` float NOT NULL DEFAULT 0,
+  PRIMARY KEY (`id`),
+  KEY `exam_student_time` (`exam_id`, `student_id`, `captured_at`),
+  CONSTRAINT `screenshots_ibfk_1` FOREIGN KEY (`student_id`) REFERENCES `users` (`id`),
+  CONSTRAINT `screenshots_ibfk_2` FOREIGN KEY (`exam_id`) REFERENCES `exams` (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 
 -- Table: logs
@@ -96,7 +120,29 @@ CREATE TABLE `student_exam` (
   `assigned_at` timestamp NOT NULL DEFAULT current_timestamp(),
   PRIMARY KEY (`id`),
   KEY `student_id` (`student_id`),
-  KEY `exam_id` (`exam_id`),
+  KEY `idx_student_exam_exam_student` (`exam_id`,`student_id`),
   CONSTRAINT `student_exam_ibfk_1` FOREIGN KEY (`student_id`) REFERENCES `users` (`id`),
   CONSTRAINT `student_exam_ibfk_2` FOREIGN KEY (`exam_id`) REFERENCES `exams` (`id`)
-) ENGINE=InnoDB DEFAULT CHARSET=latin1;
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+-- Table: student_answers (latest answer per question of each attempt; written while the exam runs)
+CREATE TABLE `student_answers` (
+  `exam_id` int(11) NOT NULL,
+  `student_id` int(11) NOT NULL,
+  `question_id` int(11) NOT NULL,
+  `answer` char(1) DEFAULT NULL,
+  `answered_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  PRIMARY KEY (`exam_id`,`student_id`,`question_id`),
+  KEY `idx_answers_student` (`student_id`),
+  CONSTRAINT `student_answers_ibfk_1` FOREIGN KEY (`student_id`) REFERENCES `users` (`id`),
+  CONSTRAINT `student_answers_ibfk_2` FOREIGN KEY (`exam_id`) REFERENCES `exams` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+-- Table: schema_version (one row per migration applied by db.SchemaMigrator at startup;
+-- a database created from this file is already current, the migrations then only record themselves)
+CREATE TABLE `schema_version` (
+  `version` int(11) NOT NULL,
+  `description` varchar(255) NOT NULL,
+  `applied_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  PRIMARY KEY (`version`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
@@ -3,15 +3,15 @@ package ui;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import db.ConnectionPool;
+import db.DBConnection;
+import db.ExamCache;
+import db.StatsService;
 import model.User;
 import util.ThemeManager;
 
@@ -30,17 +30,11 @@ public class AdminDashboardPanel extends JPanel {
     private Color activeColor = new Color(0, 120, 215);
     private Color pressedColor = new Color(0, 90, 180);
     private BufferedImage backgroundImage;
-    private int totalStudents = 0;
-    private int activeExams = 0;
-    private int totalQuestions = 0;
-    private int recentResults = 0;
-    private int systemLogs = 0;
-    private int activeSessions = 0;
+    private final Map<String, JLabel> statValues = new HashMap<>();
 
     public AdminDashboardPanel(User user, MainFrame frame) {
         this.adminUser = user;
         this.mainFrame = frame;
-        loadStatsFromDatabase();
         loadBackgroundImage();
         initUI();
     }
@@ -65,52 +59,6 @@ public class AdminDashboardPanel extends JPanel {
         }
     }
 
-    private void loadStatsFromDatabase() {
-        try {
-            Connection conn = db.DBConnection.getConnection();
-            // Total Students (count users with role 'student')
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM users WHERE role = 'student'")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) totalStudents = rs.getInt(1);
-                }
-            }
-            // Active Exams
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM exams WHERE start_time <= NOW() AND end_time >= NOW()")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) activeExams = rs.getInt(1);
-                }
-            }
-            // Total Questions
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM questions")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) totalQuestions = rs.getInt(1);
-                }
-            }
-            // Recent Results (last 7 days)
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM results WHERE taken_at >= NOW() - INTERVAL 7 DAY")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) recentResults = rs.getInt(1);
-                }
-            }
-            // System Logs (last 7 days)
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM activity_log WHERE event_time >= NOW() - INTERVAL 7 DAY")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) systemLogs = rs.getInt(1);
-                }
-            }
-            // Active Sessions (students with a session in the last 10 minutes)
-            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(DISTINCT student_id) FROM activity_log WHERE event_time >= NOW() - INTERVAL 10 MINUTE")) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) activeSessions = rs.getInt(1);
-                }
-            }
-            conn.close();
-        } catch (SQLException | IOException e) {
-            // Handle both SQL and IO exceptions
-            e.printStackTrace();
-        }
-    }
-
     private void initUI() {
         setLayout(new BorderLayout());
         setBackground(ThemeManager.getPrimaryBackground());
@@ -320,24 +268,99 @@ public class AdminDashboardPanel extends JPanel {
         
         panel.add(headerPanel, BorderLayout.NORTH);
         panel.add(statsPanel, BorderLayout.CENTER);
+        panel.add(createPoolStatusLabel(), BorderLayout.SOUTH);
         
         return panel;
     }
 
+    /** Small status line with connection pool and exam cache metrics, refreshed every 2 seconds while shown. */
+    private JLabel createPoolStatusLabel() {
+        JLabel label = new JLabel() {
+            private final javax.swing.Timer refresh = new javax.swing.Timer(2000, e -> updatePoolStatus(this));
+
+            @Override
+            public void addNotify() {
+                super.addNotify();
+                updatePoolStatus(this);
+                refresh.start();
+            }
+
+            @Override
+            public void removeNotify() {
+                refresh.stop();
+                super.removeNotify();
+            }
+        };
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        label.setForeground(Color.BLACK);
+        label.setBorder(new EmptyBorder(15, 0, 0, 0));
+        updatePoolStatus(label);
+        return label;
+    }
+
+    private static void updatePoolStatus(JLabel label) {
+        ConnectionPool.Stats stats = DBConnection.getPoolStats();
+        if (stats == null) {
+            label.setText("Connection pool: not started");
+            return;
+        }
+        long p95 = stats.waitPercentileMillis(0.95);
+        label.setText(String.format(
+            "Connection pool: %d active, %d idle (max %d), %d waiting | wait p95 %s | %,d borrows, %d timeouts, %d leaks",
+            stats.active, stats.idle, stats.maxSize, stats.waiting,
+            p95 < 0 ? "> 2 s" : "< " + p95 + " ms",
+            stats.borrowed, stats.timeouts, stats.leaks)
+            + cacheStatus());
+    }
+
+    private static String cacheStatus() {
+        ExamCache.Stats cache = ExamCache.statsIfRunning();
+        if (cache == null) return "";
+        return String.format(" | Exam cache: %d exams, %.0f%% hits (%,d hits, %,d misses, %d evictions)",
+            cache.size, cache.hitRate() * 100, cache.hits, cache.misses, cache.evictions);
+    }
+
+    /** Stat cards fed from StatsService's in-memory counters, refreshed every second while shown. */
     private JPanel createStatsPanel() {
-        JPanel panel = new JPanel(new GridLayout(2, 3, 20, 20));
+        JPanel panel = new JPanel(new GridLayout(2, 3, 20, 20)) {
+            private final javax.swing.Timer refresh = new javax.swing.Timer(1000, e -> updateStats());
+
+            @Override
+            public void addNotify() {
+                super.addNotify();
+                refresh.start();
+            }
+
+            @Override
+            public void removeNotify() {
+                refresh.stop();
+                super.removeNotify();
+            }
+        };
         panel.setOpaque(false); // Transparent
         panel.setBorder(new EmptyBorder(20, 0, 0, 0));
-        panel.add(createStatCard("Total Students", String.format("%,d", totalStudents), new Color(70, 130, 180)));
-        panel.add(createStatCard("Active Exams", String.format("%d", activeExams), new Color(60, 179, 113)));
-        panel.add(createStatCard("Questions", String.format("%,d", totalQuestions), new Color(255, 165, 0)));
-        panel.add(createStatCard("Recent Results", String.format("%d", recentResults), new Color(147, 112, 219)));
-        panel.add(createStatCard("System Logs", String.format("%,d", systemLogs), new Color(220, 20, 60)));
-        panel.add(createStatCard("Active Sessions", String.format("%d", activeSessions), new Color(46, 204, 113)));
+        panel.add(createStatCard("Total Students", new Color(70, 130, 180)));
+        panel.add(createStatCard("Active Exams", new Color(60, 179, 113)));
+        panel.add(createStatCard("Questions", new Color(255, 165, 0)));
+        panel.add(createStatCard("Recent Results", new Color(147, 112, 219)));
+        panel.add(createStatCard("System Logs", new Color(220, 20, 60)));
+        panel.add(createStatCard("Active Sessions", new Color(46, 204, 113)));
+        updateStats();
         return panel;
     }
 
-    private JPanel createStatCard(String title, String value, Color color) {
+    private void updateStats() {
+        StatsService.Snapshot stats = StatsService.getInstance().snapshot();
+        if (!stats.isReady()) return; // Keep the placeholders until the first count is in
+        statValues.get("Total Students").setText(String.format("%,d", stats.totalStudents));
+        statValues.get("Active Exams").setText(String.format("%d", stats.activeExams));
+        statValues.get("Questions").setText(String.format("%,d", stats.totalQuestions));
+        statValues.get("Recent Results").setText(String.format("%d", stats.recentResults));
+        statValues.get("System Logs").setText(String.format("%,d", stats.systemLogs));
+        statValues.get("Active Sessions").setText(String.format("%d", stats.activeSessions));
+    }
+
+    private JPanel createStatCard(String title, Color color) {
         JPanel card = new JPanel();
         card.setLayout(new BoxLayout(card, BoxLayout.Y_AXIS));
         card.setOpaque(false); // Transparent
@@ -352,7 +375,8 @@ public class AdminDashboardPanel extends JPanel {
         titleLabel.setForeground(Color.BLACK); // Set to black
         titleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         
-        JLabel valueLabel = new JLabel(value);
+        JLabel valueLabel = new JLabel("-");
+        statValues.put(title, valueLabel);
         valueLabel.setFont(new Font("Segoe UI", Font.BOLD, 28));
         valueLabel.setForeground(color);
         valueLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -1,18 +1,24 @@
 package ui;
 
-import db.DBConnection;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import db.StatsService;
 import util.CryptoUtils;
+import util.ExamImporter;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
-import java.nio.file.Files;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public class ExamImportPanel extends JPanel {
+    private final JButton importBtn;
+    private final JButton cancelBtn;
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel statusLabel = new JLabel(" ", JLabel.CENTER);
+    private SwingWorker<ExamImporter.Outcome, Long> importTask;
+
     public ExamImportPanel() {
         setLayout(new BorderLayout());
         setBackground(Color.WHITE);
@@ -21,70 +27,109 @@ public class ExamImportPanel extends JPanel {
         title.setFont(new Font("Segoe UI", Font.BOLD, 22));
         add(title, BorderLayout.NORTH);
 
-        JButton importBtn = new JButton("Import .exam File");
+        importBtn = new JButton("Import .exam File");
         importBtn.setFont(new Font("Segoe UI", Font.BOLD, 16));
         importBtn.addActionListener(e -> importExamFile());
+        cancelBtn = new JButton("Cancel");
+        cancelBtn.setVisible(false);
+        cancelBtn.addActionListener(e -> {
+            if (importTask != null) importTask.cancel(false);
+        });
 
         JPanel centerPanel = new JPanel();
         centerPanel.setOpaque(false);
         centerPanel.add(importBtn);
+        centerPanel.add(cancelBtn);
         add(centerPanel, BorderLayout.CENTER);
+
+        JPanel statusPanel = new JPanel(new BorderLayout(0, 6));
+        statusPanel.setOpaque(false);
+        statusPanel.setBorder(BorderFactory.createEmptyBorder(0, 40, 20, 40));
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        statusPanel.add(statusLabel, BorderLayout.NORTH);
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+        add(statusPanel, BorderLayout.SOUTH);
     }
 
     private void importExamFile() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Select Exam File (.exam)");
         int result = fileChooser.showOpenDialog(this);
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
-            try {
-                String encrypted = new String(Files.readAllBytes(file.toPath()));
-                String jsonString = CryptoUtils.decrypt(encrypted);
-
-                JSONObject examJson = new JSONObject(jsonString);
+        if (result != JFileChooser.APPROVE_OPTION) return;
+        File file = fileChooser.getSelectedFile();
+        char[] passphrase = null;
+        boolean legacy;
+        try {
+            legacy = !CryptoUtils.isPassphraseProtected(file.toPath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Import failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (legacy) {
+            if (!confirmLegacyImport(file)) return;
+        } else {
+            passphrase = PassphrasePrompt.ask(this, "Import Exam", false);
+            if (passphrase == null) return;
+        }
+        ExamImporter importer = new ExamImporter(file.toPath(), passphrase, legacy);
+        setImporting(true);
+        statusLabel.setText("Importing " + file.getName() + "...");
 
-                if (!examJson.has("id") || !examJson.has("questions")) {
-                    throw new Exception("Invalid exam file format.");
-                }
+        // The whole exam is one transaction, so a cancel or failure imports nothing
+        importTask = new SwingWorker<ExamImporter.Outcome, Long>() {
+            @Override
+            protected ExamImporter.Outcome doInBackground() throws Exception {
+                return importer.run(this::publish, this::isCancelled);
+            }
 
-                try (Connection conn = DBConnection.getConnection()) {
-                    // Insert exam
-                    PreparedStatement ps = conn.prepareStatement(
-                        "INSERT INTO exams (id, title, description, start_time, end_time, duration_minutes, entry_password, exit_password) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE title=VALUES(title), description=VALUES(description), start_time=VALUES(start_time), end_time=VALUES(end_time), duration_minutes=VALUES(duration_minutes), entry_password=VALUES(entry_password), exit_password=VALUES(exit_password)");
-                    ps.setInt(1, examJson.getInt("id"));
-                    ps.setString(2, examJson.getString("title"));
-                    ps.setString(3, examJson.optString("description", ""));
-                    ps.setString(4, examJson.optString("start_time", null));
-                    ps.setString(5, examJson.optString("end_time", null));
-                    ps.setInt(6, examJson.optInt("duration_minutes", 0));
-                    ps.setString(7, examJson.optString("entry_password", ""));
-                    ps.setString(8, examJson.optString("exit_password", ""));
-                    ps.executeUpdate();
+            @Override
+            protected void process(List<Long> chunks) {
+                statusLabel.setText(String.format("Imported %,d questions...", chunks.get(chunks.size() - 1)));
+            }
 
-                    // Insert questions
-                    JSONArray questions = examJson.getJSONArray("questions");
-                    for (int i = 0; i < questions.length(); i++) {
-                        JSONObject q = questions.getJSONObject(i);
-                        ps = conn.prepareStatement(
-                            "INSERT INTO questions (id, exam_id, question_text, option_a, option_b, option_c, option_d, correct_option) " +
-                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE question_text=VALUES(question_text)");
-                        ps.setInt(1, q.getInt("id"));
-                        ps.setInt(2, examJson.getInt("id"));
-                        ps.setString(3, q.getString("question_text"));
-                        ps.setString(4, q.getString("option_a"));
-                        ps.setString(5, q.getString("option_b"));
-                        ps.setString(6, q.getString("option_c"));
-                        ps.setString(7, q.getString("option_d"));
-                        ps.setString(8, q.getString("correct_option"));
-                        ps.executeUpdate();
-                    }
+            @Override
+            protected void done() {
+                setImporting(false);
+                try {
+                    ExamImporter.Outcome outcome = get();
+                    StatsService.requestReconcile();
+                    statusLabel.setText(String.format("Imported \"%s\" with %,d questions.", outcome.title, outcome.questions));
+                    JOptionPane.showMessageDialog(ExamImportPanel.this, "Exam imported successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                } catch (CancellationException ex) {
+                    statusLabel.setText("Import cancelled; nothing was imported.");
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    statusLabel.setText("Import failed; nothing was imported.");
+                    JOptionPane.showMessageDialog(ExamImportPanel.this, "Import failed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
-
-                JOptionPane.showMessageDialog(this, "Exam imported successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Import failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
-        }
+        };
+        importTask.execute();
+    }
+
+    /**
+     * Files from older versions have no passphrase and no integrity check:
+     * anyone with a copy of the app can write or alter one. They are only
+     * imported if the admin says so; Cancel is the default.
+     */
+    private boolean confirmLegacyImport(File file) {
+        String[] options = {"Import Anyway", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this,
+                file.getName() + " is an unauthenticated legacy export.\n"
+                + "It is not passphrase-protected, so there is no way to tell whether it was\n"
+                + "tampered with or who created it. Only import it if you trust its source.",
+                "Legacy Exam File", JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE,
+                null, options, options[1]);
+        return choice == 0;
+    }
+
+    private void setImporting(boolean importing) {
+        importBtn.setEnabled(!importing);
+        cancelBtn.setVisible(importing);
+        progressBar.setVisible(importing);
+        revalidate();
     }
 }
@@ -1,15 +1,12 @@
 package ui;
 
-import db.DBConnection;
+import db.ExamCatalog;
 import model.User;
 import model.Exam;
 import util.ThemeManager;
 
 import javax.swing.*;
 import java.awt.*;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.util.ArrayList;
 
 public class ExamListPanel extends JPanel {
@@ -19,6 +16,7 @@ public class ExamListPanel extends JPanel {
     private JScrollPane scrollPane;
     private JLabel progressLabel;
     private java.util.List<ExamData> exams = new ArrayList<>();
+    private SwingWorker<Integer, ExamData> loader;
 
     public ExamListPanel(User user, StudentDashboardPanel parent) {
         this.studentUser = user;
@@ -56,50 +54,42 @@ public class ExamListPanel extends JPanel {
     }
 
     private void loadAssignedExams() {
+        if (loader != null) loader.cancel(true);
         exams.clear();
         cardsPanel.removeAll();
         progressLabel.setText("Loading exams...");
         cardsPanel.revalidate();
         cardsPanel.repaint();
 
-        SwingWorker<java.util.List<ExamData>, Void> worker = new SwingWorker<java.util.List<ExamData>, Void>() {
+        // Cards are added as rows stream in rather than after the whole list is read
+        loader = new SwingWorker<Integer, ExamData>() {
             @Override
-            protected java.util.List<ExamData> doInBackground() throws Exception {
-                java.util.List<ExamData> loadedExams = new ArrayList<>();
-                try (Connection conn = DBConnection.getConnection()) {
-                    String sql = "SELECT id, title, description, start_time, end_time, duration_minutes FROM exams";
-                    PreparedStatement ps = conn.prepareStatement(sql);
-                    ResultSet rs = ps.executeQuery();
-                    while (rs.next()) {
-                        ExamData exam = new ExamData(
-                                rs.getInt("id"),
-                                rs.getString("title"),
-                                rs.getString("description"),
-                                rs.getString("start_time"),
-                                rs.getString("end_time"),
-                                rs.getInt("duration_minutes"));
-                        loadedExams.add(exam);
-                    }
-                } catch (Exception ex) {
-                    throw ex;
+            protected Integer doInBackground() throws Exception {
+                return ExamCatalog.forStudent(studentUser.getId(),
+                        e -> publish(new ExamData(e.examId, e.title, e.description, e.startTime, e.endTime,
+                                e.durationMinutes)),
+                        this::isCancelled);
+            }
+
+            @Override
+            protected void process(java.util.List<ExamData> chunk) {
+                if (isCancelled()) return;
+                for (ExamData exam : chunk) {
+                    exams.add(exam);
+                    cardsPanel.add(createExamCard(exam));
+                    cardsPanel.add(Box.createVerticalStrut(18));
                 }
-                return loadedExams;
+                progressLabel.setText("Loading exams... " + exams.size());
+                cardsPanel.revalidate();
+                cardsPanel.repaint();
             }
 
             @Override
             protected void done() {
+                if (isCancelled()) return;
                 try {
-                    exams.clear();
-                    cardsPanel.removeAll();
-                    java.util.List<ExamData> loadedExams = get();
-                    int count = 0;
-                    for (ExamData exam : loadedExams) {
-                        exams.add(exam);
-                        cardsPanel.add(createExamCard(exam));
-                        cardsPanel.add(Box.createVerticalStrut(18));
-                        count++;
-                    }
-                    progressLabel.setText(count + " exam(s) available");
+                    get();
+                    progressLabel.setText(exams.size() + " exam(s) available");
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(ExamListPanel.this, "Error loading exams: " + ex.getMessage());
                     progressLabel.setText("Failed to load exams");
@@ -108,7 +98,7 @@ public class ExamListPanel extends JPanel {
                 cardsPanel.repaint();
             }
         };
-        worker.execute();
+        loader.execute();
     }
 
     private JPanel createExamCard(ExamData exam) {
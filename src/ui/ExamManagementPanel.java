@@ -12,16 +12,21 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import model.ExamExporter;
 import model.ExamTransfer;
 import util.CryptoUtils;
 import util.PasswordUtils;
 import db.DBConnection;
+import db.ExamCache;
+import db.StatsService;
 import ui.QuestionManagementPanel;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.io.ObjectOutputStream;
-import java.io.ObjectInputStream;
+import net.ExamCodec;
+import net.ExamServer;
+import net.LiveSessions;
+import net.StudentCredentials;
+import net.SubmissionCollector;
 import java.io.IOException;
 
 
@@ -29,8 +34,9 @@ public class ExamManagementPanel extends JPanel {
     // UI Components
     private JTable examTable;
     private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, refreshButton, exportButton, lanServerButton;
+    private JButton addButton, editButton, deleteButton, refreshButton, exportButton, lanServerButton, liveViewButton;
     private JTextField searchField;
+    private JLabel lanStatusLabel;
     
     // Color Scheme
     private final Color primaryColor = new Color(0, 120, 215);
@@ -46,8 +52,10 @@ public class ExamManagementPanel extends JPanel {
     // Sample data (replace with database connection in real implementation)
     private final List<model.Exam> exams = new ArrayList<>();
 
-    private ServerSocket examServerSocket;
-    private Thread examServerThread;
+    private ExamServer examServer;
+    private SubmissionCollector submissionCollector;
+    private LiveSessions liveSessions;
+    private javax.swing.Timer lanStatusTimer;
 
     public ExamManagementPanel() {
         initUI();
@@ -228,17 +236,25 @@ public class ExamManagementPanel extends JPanel {
         deleteButton = createModernButton("Delete Exam", dangerColor);
         exportButton = createModernButton("Export Exam", new Color(52, 152, 219));
         lanServerButton = createModernButton("Start LAN Exam Server", new Color(52, 152, 219));
+        liveViewButton = createModernButton("Live Candidates", new Color(52, 152, 219));
 
         editButton.setEnabled(false);
         deleteButton.setEnabled(false);
         exportButton.setEnabled(false);
+        liveViewButton.setEnabled(false);
 
+        lanStatusLabel = new JLabel("LAN server: stopped");
+        lanStatusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        lanStatusLabel.setForeground(Color.WHITE);
+
+        buttonPanel.add(lanStatusLabel);
         buttonPanel.add(refreshButton);
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(exportButton);
         buttonPanel.add(lanServerButton);
+        buttonPanel.add(liveViewButton);
 
         add(buttonPanel, BorderLayout.SOUTH);
     }
@@ -302,6 +318,7 @@ public class ExamManagementPanel extends JPanel {
         refreshButton.addActionListener(e -> refreshData());
         exportButton.addActionListener(e -> exportSelectedExam());
         lanServerButton.addActionListener(e -> startLanExamServer());
+        liveViewButton.addActionListener(e -> showLiveCandidates());
     }
 
     private void filterTable(String query) {
@@ -574,7 +591,7 @@ public class ExamManagementPanel extends JPanel {
                 ps.executeUpdate();
             } else {
                 // Update existing exam in DB
-                String sql = "UPDATE exams SET title=?, description=?, start_time=?, end_time=?, duration_minutes=?, entry_password=?, exit_password=? WHERE id=?";
+                String sql = "UPDATE exams SET title=?, description=?, start_time=?, end_time=?, duration_minutes=?, entry_password=?, exit_password=?, version=version+1 WHERE id=?";
                 java.sql.PreparedStatement ps = conn.prepareStatement(sql);
                 ps.setString(1, title);
                 ps.setString(2, desc);
@@ -585,7 +602,9 @@ public class ExamManagementPanel extends JPanel {
                 ps.setString(7, exitPasswordHash);
                 ps.setInt(8, id);
                 ps.executeUpdate();
+                ExamCache.invalidate(id);
             }
+            StatsService.onExamsChanged();
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error saving exam: " + ex.getMessage());
         }
@@ -664,85 +683,214 @@ public class ExamManagementPanel extends JPanel {
         if (viewRow == -1) return;
         int modelRow = examTable.convertRowIndexToModel(viewRow);
         int examId = (int) tableModel.getValueAt(modelRow, 0);
-        try (java.sql.Connection conn = db.DBConnection.getConnection()) {
-            // Export exam as JSON
-          
-org.json.JSONObject examJson = model.ExamExporter.getExamAsJson(examId, conn);
-// Ensure entry_password and exit_password are present for import compatibility
-if (!examJson.has("entry_password") || examJson.isNull("entry_password")) {
-    examJson.put("entry_password", "");
-}
-if (!examJson.has("exit_password") || examJson.isNull("exit_password")) {
-    examJson.put("exit_password", "");
-}
-            String jsonString = examJson.toString(2); // Pretty print
-            String encrypted = util.CryptoUtils.encrypt(jsonString);
-            JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Export Exam to USB or File");
-            fileChooser.setSelectedFile(new java.io.File("exam_" + examId + ".exam"));
-            int userSelection = fileChooser.showSaveDialog(this);
-            if (userSelection == JFileChooser.APPROVE_OPTION) {
-                java.io.File file = fileChooser.getSelectedFile();
-                try (java.io.FileWriter fw = new java.io.FileWriter(file)) {
-                    fw.write(encrypted);
-                    fw.flush();
-                    JOptionPane.showMessageDialog(this, "Exam exported successfully!\nFile: " + file.getAbsolutePath());
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Exam to USB or File");
+        fileChooser.setSelectedFile(new java.io.File("exam_" + examId + ".exam"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        java.io.File file = fileChooser.getSelectedFile();
+        char[] passphrase = PassphrasePrompt.ask(this, "Export Exam", true);
+        if (passphrase == null) return;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        // Streams exam -> JSON -> encryption -> file; written beside the target and moved into place
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                java.nio.file.Path target = file.toPath().toAbsolutePath();
+                java.nio.file.Path tmp = java.nio.file.Files.createTempFile(target.getParent(), ".export", ".tmp");
+                try {
+                    int questions;
+                    try (java.sql.Connection conn = DBConnection.getConnection();
+                         java.io.Writer out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(
+                                 CryptoUtils.encryptingStream(new java.io.BufferedOutputStream(
+                                         java.nio.file.Files.newOutputStream(tmp), 64 * 1024), passphrase),
+                                 java.nio.charset.StandardCharsets.UTF_8), 64 * 1024)) {
+                        questions = ExamExporter.writeExam(examId, conn, out);
+                    }
+                    java.nio.file.Files.move(tmp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                    return questions;
+                } finally {
+                    java.nio.file.Files.deleteIfExists(tmp);
+                    java.util.Arrays.fill(passphrase, '\0');
                 }
             }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Export failed: " + ex.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE);
-        }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    int questions = get();
+                    JOptionPane.showMessageDialog(ExamManagementPanel.this, "Exam exported successfully!\nFile: "
+                            + file.getAbsolutePath() + "\nQuestions: " + questions
+                            + "\n\nThe importing admin will need the passphrase.");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(ExamManagementPanel.this, "Export failed: " + cause.getMessage(),
+                            "Export Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
     // Call this method to start the LAN exam server
     public void startExamServer(model.Exam exam, ArrayList<ui.ExamTakingPanel.QuestionData> questions, int port) {
-        ExamTransfer transfer = new ExamTransfer(exam, questions);
-        examServerThread = new Thread(() -> {
-            try {
-                examServerSocket = new ServerSocket(port);
-                while (!Thread.currentThread().isInterrupted()) {
-                    Socket client = examServerSocket.accept();
-                    ObjectOutputStream out = new ObjectOutputStream(client.getOutputStream());
-                    out.writeObject(transfer);
-                    out.flush();
-                    client.close();
-                }
-            } catch (IOException e) {
-                // Optionally show error in GUI
-            }
-        });
-        examServerThread.start();
+        stopExamServer();
+        try {
+            // Encode once; every client is served from the same read-only buffer
+            byte[] frame = ExamCodec.encode(new ExamTransfer(exam, questions), true);
+            // Shared so a student's hash is loaded once for the hello and the submission
+            StudentCredentials credentials = new StudentCredentials();
+            submissionCollector = new SubmissionCollector(exam.getId(), questions, credentials);
+            liveSessions = new LiveSessions(exam.getId(), questions.size(), credentials);
+            SubmissionCollector collector = submissionCollector;
+            LiveSessions live = liveSessions;
+            // Only a stored (hence authenticated) result marks the candidate as submitted
+            examServer = new ExamServer(port, frame, (submission, reply) -> collector.submit(submission, ack -> {
+                if (ack.ok) live.markSubmitted(submission.studentId);
+                reply.accept(ack);
+            }), liveSessions);
+            examServer.start();
+        } catch (IOException e) {
+            examServer = null;
+            stopInBackground(submissionCollector);
+            submissionCollector = null;
+            JOptionPane.showMessageDialog(this, "Could not start LAN exam server: " + e.getMessage(),
+                    "Server Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        lanServerButton.setText("Stop LAN Exam Server");
+        liveViewButton.setEnabled(true);
+        if (lanStatusTimer == null) {
+            lanStatusTimer = new javax.swing.Timer(1000, e -> updateLanStatus());
+        }
+        lanStatusTimer.start();
+        updateLanStatus();
     }
 
     public void stopExamServer() {
-        try {
-            if (examServerSocket != null) examServerSocket.close();
-            if (examServerThread != null) examServerThread.interrupt();
-        } catch (IOException e) {}
+        if (examServer != null) {
+            examServer.stop();
+            updateLanStatus();
+            examServer = null;
+        }
+        if (submissionCollector != null) {
+            // Flushes results that were already acked-pending before the server went away
+            stopInBackground(submissionCollector);
+            submissionCollector = null;
+        }
+        if (lanStatusTimer != null) {
+            lanStatusTimer.stop();
+        }
+        lanServerButton.setText("Start LAN Exam Server");
+        liveViewButton.setEnabled(false);
     }
 
-    private void startLanExamServer() {
-        int row = examTable.getSelectedRow();
-        if (row != -1) {
-            int examId = (int) tableModel.getValueAt(row, 0);
-            model.Exam selectedExam = null;
-            ArrayList<ui.ExamTakingPanel.QuestionData> questions = new ArrayList<>();
-            // Find the selected exam and its questions
-            for (model.Exam exam : exams) {
-                if (exam.getId() == examId) {
-                    selectedExam = exam;
-                    break;
+    /**
+     * Stops the collector on its own thread: stop() waits up to 10 s for the
+     * writer to drain. The thread is not a daemon, so exiting the app still
+     * lets queued results reach the database.
+     */
+    private static void stopInBackground(SubmissionCollector collector) {
+        new Thread(collector::stop, "lan-result-flush").start();
+    }
+
+    /** Refreshes the live LAN server counters shown next to the buttons. */
+    private void updateLanStatus() {
+        if (examServer == null) {
+            lanStatusLabel.setText("LAN server: stopped");
+            return;
+        }
+        ExamServer.Stats stats = examServer.getStats();
+        lanStatusLabel.setText(String.format(
+            "LAN :%d %s | %d connected, %d served, %d rejected, %d timed out | %.1f MB sent | p99 %.0f ms | %d/%d submissions stored",
+            examServer.getPort(), stats.running ? "running" : "stopped",
+            stats.connected, stats.served, stats.rejected, stats.timedOut,
+            stats.bytesSent / (1024.0 * 1024.0), stats.p99LatencyMillis,
+            submissionCollector != null ? submissionCollector.getStoredCount() : 0, stats.submissions));
+    }
+
+    /** Opens the live monitoring wall for every candidate syncing with the running LAN server. */
+    private void showLiveCandidates() {
+        LiveSessions live = liveSessions;
+        if (live == null) return;
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), "Live Candidates", Dialog.ModalityType.MODELESS);
+        JLabel summary = new JLabel(" ");
+        summary.setBorder(new EmptyBorder(6, 10, 6, 10));
+        Map<Integer, String> names = new ConcurrentHashMap<>();
+        ProctorWallPanel wall = new ProctorWallPanel(live, names, summary);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                try (java.sql.Connection conn = DBConnection.getConnection();
+                     java.sql.Statement st = conn.createStatement();
+                     java.sql.ResultSet rs = st.executeQuery("SELECT id, full_name FROM users WHERE role = 'student'")) {
+                    while (rs.next()) {
+                        String name = rs.getString("full_name");
+                        if (name != null) names.put(rs.getInt("id"), name);
+                    }
                 }
+                return null;
             }
-            if (selectedExam != null) {
-                // TODO: Load questions for the selected exam
-                // Example: questions = loadQuestionsForExam(selectedExam.getId());
-                
-                startExamServer(selectedExam, questions, 5000); // Port 5000
-                JOptionPane.showMessageDialog(this, "LAN Exam Server started on port 5000");
-            } else {
-                JOptionPane.showMessageDialog(this, "Selected exam not found", "Error", JOptionPane.ERROR_MESSAGE);
+
+            @Override
+            protected void done() {
+                wall.repaint();
             }
+        }.execute();
+
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.add(summary, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(wall), BorderLayout.CENTER);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private void startLanExamServer() {
+        if (examServer != null) {
+            stopExamServer();
+            return;
         }
+        int viewRow = examTable.getSelectedRow();
+        if (viewRow == -1) {
+            JOptionPane.showMessageDialog(this, "Select an exam to serve over LAN.");
+            return;
+        }
+        int examId = (int) tableModel.getValueAt(examTable.convertRowIndexToModel(viewRow), 0);
+        lanServerButton.setEnabled(false);
+        new SwingWorker<ExamTransfer, Void>() {
+            @Override
+            protected ExamTransfer doInBackground() throws Exception {
+                return loadExamTransfer(examId);
+            }
+
+            @Override
+            protected void done() {
+                lanServerButton.setEnabled(true);
+                try {
+                    ExamTransfer transfer = get();
+                    if (transfer == null) {
+                        JOptionPane.showMessageDialog(ExamManagementPanel.this, "Selected exam not found", "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    startExamServer(transfer.exam, transfer.questions, ExamServer.DEFAULT_PORT);
+                    if (examServer != null) {
+                        JOptionPane.showMessageDialog(ExamManagementPanel.this,
+                            "LAN Exam Server started on port " + ExamServer.DEFAULT_PORT
+                            + " (" + transfer.questions.size() + " questions)");
+                    }
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(ExamManagementPanel.this, "Error loading exam: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /** Loads the exam row and its questions for LAN distribution. */
+    private ExamTransfer loadExamTransfer(int examId) throws Exception {
+        ExamCache.Snapshot snapshot = ExamCache.getInstance().get(examId);
+        if (snapshot == null) return null;
+        return new ExamTransfer(snapshot.toExam(), new ArrayList<>(snapshot.getQuestions()));
     }
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package ui;
 
+import db.ActivityLogWriter;
+import db.AnswerStore;
 import db.DBConnection;
+import db.ExamCache;
+import db.StatsService;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
@@ -12,7 +16,14 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 import model.Exam;
 import model.User;
+import net.AnswerSync;
+import net.ExamClient;
+import net.ExamCodec;
+import util.AnswerJournal;
+import util.GradingEngine;
 import util.PasswordUtils;
+import util.ProctorEventBus;
+import util.ScreenshotService;
 
 
 public class ExamTakingPanel extends JPanel {
@@ -38,14 +49,22 @@ public class ExamTakingPanel extends JPanel {
     private JButton prevButton;
     private JButton submitButton;
     private JProgressBar progressBar;
-    private JPanel questionNavigationInnerPanel;
+    private QuestionNavigator questionNavigator;
     private JScrollPane questionNavScrollPane;
 
     private javax.swing.Timer examTimer;
     private int timeLeftSeconds;
+    private int resumeTimeLeftSeconds = -1; // Set when an unfinished attempt is recovered; 0 if its time ran out
     private long lastActivityTimestamp;
+    private AnswerJournal journal;
+    private String lanHost; // Set when the exam came from a LAN server; results go back to it
+    private int lanPort;
+    private AnswerSync answerSync; // Live progress stream to the proctor, LAN exams only
+    private AnswerStore answerStore; // Per-question answers in student_answers
+    private ScreenshotService screenshots; // Null when capture is disabled or unavailable
 
     private volatile boolean examSubmitted = false; // Prevent double submission
+    private volatile boolean submitting = false; // The submit thread still needs the journal and answer store
     private volatile boolean exitPromptActive = false; // Prevent multiple exit prompts
     
     public ExamTakingPanel(User user, Exam exam, JPanel parentPanel) {
@@ -71,7 +90,7 @@ public class ExamTakingPanel extends JPanel {
 
     /** Prompt user for the exam entry password. */
     private boolean promptExamEntryPassword() {
-        String entryPasswordHash = getExamPasswordHashFromDB("entry_password");
+        String entryPasswordHash = getExamPasswordHash(true);
         if (entryPasswordHash == null || entryPasswordHash.isEmpty()) {
             JOptionPane.showMessageDialog(
                 null,
@@ -117,7 +136,7 @@ public class ExamTakingPanel extends JPanel {
 
     /** Prompt user for the exam exit password when attempting to close/minimize. */
     private boolean promptExamExitPassword(JFrame parentFrame) {
-        String exitPasswordHash = getExamPasswordHashFromDB("exit_password");
+        String exitPasswordHash = getExamPasswordHash(false);
         if (exitPasswordHash == null || exitPasswordHash.isEmpty()) {
             JOptionPane.showMessageDialog(
                 parentFrame,
@@ -161,18 +180,12 @@ public class ExamTakingPanel extends JPanel {
         return false;
     }
 
-    /** Retrieves the hashed password from the database (entry_password or exit_password). */
-    private String getExamPasswordHashFromDB(String column) {
-        String hash = null;
-        String sql = "SELECT " + column + " FROM exams WHERE id = ?";
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, exam.getId());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    hash = rs.getString(1);
-                }
-            }
+    /** Returns the exam's entry or exit password hash, from the exam cache when it is current. */
+    private String getExamPasswordHash(boolean entry) {
+        try {
+            ExamCache.Snapshot snapshot = ExamCache.getInstance().get(exam.getId());
+            if (snapshot == null) return null;
+            return entry ? snapshot.entryPasswordHash : snapshot.exitPasswordHash;
         } catch (SQLException | IOException e) {
             JOptionPane.showMessageDialog(
                 this,
@@ -182,7 +195,7 @@ public class ExamTakingPanel extends JPanel {
             );
             e.printStackTrace();
         }
-        return hash;
+        return null;
     }
 
     /** Sets up the Swing UI components (without loading questions). */
@@ -203,10 +216,11 @@ public class ExamTakingPanel extends JPanel {
         JPanel navPanel = createNavigationPanel();
         add(navPanel, BorderLayout.SOUTH);
 
-        // Question Navigation: scrollable grid of question buttons
-        questionNavigationInnerPanel = new JPanel(new GridLayout(0, 5, 5, 5));
-        questionNavigationInnerPanel.setBackground(UIManager.getColor("Panel.background"));
-        questionNavScrollPane = new JScrollPane(questionNavigationInnerPanel);
+        // Question Navigation: scrollable grid of question cells
+        questionNavigator = new QuestionNavigator(COLOR_CURRENT, COLOR_ANSWERED, COLOR_UNANSWERED);
+        questionNavigator.setOnSelect(this::showQuestion);
+        questionNavScrollPane = new JScrollPane(questionNavigator);
+        questionNavScrollPane.getViewport().setBackground(UIManager.getColor("Panel.background"));
         questionNavScrollPane.setPreferredSize(new Dimension(120, 0));
         add(questionNavScrollPane, BorderLayout.EAST);
 
@@ -294,7 +308,19 @@ public class ExamTakingPanel extends JPanel {
                 String letter = String.valueOf((char) ('A' + idx));
                 QuestionData q = questions.get(currentIndex);
                 answers.put(q.id, letter);
-                updateQuestionNavigationPanel();
+                if (journal != null) {
+                    journal.recordAnswer(q.id, letter, timeLeftSeconds, currentIndex);
+                }
+                if (answerSync != null) {
+                    answerSync.answerChanged(q.id, letter);
+                }
+                if (answerStore != null) {
+                    answerStore.record(q.id, letter);
+                }
+                ProctorEventBus.getInstance().publish(new ProctorEventBus.Event(exam.getId(), studentUser.getId(),
+                        ProctorEventBus.Type.PROGRESS, System.currentTimeMillis(), answers.size(), currentIndex,
+                        timeLeftSeconds));
+                questionNavigator.setAnswered(currentIndex, true);
                 updateProgressDisplay();
             });
             optionGroup.add(optionButtons[i]);
@@ -474,51 +500,126 @@ public class ExamTakingPanel extends JPanel {
     private void submitExamInBackground() {
         if (examSubmitted) return;
         examSubmitted = true;
+        submitting = true;
         SwingUtilities.invokeLater(() -> {
+            if (examTimer != null) {
+                examTimer.stop(); // Otherwise it would reach zero later and log a false TIME_UP
+            }
             prevButton.setEnabled(false);
             nextButton.setEnabled(false);
             submitButton.setEnabled(false);
         });
         new Thread(() -> {
-            final int[] correctCount = {0};
-            for (QuestionData q : questions) {
-                String ansLetter = answers.getOrDefault(q.id, "");
-                if (!ansLetter.isEmpty() && ansLetter.equalsIgnoreCase(q.answer)) {
-                    correctCount[0]++;
-                }
-            }
-            String deleteSql = "DELETE FROM results WHERE exam_id = ? AND student_id = ?";
-            String insertSql = "INSERT INTO results (student_id, exam_id, score, total_questions) VALUES (?, ?, ?, ?)";
-            try (Connection conn = DBConnection.getConnection()) {
-                conn.setAutoCommit(false);
-                try (PreparedStatement psDelete = conn.prepareStatement(deleteSql)) {
-                    psDelete.setInt(1, exam.getId());
-                    psDelete.setInt(2, studentUser.getId());
-                    psDelete.executeUpdate();
-                }
-                try (PreparedStatement psInsert = conn.prepareStatement(insertSql)) {
-                    psInsert.setInt(1, studentUser.getId());
-                    psInsert.setInt(2, exam.getId());
-                    psInsert.setInt(3, correctCount[0]);
-                    psInsert.setInt(4, questions.size());
-                    psInsert.executeUpdate();
-                }
-                conn.commit();
-                SwingUtilities.invokeLater(() -> showResultDialog(correctCount[0], questions.size()));
-            } catch (SQLException | IOException e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(
-                        ExamTakingPanel.this,
-                        "An error occurred while submitting your exam: " + e.getMessage(),
-                        "Submission Error",
-                        JOptionPane.ERROR_MESSAGE
-                    );
-                });
+            try {
+                submitAttempt();
+            } finally {
+                submitting = false;
+                SwingUtilities.invokeLater(this::stopSession);
             }
         }).start();
     }
 
+    /** Grades and stores the attempt, over the LAN if possible; runs on the submit thread. */
+    private void submitAttempt() {
+        // Make sure the attempt's activity trail is in the DB before the result lands
+        ActivityLogWriter.getInstance().flush(5000);
+        Map<Integer, String> correct = new HashMap<>();
+        for (QuestionData q : questions) {
+            correct.put(q.id, q.answer);
+        }
+        GradingEngine.AnswerKey key = new GradingEngine.AnswerKey(correct);
+        long[] packed = key.pack(answers);
+        final int[] correctCount = {key.score(packed)};
+        AnswerStore store = answerStore;
+        if (lanHost != null && submitToLanServer()) {
+            return;
+        }
+        String deleteSql = "DELETE FROM results WHERE exam_id = ? AND student_id = ?";
+        String insertSql = "INSERT INTO results (student_id, exam_id, score, total_questions, answer_vector) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            // Answers, old result removal and the new result commit together: one short transaction
+            AnswerStore.Batch answerBatch = store != null ? store.writePending(conn) : null;
+            try (PreparedStatement psDelete = conn.prepareStatement(deleteSql)) {
+                psDelete.setInt(1, exam.getId());
+                psDelete.setInt(2, studentUser.getId());
+                psDelete.executeUpdate();
+            }
+            try (PreparedStatement psInsert = conn.prepareStatement(insertSql)) {
+                psInsert.setInt(1, studentUser.getId());
+                psInsert.setInt(2, exam.getId());
+                psInsert.setInt(3, correctCount[0]);
+                psInsert.setInt(4, questions.size());
+                psInsert.setBytes(5, key.encode(packed));
+                psInsert.executeUpdate();
+            }
+            conn.commit();
+            StatsService.onResultsRecorded(1, System.currentTimeMillis());
+            if (answerBatch != null) {
+                store.committed(answerBatch);
+            }
+            if (journal != null) {
+                journal.complete();
+                journal = null; // complete() closed it
+            }
+            SwingUtilities.invokeLater(() -> showResultDialog(correctCount[0], questions.size()));
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            SwingUtilities.invokeLater(() -> {
+                JOptionPane.showMessageDialog(
+                    ExamTakingPanel.this,
+                    "An error occurred while submitting your exam: " + e.getMessage(),
+                    "Submission Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            });
+        }
+    }
+
+    /** Points submission at the LAN server this exam was fetched from. */
+    public void setLanServer(String host, int port) {
+        this.lanHost = host;
+        this.lanPort = port;
+    }
+
+    /**
+     * Sends the answers to the LAN server, which grades and stores them.
+     * Returns false if the server could not be reached or did not store the
+     * result, so the caller can fall back to writing the result directly.
+     */
+    private boolean submitToLanServer() {
+        try {
+            ExamCodec.Ack ack = ExamClient.submit(lanHost, lanPort,
+                    new ExamCodec.Submission(exam.getId(), studentUser.getId(), new HashMap<>(answers)),
+                    studentUser.getPasswordHash());
+            if (!ack.ok) {
+                System.err.println("LAN server rejected submission: " + ack.message);
+                return false;
+            }
+            if (journal != null) {
+                journal.complete();
+                journal = null; // complete() closed it
+            }
+            SwingUtilities.invokeLater(() -> showResultDialog(ack.score, ack.totalQuestions));
+            return true;
+        } catch (IOException e) {
+            System.err.println("LAN submission failed, saving result directly: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Starts streaming progress to the LAN server, seeded with any recovered answers. */
+    private void startAnswerSync(int startIndex) {
+        if (lanHost == null || answerSync != null) return;
+        answerSync = new AnswerSync(lanHost, lanPort, exam.getId(), studentUser.getId(),
+                studentUser.getPasswordHash());
+        for (Map.Entry<Integer, String> e : answers.entrySet()) {
+            answerSync.answerChanged(e.getKey(), e.getValue());
+        }
+        int time = resumeTimeLeftSeconds >= 0 ? resumeTimeLeftSeconds : exam.getDurationMinutes() * 60;
+        answerSync.updatePosition(time, startIndex);
+    }
+
     /** Displays the question at the specified index, saving the previous answer. */
     private void showQuestion(int index) {
         if (index < 0 || index >= questions.size()) return;
@@ -549,7 +650,7 @@ public class ExamTakingPanel extends JPanel {
         updateProgressDisplay();
         prevButton.setEnabled(currentIndex > 0);
         nextButton.setEnabled(currentIndex < questions.size() - 1);
-        updateQuestionNavigationPanel();
+        questionNavigator.setCurrent(currentIndex);
     }
 
     /** Updates progress bar and label based on current index and answered count. */
@@ -566,30 +667,13 @@ public class ExamTakingPanel extends JPanel {
         ));
     }
 
-    /** Rebuilds the question navigation panel (GridLayout inside JScrollPane). */
+    /** Resyncs the whole navigator with the questions and answers, e.g. after loading or recovery. */
     private void updateQuestionNavigationPanel() {
-        questionNavigationInnerPanel.removeAll();
+        BitSet answered = new BitSet(questions.size());
         for (int i = 0; i < questions.size(); i++) {
-            JButton btn = new JButton(String.valueOf(i + 1));
-            QuestionData q = questions.get(i);
-            if (i == currentIndex) {
-                btn.setBackground(COLOR_CURRENT);
-            } else if (answers.containsKey(q.id)) {
-                btn.setBackground(COLOR_ANSWERED);
-            } else {
-                btn.setBackground(COLOR_UNANSWERED);
-            }
-            btn.setForeground(Color.WHITE);
-            btn.setFont(new Font(FONT_NAME, Font.BOLD, 12));
-            btn.setFocusPainted(false);
-            btn.setBorder(BorderFactory.createLineBorder(Color.GRAY));
-            btn.setPreferredSize(new Dimension(40, 30));
-            final int idx = i;
-            btn.addActionListener(e -> showQuestion(idx));
-            questionNavigationInnerPanel.add(btn);
+            if (answers.containsKey(questions.get(i).id)) answered.set(i);
         }
-        questionNavigationInnerPanel.revalidate();
-        questionNavigationInnerPanel.repaint();
+        questionNavigator.setState(questions.size(), currentIndex, answered);
     }
 
     /** Displays the results dialog after submission. */
@@ -666,12 +750,26 @@ public class ExamTakingPanel extends JPanel {
     /** Starts the countdown timer for the exam. */
     private void startTimer() {
         if (examTimer != null && examTimer.isRunning()) return; // Prevent multiple timers
-        timeLeftSeconds = exam.getDurationMinutes() * 60;
+        timeLeftSeconds = resumeTimeLeftSeconds >= 0 ? resumeTimeLeftSeconds : exam.getDurationMinutes() * 60;
         updateTimerLabel();
+        if (timeLeftSeconds <= 0) {
+            // Recovered attempt whose frozen remaining time had already reached zero before the crash
+            timeExpired();
+            return;
+        }
+        if (screenshots == null) {
+            screenshots = ScreenshotService.start(studentUser.getId(), exam.getId());
+        }
 
         examTimer = new javax.swing.Timer(1000, e -> {
             timeLeftSeconds--;
             updateTimerLabel();
+            if (journal != null && timeLeftSeconds % 5 == 0) {
+                journal.recordCheckpoint(timeLeftSeconds, currentIndex);
+            }
+            if (answerSync != null) {
+                answerSync.updatePosition(timeLeftSeconds, currentIndex);
+            }
 
             if (timeLeftSeconds == 300) {
                 logActivity("TIMER_WARNING", "5 minutes remaining.");
@@ -693,23 +791,23 @@ public class ExamTakingPanel extends JPanel {
 
             if (timeLeftSeconds <= 0) {
                 examTimer.stop();
-                logActivity("TIME_UP", "Exam time expired. Auto-submitting.");
-                SwingUtilities.invokeLater(() -> {
-                    Window window = SwingUtilities.getWindowAncestor(this);
-                    if (window instanceof JFrame) {
-                        ((JFrame) window).dispose();
-                    }
-                    if (parentPanel instanceof StudentDashboardPanel) {
-                        ((StudentDashboardPanel) parentPanel).showExamList();
-                    }
-                });
-                submitExamInBackground();
+                timeExpired();
             }
         });
         examTimer.setRepeats(true);
         examTimer.start();
     }
 
+    /** Closes the exam window and submits whatever has been answered. */
+    private void timeExpired() {
+        logActivity("TIME_UP", "Exam time expired. Auto-submitting.");
+        submitExamInBackground();
+        SwingUtilities.invokeLater(() -> {
+            Window window = SwingUtilities.getWindowAncestor(this);
+            disposeExamFrame(window instanceof JFrame ? (JFrame) window : null);
+        });
+    }
+
     /** Updates the timer label (mm:ss) and changes color in last 5 minutes. */
     private void updateTimerLabel() {
         int minutes = timeLeftSeconds / 60;
@@ -750,20 +848,19 @@ public class ExamTakingPanel extends JPanel {
         }).start();
     }
 
-    /** Logs an activity event to the database (activity_log table). */
+    /**
+     * Queues an activity event for the background activity_log writer and, for
+     * the events a proctor watches, publishes it live (and over the LAN sync
+     * link when there is one); never blocks the caller.
+     */
     private void logActivity(String eventType, String description) {
-        String sql = "INSERT INTO activity_log (student_id, exam_id, event_time, event_type, description) " +
-                     "VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, studentUser.getId());
-            ps.setInt(2, exam.getId());
-            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-            ps.setString(4, eventType);
-            ps.setString(5, description);
-            ps.executeUpdate();
-        } catch (SQLException | IOException ex) {
-            ex.printStackTrace();
+        ActivityLogWriter.getInstance().log(studentUser.getId(), exam.getId(), eventType, description);
+        ProctorEventBus.Type type = ProctorEventBus.Type.forActivity(eventType);
+        if (type == null) return;
+        ProctorEventBus.getInstance().publish(new ProctorEventBus.Event(exam.getId(), studentUser.getId(), type,
+                System.currentTimeMillis(), answers.size(), currentIndex, timeLeftSeconds));
+        if (answerSync != null) {
+            answerSync.event(type);
         }
     }
 
@@ -839,7 +936,9 @@ public class ExamTakingPanel extends JPanel {
         questions.clear();
         questions.addAll(transferredQuestions);
         answers.clear();
-        showQuestion(0);
+        int startIndex = openJournalAndRecover();
+        startAnswerSync(startIndex);
+        showQuestion(startIndex);
         updateQuestionNavigationPanel();
         updateProgressDisplay();
         // Optionally, start timer if not already started
@@ -854,23 +953,9 @@ public class ExamTakingPanel extends JPanel {
             @Override
             protected List<QuestionData> doInBackground() {
                 List<QuestionData> loaded = new ArrayList<>();
-                String sql = "SELECT id, question_text, option_a, option_b, option_c, option_d, correct_option FROM questions WHERE exam_id = ?";
-                try (Connection conn = DBConnection.getConnection();
-                     PreparedStatement ps = conn.prepareStatement(sql)) {
-                    ps.setInt(1, exam.getId());
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            loaded.add(new QuestionData(
-                                rs.getInt("id"),
-                                rs.getString("question_text"),
-                                rs.getString("option_a"),
-                                rs.getString("option_b"),
-                                rs.getString("option_c"),
-                                rs.getString("option_d"),
-                                rs.getString("correct_option")
-                            ));
-                        }
-                    }
+                try {
+                    ExamCache.Snapshot snapshot = ExamCache.getInstance().get(exam.getId());
+                    if (snapshot != null) loaded.addAll(snapshot.getQuestions());
                 } catch (SQLException | IOException e) {
                     SwingUtilities.invokeLater(() -> {
                         JOptionPane.showMessageDialog(
@@ -901,7 +986,7 @@ public class ExamTakingPanel extends JPanel {
                             ((StudentDashboardPanel) parentPanel).showExamList();
                         }
                     } else {
-                        showQuestion(0);
+                        showQuestion(openJournalAndRecover());
                         startTimer();
                         updateQuestionNavigationPanel();
                     }
@@ -912,6 +997,51 @@ public class ExamTakingPanel extends JPanel {
         }.execute();
     }
 
+    /**
+     * Opens the local answer journal and restores an unfinished attempt from it
+     * (answers and remaining time). Returns the question index to resume at.
+     */
+    private int openJournalAndRecover() {
+        if (journal != null) return 0;
+        int startIndex = 0;
+        try {
+            AnswerJournal.RecoveredAttempt recovered = AnswerJournal.recover(studentUser.getId(), exam.getId());
+            journal = AnswerJournal.open(studentUser.getId(), exam.getId());
+            if (recovered != null) {
+                Set<Integer> questionIds = new HashSet<>();
+                for (QuestionData q : questions) questionIds.add(q.id);
+                for (Map.Entry<Integer, String> e : recovered.answers.entrySet()) {
+                    if (questionIds.contains(e.getKey())) answers.put(e.getKey(), e.getValue());
+                }
+                // No time left means it expired before it could be submitted; startTimer submits it
+                resumeTimeLeftSeconds = Math.max(0, recovered.timeLeftSeconds);
+                if (recovered.currentIndex >= 0 && recovered.currentIndex < questions.size()) {
+                    startIndex = recovered.currentIndex;
+                }
+                logActivity("ATTEMPT_RECOVERED", "Restored " + answers.size() + " answer(s) from local journal.");
+                JOptionPane.showMessageDialog(
+                    this,
+                    resumeTimeLeftSeconds > 0
+                        ? "Your previous attempt was restored (" + answers.size() + " answer(s))."
+                        : "The time for your previous attempt has run out. It will be submitted with the "
+                            + answers.size() + " answer(s) you gave.",
+                    "Attempt Restored",
+                    JOptionPane.INFORMATION_MESSAGE
+                );
+            }
+        } catch (IOException e) {
+            // The exam can still run; answers just won't survive a crash
+            e.printStackTrace();
+        }
+        if (answerStore == null) {
+            answerStore = new AnswerStore(studentUser.getId(), exam.getId(), answers.isEmpty());
+            for (Map.Entry<Integer, String> e : answers.entrySet()) {
+                answerStore.record(e.getKey(), e.getValue());
+            }
+        }
+        return startIndex;
+    }
+
     /** Prompts the student to confirm submission, warns about unanswered questions. */
     private void confirmSubmission() {
         int unanswered = questions.size() - answers.size();
@@ -929,14 +1059,47 @@ public class ExamTakingPanel extends JPanel {
         submitExamInBackground();
     }
 
-    /** Disposes the exam frame and returns to the dashboard. */
+    /** Ends the session, disposes the exam frame (if any) and returns to the dashboard. */
     private void disposeExamFrame(JFrame frame) {
-        if (examTimer != null) {
-            examTimer.stop();
+        stopSession();
+        if (frame != null) {
+            frame.dispose();
         }
-        frame.dispose();
         if (parentPanel instanceof StudentDashboardPanel) {
             ((StudentDashboardPanel) parentPanel).showExamList();
         }
     }
+
+    /**
+     * Stops everything an attempt runs: the timer, the proctor sync, screen
+     * capture, and (once no submission is using them) the journal and answer
+     * store. Safe to call more than once; runs on the EDT. The submit thread
+     * calls it again when it finishes.
+     */
+    private void stopSession() {
+        if (examTimer != null) {
+            examTimer.stop();
+        }
+        ActivityLogWriter.getInstance().requestFlush();
+        if (answerSync != null) {
+            answerSync.close();
+            answerSync = null;
+        }
+        if (screenshots != null) {
+            // Waits for in-flight encodes and the last metadata batch; keep that off the EDT
+            ScreenshotService capture = screenshots;
+            screenshots = null;
+            new Thread(capture::close, "screenshot-shutdown").start();
+        }
+        if (submitting) return;
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (answerStore != null) {
+            AnswerStore store = answerStore;
+            answerStore = null;
+            new Thread(store::close, "answer-store-close").start();
+        }
+    }
 }
@@ -0,0 +1,113 @@
+package ui;
+
+import util.TableExporter;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a TableExporter in the background behind a small progress dialog with
+ * a Cancel button. The file name picks the format: .csv or .json, plus .gz
+ * to compress.
+ */
+public class ExportTask extends SwingWorker<Long, Long> {
+    private final TableExporter exporter;
+    private final File file;
+    private final long expectedRows;
+    private final Component parent;
+    private final JDialog dialog;
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel progressLabel = new JLabel("Starting export...");
+
+    private ExportTask(Component parent, String title, TableExporter exporter, File file, long expectedRows) {
+        this.parent = parent;
+        this.exporter = exporter;
+        this.file = file;
+        this.expectedRows = expectedRows;
+
+        dialog = new JDialog(SwingUtilities.getWindowAncestor(parent), title, Dialog.ModalityType.MODELESS);
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        content.add(progressLabel, BorderLayout.NORTH);
+        if (expectedRows > 0) {
+            progressBar.setMaximum((int) Math.min(Integer.MAX_VALUE, expectedRows));
+        } else {
+            progressBar.setIndeterminate(true);
+        }
+        content.add(progressBar, BorderLayout.CENTER);
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> cancel(false));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.add(cancelButton);
+        content.add(buttons, BorderLayout.SOUTH);
+        dialog.setContentPane(content);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.setSize(380, 140);
+        dialog.setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Asks where to save, then starts the export.
+     *
+     * @param expectedRows for the progress bar; 0 or less if not known
+     */
+    public static void start(Component parent, String title, String defaultFileName,
+                             TableExporter exporter, long expectedRows) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle(title);
+        FileNameExtensionFilter csv = new FileNameExtensionFilter("CSV (*.csv, *.csv.gz)", "csv", "gz");
+        FileNameExtensionFilter json = new FileNameExtensionFilter("JSON (*.json, *.json.gz)", "json", "gz");
+        fileChooser.addChoosableFileFilter(csv);
+        fileChooser.addChoosableFileFilter(json);
+        fileChooser.setFileFilter(defaultFileName.contains(".json") ? json : csv);
+        fileChooser.setSelectedFile(new File(defaultFileName));
+        if (fileChooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        File file = fileChooser.getSelectedFile();
+        String name = file.getName().toLowerCase();
+        if (!name.contains(".")) {
+            file = new File(file.getPath() + (fileChooser.getFileFilter() == json ? ".json" : ".csv"));
+        }
+        ExportTask task = new ExportTask(parent, title, exporter, file, expectedRows);
+        task.dialog.setVisible(true);
+        task.execute();
+    }
+
+    @Override
+    protected Long doInBackground() throws Exception {
+        return exporter.export(file.toPath(), TableExporter.formatFor(file.getName()),
+                TableExporter.gzipFor(file.getName()), this::publish, this::isCancelled);
+    }
+
+    @Override
+    protected void process(List<Long> chunks) {
+        long rows = chunks.get(chunks.size() - 1);
+        if (expectedRows > 0) {
+            progressBar.setValue((int) Math.min(progressBar.getMaximum(), rows));
+            progressLabel.setText(String.format("Exported %,d of %,d rows", rows, expectedRows));
+        } else {
+            progressLabel.setText(String.format("Exported %,d rows", rows));
+        }
+    }
+
+    @Override
+    protected void done() {
+        dialog.dispose();
+        try {
+            long rows = get();
+            JOptionPane.showMessageDialog(parent,
+                    String.format("Exported %,d rows to:\n%s", rows, file.getPath()));
+        } catch (CancellationException ex) {
+            JOptionPane.showMessageDialog(parent, "Export cancelled.");
+        } catch (InterruptedException | ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            cause.printStackTrace();
+            JOptionPane.showMessageDialog(parent, "Error exporting: " + cause.getMessage(),
+                    "Export Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
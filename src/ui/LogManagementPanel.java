@@ -1,6 +1,7 @@
 package ui;
 
 import db.DBConnection;
+import util.SuspicionEngine;
 import util.ThemeManager;
 
 import javax.swing.*;
@@ -9,11 +10,13 @@ import java.awt.*;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.List;
 import java.util.Vector;
 
 public class LogManagementPanel extends JPanel {
     private JTable logTable;
-    private DefaultTableModel tableModel;
+    private LogTableModel tableModel;
+    private JLabel statusLabel;
     private JComboBox<String> studentComboBox, examComboBox;
     private Vector<Integer> studentIds = new Vector<>();
     private Vector<Integer> examIds = new Vector<>();
@@ -33,18 +36,20 @@ public class LogManagementPanel extends JPanel {
         filterPanel.add(examComboBox);
         refreshButton = new JButton("Refresh");
         JButton clearButton = new JButton("Clear");
-        JButton exportButton = new JButton("Export CSV");
+        JButton exportButton = new JButton("Export");
+        JButton riskButton = new JButton("Risk Scores");
         filterPanel.add(refreshButton);
         filterPanel.add(clearButton);
         filterPanel.add(exportButton);
+        filterPanel.add(riskButton);
         add(filterPanel, BorderLayout.NORTH);
         // Table setup
-        tableModel = new DefaultTableModel(new String[]{"ID", "Student", "Exam", "Type", "Detail", "Timestamp"}, 0) {
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        statusLabel = new JLabel(" ");
+        tableModel = new LogTableModel(statusLabel::setText);
         logTable = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(logTable);
         add(scrollPane, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
         // Actions
         refreshButton.addActionListener(e -> loadLogs());
         studentComboBox.addActionListener(e -> loadLogs());
@@ -55,6 +60,7 @@ public class LogManagementPanel extends JPanel {
             loadLogs();
         });
         exportButton.addActionListener(e -> exportLogsToCSV());
+        riskButton.addActionListener(e -> showRiskScores());
         loadStudents();
         loadExams();
         loadLogs();
@@ -94,54 +100,86 @@ public class LogManagementPanel extends JPanel {
         }
     }
 
+    private Integer selectedStudentId() {
+        return studentComboBox.getSelectedIndex() > 0 ? studentIds.get(studentComboBox.getSelectedIndex() - 1) : null;
+    }
+
+    private Integer selectedExamId() {
+        return examComboBox.getSelectedIndex() > 0 ? examIds.get(examComboBox.getSelectedIndex() - 1) : null;
+    }
+
     private void loadLogs() {
-        tableModel.setRowCount(0);
-        Integer studentId = null, examId = null;
-        if (studentComboBox.getSelectedIndex() > 0) studentId = studentIds.get(studentComboBox.getSelectedIndex() - 1);
-        if (examComboBox.getSelectedIndex() > 0) examId = examIds.get(examComboBox.getSelectedIndex() - 1);
-        try (Connection conn = DBConnection.getConnection()) {
-            StringBuilder sql = new StringBuilder("SELECT a.id, u.full_name, e.title, a.event_type, a.description, a.event_time FROM activity_log a LEFT JOIN users u ON a.student_id=u.id LEFT JOIN exams e ON a.exam_id=e.id WHERE 1=1");
-            if (studentId != null) sql.append(" AND a.student_id=" + studentId);
-            if (examId != null) sql.append(" AND a.exam_id=" + examId);
-            sql.append(" ORDER BY a.event_time DESC");
-            PreparedStatement ps = conn.prepareStatement(sql.toString());
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                Vector<Object> row = new Vector<>();
-                row.add(rs.getInt(1));
-                row.add(rs.getString(2));
-                row.add(rs.getString(3));
-                row.add(rs.getString(4));
-                row.add(rs.getString(5));
-                row.add(rs.getString(6));
-                tableModel.addRow(row);
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error loading logs: " + ex.getMessage());
-        }
+        tableModel.setFilter(selectedStudentId(), selectedExamId());
     }
 
-    private void exportLogsToCSV() {
-        JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Export Logs to CSV");
-        fileChooser.setSelectedFile(new java.io.File("logs_export.csv"));
-        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try (java.io.FileWriter writer = new java.io.FileWriter(fileChooser.getSelectedFile())) {
-                // Write header
-                writer.append("ID,Student,Exam,Type,Detail,Timestamp\n");
-                for (int i = 0; i < tableModel.getRowCount(); i++) {
-                    writer.append(String.format("%s,%s,%s,%s,%s,%s\n",
-                        tableModel.getValueAt(i, 0),
-                        tableModel.getValueAt(i, 1),
-                        tableModel.getValueAt(i, 2),
-                        tableModel.getValueAt(i, 3),
-                        tableModel.getValueAt(i, 4),
-                        tableModel.getValueAt(i, 5)));
+    /**
+     * Replays the filtered sessions through the suspicion engine and lists every
+     * candidate by peak risk, flagged ones first, instead of leaving the
+     * proctor to spot patterns in raw rows.
+     */
+    private void showRiskScores() {
+        Integer studentId = selectedStudentId(), examId = selectedExamId();
+        DefaultTableModel model = new DefaultTableModel(new Object[] {
+            "Student", "Exam", "Peak Risk", "Current", "Window Switches", "Inactivity", "Answers", "Flagged For"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        JLabel status = new JLabel("Replaying activity...");
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), "Risk Scores", Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(status, BorderLayout.SOUTH);
+        dialog.setSize(900, 450);
+        dialog.setLocationRelativeTo(this);
+
+        SwingWorker<SuspicionEngine, Void> worker = new SwingWorker<SuspicionEngine, Void>() {
+            @Override
+            protected SuspicionEngine doInBackground() throws Exception {
+                return SuspicionEngine.replay(examId, studentId, this::isCancelled);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) return;
+                try {
+                    List<SuspicionEngine.Score> scores = get().scores();
+                    int flagged = 0;
+                    for (SuspicionEngine.Score s : scores) {
+                        if (s.isFlagged()) flagged++;
+                        model.addRow(new Object[] {
+                            nameOf(studentIds, studentComboBox, s.studentId), nameOf(examIds, examComboBox, s.examId),
+                            Math.round(s.peak), Math.round(s.score), s.focusLosses, s.idleWarnings, s.answers,
+                            s.reasons()
+                        });
+                    }
+                    status.setText(scores.size() + " sessions, " + flagged + " flagged (peak risk "
+                            + (int) SuspicionEngine.FLAG_THRESHOLD + " or more)");
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    status.setText("Could not compute risk scores: " + ex.getMessage());
                 }
-                JOptionPane.showMessageDialog(this, "Logs exported successfully.");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error exporting logs: " + ex.getMessage());
             }
-        }
+        };
+        dialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                worker.cancel(false);
+            }
+        });
+        worker.execute();
+        dialog.setVisible(true);
+    }
+
+    private static String nameOf(Vector<Integer> ids, JComboBox<String> names, int id) {
+        int i = ids.indexOf(id);
+        return i >= 0 ? names.getItemAt(i + 1) : "#" + id;
+    }
+
+    private void exportLogsToCSV() {
+        ExportTask.start(this, "Export Logs", "logs_export.csv", tableModel.createExporter(), tableModel.getRowCount());
     }
 }
@@ -0,0 +1,315 @@
+package ui;
+
+import db.DBConnection;
+import util.TableExporter;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Lazy activity_log table: rows are fetched a page at a time, newest first,
+ * only when the table asks for them, and only the most recently used pages
+ * are kept. Pages are located by keyset on (event_time, id) rather than
+ * OFFSET, so page 2000 costs the same as page 1 once its start is known.
+ *
+ * Each filter change takes a snapshot (row count and highest id) so rows
+ * logged while the admin scrolls do not shift the pages; Refresh picks them up.
+ *
+ * All methods are called on the EDT; queries run on one background loader.
+ */
+public class LogTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final String[] COLUMNS = {"ID", "Student", "Exam", "Type", "Detail", "Timestamp"};
+    static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+    private static final int PREFETCH_PAGES = 2;
+
+    private static final String SELECT =
+        "SELECT a.id, u.full_name, e.title, a.event_type, a.description, a.event_time FROM activity_log a "
+      + "LEFT JOIN users u ON a.student_id=u.id LEFT JOIN exams e ON a.exam_id=e.id";
+    private static final String ORDER = " ORDER BY a.event_time DESC, a.id DESC";
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "log-page-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Where a page starts: the (event_time, id) of the last row of the page before it. */
+    private static final class Key {
+        final Timestamp time;
+        final int id;
+
+        Key(Timestamp time, int id) {
+            this.time = time;
+            this.id = id;
+        }
+    }
+
+    private static final class Page {
+        final Object[][] rows;
+
+        Page(Object[][] rows) {
+            this.rows = rows;
+        }
+    }
+
+    /** One filter setting plus the snapshot bound taken when it was applied. */
+    private static final class Query {
+        final Integer studentId;
+        final Integer examId;
+        final int generation;
+        volatile long maxId = -1;
+        // Page start keys found so far; only touched on the loader thread
+        final Map<Integer, Key> pageStarts = new HashMap<>();
+
+        Query(Integer studentId, Integer examId, int generation) {
+            this.studentId = studentId;
+            this.examId = examId;
+            this.generation = generation;
+        }
+    }
+
+    private final Consumer<String> status;
+    private final Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private Query query;
+    private int generation = 0;
+    private int rowCount = 0;
+    private int lastPage = 0;
+    private volatile int wantedPage = 0;
+
+    /** @param status receives a short summary line, or an error message when a query fails */
+    public LogTableModel(Consumer<String> status) {
+        this.status = status;
+    }
+
+    /** Discards everything loaded and re-counts with the given filters (null = any). */
+    public void setFilter(Integer studentId, Integer examId) {
+        Query q = new Query(studentId, examId, ++generation);
+        query = q;
+        pages.clear();
+        loading.clear();
+        rowCount = 0;
+        lastPage = 0;
+        wantedPage = 0;
+        fireTableDataChanged();
+        status.accept("Loading...");
+        LOADER.execute(() -> {
+            try {
+                long[] countAndMax = count(q);
+                q.maxId = countAndMax[1];
+                SwingUtilities.invokeLater(() -> {
+                    if (q != query) return;
+                    rowCount = (int) Math.min(Integer.MAX_VALUE, countAndMax[0]);
+                    fireTableDataChanged();
+                    status.accept(String.format("%,d log entries", rowCount));
+                });
+            } catch (Exception ex) {
+                fail(q, ex);
+            }
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int pageNo = row / PAGE_SIZE;
+        Page page = pages.get(pageNo);
+        int direction = pageNo >= lastPage ? 1 : -1;
+        lastPage = pageNo;
+        wantedPage = pageNo;
+        request(pageNo);
+        for (int i = 1; i <= PREFETCH_PAGES; i++) {
+            request(pageNo + direction * i);
+        }
+        if (page == null) {
+            return column == 1 ? "Loading..." : null;
+        }
+        int offset = row % PAGE_SIZE;
+        return offset < page.rows.length ? page.rows[offset][column] : null;
+    }
+
+    private void request(int pageNo) {
+        if (pageNo < 0 || (long) pageNo * PAGE_SIZE >= rowCount) return;
+        if (pages.containsKey(pageNo) || !loading.add(pageNo)) return;
+        Query q = query;
+        LOADER.execute(() -> {
+            // The user may have scrolled far away while this waited in the queue
+            if (Math.abs(pageNo - wantedPage) > MAX_CACHED_PAGES / 2) {
+                SwingUtilities.invokeLater(() -> {
+                    if (q == query) loading.remove(pageNo);
+                });
+                return;
+            }
+            try {
+                Object[][] rows = loadPage(q, pageNo);
+                SwingUtilities.invokeLater(() -> {
+                    if (q != query) return;
+                    loading.remove(pageNo);
+                    pages.put(pageNo, new Page(rows));
+                    int first = pageNo * PAGE_SIZE;
+                    int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                    if (last >= first) fireTableRowsUpdated(first, last);
+                });
+            } catch (Exception ex) {
+                fail(q, ex);
+            }
+        });
+    }
+
+    private void fail(Query q, Exception ex) {
+        ex.printStackTrace();
+        SwingUtilities.invokeLater(() -> {
+            if (q == query) status.accept("Error loading logs: " + ex.getMessage());
+        });
+    }
+
+    /** Exporter for every row matching the current filters, in table order. */
+    public TableExporter createExporter() {
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, query, false);
+        sql.append(ORDER);
+        return new TableExporter(COLUMNS, sql.toString(), params.toArray());
+    }
+
+    private long[] count(Query q) throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*), COALESCE(MAX(a.id), 0) FROM activity_log a WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, q, false);
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = prepare(conn, sql, params);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    /** Loader thread only. */
+    private Object[][] loadPage(Query q, int pageNo) throws Exception {
+        try (Connection conn = DBConnection.getConnection()) {
+            Key start = pageNo == 0 ? null : q.pageStarts.get(pageNo);
+            if (pageNo > 0 && start == null) {
+                start = seek(conn, q, pageNo);
+            }
+            List<Object[]> rows = new ArrayList<>(PAGE_SIZE);
+            Key last = fetch(conn, q, start, rows);
+            if (rows.size() == PAGE_SIZE) q.pageStarts.put(pageNo + 1, last);
+            return rows.toArray(new Object[0][]);
+        }
+    }
+
+    /**
+     * Finds where a page starts when the user jumped past pages never loaded:
+     * steps from the nearest known page start with a small OFFSET over the
+     * index alone (no joins, no row reads).
+     */
+    private Key seek(Connection conn, Query q, int pageNo) throws SQLException {
+        int from = 0;
+        for (int p : q.pageStarts.keySet()) {
+            if (p <= pageNo && p > from) from = p;
+        }
+        Key base = from == 0 ? null : q.pageStarts.get(from);
+        StringBuilder sql = new StringBuilder("SELECT a.event_time, a.id FROM activity_log a WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, q, true);
+        appendKeyset(sql, params, base);
+        sql.append(ORDER).append(" LIMIT 1 OFFSET ?");
+        params.add((pageNo - from) * PAGE_SIZE - 1);
+        try (PreparedStatement ps = prepare(conn, sql, params);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) throw new SQLException("Log page " + pageNo + " is past the end");
+            Key key = new Key(rs.getTimestamp(1), rs.getInt(2));
+            q.pageStarts.put(pageNo, key);
+            return key;
+        }
+    }
+
+    /** Reads up to PAGE_SIZE rows after {@code after} into {@code rows}; returns the key of the last one. */
+    private Key fetch(Connection conn, Query q, Key after, List<Object[]> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        appendFilters(sql, params, q, true);
+        appendKeyset(sql, params, after);
+        sql.append(ORDER).append(" LIMIT ?");
+        params.add(PAGE_SIZE);
+        Key last = after;
+        try (PreparedStatement ps = prepare(conn, sql, params);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Timestamp time = rs.getTimestamp(6);
+                rows.add(new Object[]{rs.getInt(1), rs.getString(2), rs.getString(3),
+                        rs.getString(4), rs.getString(5), rs.getString(6)});
+                last = new Key(time, rs.getInt(1));
+            }
+        }
+        return last;
+    }
+
+    private static void appendFilters(StringBuilder sql, List<Object> params, Query q, boolean snapshot) {
+        if (q.studentId != null) {
+            sql.append(" AND a.student_id=?");
+            params.add(q.studentId);
+        }
+        if (q.examId != null) {
+            sql.append(" AND a.exam_id=?");
+            params.add(q.examId);
+        }
+        if (snapshot) {
+            sql.append(" AND a.id<=?");
+            params.add(q.maxId);
+        }
+    }
+
+    private static void appendKeyset(StringBuilder sql, List<Object> params, Key after) {
+        if (after == null) return;
+        // Spelled out rather than (a.event_time, a.id) < (?, ?) so MySQL plans it as an index range
+        sql.append(" AND (a.event_time<? OR (a.event_time=? AND a.id<?))");
+        params.add(after.time);
+        params.add(after.time);
+        params.add(after.id);
+    }
+
+    private static PreparedStatement prepare(Connection conn, StringBuilder sql, List<Object> params) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql.toString());
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+        return ps;
+    }
+}
@@ -232,6 +232,7 @@ public class LoginPanel extends JPanel {
                     User user = new User();
                     user.setId(rs.getInt("id"));
                     user.setUsername(rs.getString("username"));
+                    user.setPasswordHash(hash); // Signs LAN submissions (see ExamClient.submit)
                     user.setRole(rs.getString("role"));
                     user.setFullName(rs.getString("full_name"));
                     user.setEmail(rs.getString("email"));
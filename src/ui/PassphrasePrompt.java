@@ -0,0 +1,49 @@
+package ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+
+/** Asks for the passphrase that protects exported .exam files. */
+public final class PassphrasePrompt {
+    private static final int MIN_LENGTH = 8;
+
+    private PassphrasePrompt() {
+    }
+
+    /**
+     * Returns the passphrase, or null if the admin cancelled. With
+     * {@code confirm} (exporting) it must be typed twice and be at least
+     * MIN_LENGTH characters.
+     */
+    public static char[] ask(Component parent, String title, boolean confirm) {
+        while (true) {
+            JPasswordField field = new JPasswordField(20);
+            JPasswordField again = new JPasswordField(20);
+            JPanel panel = new JPanel(new GridLayout(0, 1, 0, 4));
+            panel.add(new JLabel(confirm ? "Passphrase for this exam file (share it with the importing admin):"
+                                         : "Passphrase of this exam file:"));
+            panel.add(field);
+            if (confirm) {
+                panel.add(new JLabel("Repeat the passphrase:"));
+                panel.add(again);
+            }
+            int option = JOptionPane.showConfirmDialog(parent, panel, title, JOptionPane.OK_CANCEL_OPTION,
+                    JOptionPane.PLAIN_MESSAGE);
+            if (option != JOptionPane.OK_OPTION) return null;
+            char[] passphrase = field.getPassword();
+            if (!confirm) return passphrase;
+            char[] repeated = again.getPassword();
+            boolean same = Arrays.equals(passphrase, repeated);
+            Arrays.fill(repeated, '\0');
+            if (passphrase.length < MIN_LENGTH) {
+                JOptionPane.showMessageDialog(parent, "Use at least " + MIN_LENGTH + " characters.");
+            } else if (!same) {
+                JOptionPane.showMessageDialog(parent, "The passphrases do not match.");
+            } else {
+                return passphrase;
+            }
+            Arrays.fill(passphrase, '\0');
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package ui;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import javax.swing.*;
+import net.LiveSessions;
+import util.ProctorEventBus;
+import util.SuspicionEngine;
+
+/**
+ * Live grid of candidate tiles for one exam, fed by the {@link ProctorEventBus}.
+ * The bus callback only records the event (progress is coalesced to the latest
+ * per candidate); a Swing timer applies everything at FRAME_MS intervals and
+ * repaints just the tiles that changed. Tiles are painted directly rather than
+ * being components, so hundreds of candidates cost one component. The same
+ * events feed a {@link SuspicionEngine}; tiles at or above its flag threshold
+ * are highlighted.
+ */
+public class ProctorWallPanel extends JComponent implements Scrollable {
+    private static final long serialVersionUID = 1L;
+    private static final int FRAME_MS = 100;
+    private static final int TILE_W = 170;
+    private static final int TILE_H = 86;
+    private static final int GAP = 8;
+    private static final long FLASH_MS = 5000;
+    private static final long STALE_MS = 10_000;
+    private static final Color ONLINE = Color.WHITE;
+    private static final Color FLAGGED = new Color(255, 236, 179);
+    private static final Color OFFLINE = new Color(225, 225, 225);
+    private static final Color SUBMITTED = new Color(200, 235, 205);
+    private static final Color ALERT = new Color(231, 76, 60);
+    private static final Color PROGRESS = new Color(52, 152, 219);
+
+    private final int examId;
+    private final int totalQuestions;
+    private final Map<Integer, String> names;
+    private final Map<Integer, ProctorEventBus.Event> latestProgress = new ConcurrentHashMap<>();
+    private final Queue<ProctorEventBus.Event> events = new ConcurrentLinkedQueue<>();
+    private final Consumer<ProctorEventBus.Event> subscriber = this::onEvent;
+    private final javax.swing.Timer frameTimer = new javax.swing.Timer(FRAME_MS, e -> applyPending());
+    private final JLabel summaryLabel;
+
+    // EDT only
+    private final List<Tile> tiles = new ArrayList<>();
+    private final Map<Integer, Tile> byStudent = new HashMap<>();
+    private final SuspicionEngine suspicion = new SuspicionEngine();
+    private long lastSweep = 0;
+
+    /** One candidate as drawn; only touched on the EDT. */
+    private static class Tile {
+        final int studentId;
+        int answered;
+        int currentIndex = -1;
+        int timeLeftSeconds = -1;
+        long lastSeen;
+        boolean connected;
+        boolean submitted;
+        boolean stale;
+        int windowSwitches;
+        int idleWarnings;
+        String lastAlert;
+        long flashUntil;
+        double risk;
+        double peakRisk;
+
+        Tile(int studentId) {
+            this.studentId = studentId;
+        }
+    }
+
+    /**
+     * @param live  current state to start from; later changes arrive through the bus
+     * @param names student names by id, may still be filling in
+     * @param summaryLabel label kept up to date with online/submitted/flagged counts
+     */
+    public ProctorWallPanel(LiveSessions live, Map<Integer, String> names, JLabel summaryLabel) {
+        this.examId = live.getExamId();
+        this.totalQuestions = live.getTotalQuestions();
+        this.names = names;
+        this.summaryLabel = summaryLabel;
+        setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        setToolTipText("");
+        for (LiveSessions.Snapshot s : live.snapshot()) {
+            Tile t = tile(s.studentId);
+            t.answered = s.answered;
+            t.currentIndex = s.currentIndex;
+            t.timeLeftSeconds = s.timeLeftSeconds;
+            t.lastSeen = s.lastSeenMillis;
+            t.connected = s.connected;
+            t.submitted = s.submitted;
+        }
+        frameTimer.setCoalesce(true);
+        addComponentListener(new java.awt.event.ComponentAdapter() {
+            private int columns = -1;
+
+            @Override
+            public void componentResized(java.awt.event.ComponentEvent e) {
+                // Column count follows the viewport width, and the height follows the column count
+                if (columns() != columns) {
+                    columns = columns();
+                    revalidate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        ProctorEventBus.getInstance().subscribe(subscriber);
+        frameTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        frameTimer.stop();
+        ProctorEventBus.getInstance().unsubscribe(subscriber);
+        super.removeNotify();
+    }
+
+    /** Bus callback, on the publisher's thread: record and return. */
+    private void onEvent(ProctorEventBus.Event event) {
+        if (event.examId != examId) return;
+        if (event.type == ProctorEventBus.Type.PROGRESS) {
+            latestProgress.put(event.studentId, event);
+        } else {
+            events.add(event);
+        }
+    }
+
+    /** Runs once per frame on the EDT. */
+    private void applyPending() {
+        Set<Tile> dirty = new HashSet<>();
+        boolean added = false;
+        for (Integer studentId : latestProgress.keySet()) {
+            ProctorEventBus.Event e = latestProgress.remove(studentId);
+            if (e == null) continue;
+            added |= !byStudent.containsKey(studentId);
+            dirty.add(apply(e));
+        }
+        ProctorEventBus.Event e;
+        while ((e = events.poll()) != null) {
+            added |= !byStudent.containsKey(e.studentId);
+            dirty.add(apply(e));
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSweep >= 1000) {
+            // Time-based changes: flashes running out and candidates going quiet
+            lastSweep = now;
+            for (Tile t : tiles) {
+                boolean stale = t.connected && !t.submitted && now - t.lastSeen > STALE_MS;
+                if (stale != t.stale || (t.flashUntil != 0 && t.flashUntil <= now)) {
+                    t.stale = stale;
+                    if (t.flashUntil <= now) t.flashUntil = 0;
+                    dirty.add(t);
+                }
+            }
+        }
+        if (added) {
+            revalidate();
+            repaint();
+        } else {
+            for (Tile t : dirty) repaint(bounds(tiles.indexOf(t)));
+        }
+        if (!dirty.isEmpty() || added) updateSummary();
+    }
+
+    private Tile apply(ProctorEventBus.Event e) {
+        Tile t = tile(e.studentId);
+        t.lastSeen = Math.max(t.lastSeen, e.time);
+        for (int i = t.answered; i < e.answered; i++) score(t, SuspicionEngine.ANSWER, e.time);
+        if (e.answered >= 0) t.answered = e.answered;
+        if (e.currentIndex >= 0) t.currentIndex = e.currentIndex;
+        if (e.timeLeftSeconds >= 0) t.timeLeftSeconds = e.timeLeftSeconds;
+        switch (e.type) {
+            case CONNECTED:
+            case PROGRESS:
+                t.connected = true;
+                break;
+            case DISCONNECTED:
+                t.connected = false;
+                break;
+            case SUBMITTED:
+                t.submitted = true;
+                break;
+            case WINDOW_SWITCH:
+                t.windowSwitches++;
+                alert(t, "Window switch", e.time);
+                score(t, SuspicionEngine.WINDOW_SWITCH, e.time);
+                break;
+            case INACTIVITY:
+                t.idleWarnings++;
+                alert(t, "Inactive", e.time);
+                score(t, SuspicionEngine.INACTIVITY, e.time);
+                break;
+            case TIME_UP:
+                alert(t, "Time up", e.time);
+                score(t, SuspicionEngine.TIME_UP, e.time);
+                break;
+            case TIMER_WARNING:
+                t.lastAlert = "Timer warning";
+                break;
+            default:
+                break;
+        }
+        return t;
+    }
+
+    private void score(Tile t, int event, long time) {
+        t.risk = suspicion.accept(examId, t.studentId, event, time);
+        t.peakRisk = Math.max(t.peakRisk, t.risk);
+    }
+
+    private static void alert(Tile t, String what, long time) {
+        t.lastAlert = what;
+        t.flashUntil = time + FLASH_MS;
+    }
+
+    private Tile tile(int studentId) {
+        Tile t = byStudent.get(studentId);
+        if (t == null) {
+            t = new Tile(studentId);
+            byStudent.put(studentId, t);
+            int i = 0;
+            while (i < tiles.size() && tiles.get(i).studentId < studentId) i++;
+            tiles.add(i, t);
+        }
+        return t;
+    }
+
+    private void updateSummary() {
+        if (summaryLabel == null) return;
+        int online = 0, submitted = 0, flagged = 0;
+        for (Tile t : tiles) {
+            if (t.submitted) submitted++;
+            else if (t.connected && !t.stale) online++;
+            if (t.peakRisk >= SuspicionEngine.FLAG_THRESHOLD) flagged++;
+        }
+        summaryLabel.setText(String.format("%d candidates | %d online | %d submitted | %d flagged",
+                tiles.size(), online, submitted, flagged));
+    }
+
+    private int columns() {
+        return Math.max(1, (getWidth() - GAP) / (TILE_W + GAP));
+    }
+
+    private Rectangle bounds(int index) {
+        int cols = columns();
+        return new Rectangle(GAP + (index % cols) * (TILE_W + GAP), GAP + (index / cols) * (TILE_H + GAP),
+                TILE_W, TILE_H);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        Rectangle clip = g2.getClipBounds();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < tiles.size(); i++) {
+            Rectangle r = bounds(i);
+            if (clip == null || clip.intersects(r)) paintTile(g2, tiles.get(i), r, now);
+        }
+        g2.dispose();
+    }
+
+    private void paintTile(Graphics2D g, Tile t, Rectangle r, long now) {
+        Color background = t.submitted ? SUBMITTED
+                : !t.connected || t.stale ? OFFLINE
+                : t.peakRisk >= SuspicionEngine.FLAG_THRESHOLD ? FLAGGED : ONLINE;
+        g.setColor(background);
+        g.fillRoundRect(r.x, r.y, r.width, r.height, 10, 10);
+        boolean flashing = t.flashUntil > now;
+        g.setColor(flashing ? ALERT : new Color(190, 190, 200));
+        g.setStroke(new BasicStroke(flashing ? 3f : 1f));
+        g.drawRoundRect(r.x, r.y, r.width - 1, r.height - 1, 10, 10);
+
+        FontMetrics fm = g.getFontMetrics();
+        int x = r.x + 8;
+        int y = r.y + 6 + fm.getAscent();
+        String risk = "Risk " + Math.round(t.risk);
+        int riskW = fm.stringWidth(risk);
+        g.setColor(t.peakRisk >= SuspicionEngine.FLAG_THRESHOLD ? ALERT : Color.GRAY);
+        g.drawString(risk, r.x + r.width - 8 - riskW, y);
+        g.setColor(Color.BLACK);
+        g.setFont(getFont().deriveFont(Font.BOLD));
+        g.drawString(clip(g, names.getOrDefault(t.studentId, "#" + t.studentId), r.width - 24 - riskW), x, y);
+        g.setFont(getFont());
+        y += fm.getHeight();
+        String status = t.submitted ? "Submitted" : !t.connected ? "Offline" : t.stale ? "No signal" : "Online";
+        String time = t.timeLeftSeconds < 0 ? "" : String.format("  %02d:%02d left", t.timeLeftSeconds / 60,
+                t.timeLeftSeconds % 60);
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(status + time, x, y);
+
+        // Answer progress bar
+        y += 6;
+        int barW = r.width - 16;
+        g.setColor(new Color(220, 220, 225));
+        g.fillRect(x, y, barW, 6);
+        g.setColor(PROGRESS);
+        if (totalQuestions > 0) g.fillRect(x, y, barW * Math.min(t.answered, totalQuestions) / totalQuestions, 6);
+        y += 6 + fm.getAscent() + 2;
+        g.setColor(Color.DARK_GRAY);
+        g.drawString(t.answered + "/" + totalQuestions + " answered"
+                + (t.currentIndex >= 0 ? ", on Q" + (t.currentIndex + 1) : ""), x, y);
+        y += fm.getHeight();
+        if (t.windowSwitches > 0 || t.idleWarnings > 0) {
+            g.setColor(flashing ? ALERT : new Color(160, 90, 0));
+            g.drawString(clip(g, "Switches " + t.windowSwitches + "  Idle " + t.idleWarnings
+                    + (t.lastAlert != null ? "  (" + t.lastAlert + ")" : ""), r.width - 16), x, y);
+        }
+    }
+
+    private static String clip(Graphics2D g, String text, int width) {
+        FontMetrics fm = g.getFontMetrics();
+        if (fm.stringWidth(text) <= width) return text;
+        while (text.length() > 1 && fm.stringWidth(text + "...") > width) text = text.substring(0, text.length() - 1);
+        return text + "...";
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        for (int i = 0; i < tiles.size(); i++) {
+            if (!bounds(i).contains(e.getPoint())) continue;
+            Tile t = tiles.get(i);
+            long ago = (System.currentTimeMillis() - t.lastSeen) / 1000;
+            return "<html><b>" + names.getOrDefault(t.studentId, "#" + t.studentId) + "</b><br>"
+                    + "Last heard from " + ago + "s ago<br>"
+                    + "Risk " + Math.round(t.risk) + " (peak " + Math.round(t.peakRisk) + ")<br>"
+                    + "Window switches: " + t.windowSwitches + ", inactivity warnings: " + t.idleWarnings
+                    + (t.lastAlert != null ? "<br>Last alert: " + t.lastAlert : "") + "</html>";
+        }
+        return null;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int cols = getWidth() > 0 ? columns() : 4;
+        int rows = Math.max(1, (tiles.size() + cols - 1) / cols);
+        return new Dimension(GAP + cols * (TILE_W + GAP), GAP + rows * (TILE_H + GAP));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(GAP + 5 * (TILE_W + GAP), GAP + 5 * (TILE_H + GAP));
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return TILE_H / 4;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -3,6 +3,9 @@ package ui;
 import model.Question;
 import ui.QuestionFormDialog;
 import db.DBConnection;
+import db.ExamCache;
+import db.StatsService;
+import util.ItemAnalysis;
 import util.ThemeManager;
 
 import javax.swing.*;
@@ -20,6 +23,8 @@ public class QuestionManagementPanel extends JPanel {
     private DefaultTableModel tableModel;
     private JButton addButton, editButton, deleteButton, refreshButton;
     private Vector<Integer> examIds = new Vector<>();
+    private JLabel analysisLabel;
+    private static final int FIRST_ANALYSIS_COLUMN = 7;
 
     public QuestionManagementPanel() {
         instance = this;
@@ -36,6 +41,9 @@ public class QuestionManagementPanel extends JPanel {
         examComboBox.setPreferredSize(new Dimension(220, 32));
         topPanel.add(selectExamLabel);
         topPanel.add(examComboBox);
+        analysisLabel = new JLabel(" ");
+        analysisLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        topPanel.add(analysisLabel);
         add(topPanel, BorderLayout.NORTH);
 
         // Search bar panel
@@ -72,7 +80,8 @@ public class QuestionManagementPanel extends JPanel {
         add(searchPanel, BorderLayout.BEFORE_FIRST_LINE);
 
         // Table
-        tableModel = new DefaultTableModel(new String[]{"ID", "Question", "A", "B", "C", "D", "Correct"}, 0) {
+        tableModel = new DefaultTableModel(new String[]{"ID", "Question", "A", "B", "C", "D", "Correct",
+                "p", "Discrim.", "Picks A/B/C/D %", "Flag"}, 0) {
             public boolean isCellEditable(int row, int column) {
                 return false;
             }
@@ -184,6 +193,78 @@ public class QuestionManagementPanel extends JPanel {
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error loading questions: " + ex.getMessage());
         }
+        loadItemAnalysis(examId);
+    }
+
+    /** Fills the analysis columns in the background; the report is cached until results or the key change. */
+    private void loadItemAnalysis(int examId) {
+        analysisLabel.setText("Analysing results...");
+        new SwingWorker<ItemAnalysis.Report, Void>() {
+            @Override
+            protected ItemAnalysis.Report doInBackground() throws Exception {
+                return ItemAnalysis.get(examId);
+            }
+
+            @Override
+            protected void done() {
+                int examIdx = examComboBox.getSelectedIndex();
+                if (examIdx == -1 || examIdx >= examIds.size() || examIds.get(examIdx) != examId) return;
+                try {
+                    showItemAnalysis(get());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    analysisLabel.setText("Item analysis unavailable: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void showItemAnalysis(ItemAnalysis.Report report) {
+        if (report.attempts == 0) {
+            analysisLabel.setText("No graded attempts with stored answers yet");
+            return;
+        }
+        analysisLabel.setText(String.format("%d attempts, mean %.1f (sd %.1f), KR-20 %s%s", report.attempts,
+                report.meanScore, report.scoreStdDev, format(report.kr20),
+                report.skippedAttempts > 0 ? ", " + report.skippedAttempts + " older attempts not included" : ""));
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            ItemAnalysis.ItemStats item = report.item((int) tableModel.getValueAt(row, 0));
+            if (item == null) continue;
+            StringBuilder picks = new StringBuilder();
+            for (int o = 0; o < 4; o++) {
+                if (o > 0) picks.append(" / ");
+                picks.append(Math.round(100.0 * item.optionCounts[o] / report.attempts));
+            }
+            tableModel.setValueAt(format(item.difficulty), row, FIRST_ANALYSIS_COLUMN);
+            tableModel.setValueAt(format(item.discrimination), row, FIRST_ANALYSIS_COLUMN + 1);
+            tableModel.setValueAt(picks.toString(), row, FIRST_ANALYSIS_COLUMN + 2);
+            tableModel.setValueAt(flag(item), row, FIRST_ANALYSIS_COLUMN + 3);
+        }
+    }
+
+    /**
+     * Usual rules of thumb: negative discrimination or a distractor whose takers
+     * outscore those who picked the key points at a wrong key; below 0.2 the item
+     * barely separates strong from weak students.
+     */
+    private static String flag(ItemAnalysis.ItemStats item) {
+        if (item.correctOption < 0) return "No key";
+        double keyMean = item.optionMeanScores[item.correctOption];
+        for (int o = 0; o < 4; o++) {
+            if (o != item.correctOption && item.optionMeanScores[o] > keyMean
+                    && item.optionCounts[o] > item.optionCounts[item.correctOption]) {
+                return "Check key (" + (char) ('A' + o) + "?)";
+            }
+        }
+        if (item.discrimination < 0) return "Check key";
+        if (item.difficulty > 0.95) return "Too easy";
+        if (item.difficulty < 0.2) return "Too hard";
+        if (item.discrimination < 0.2) return "Low discrimination";
+        return "";
+    }
+
+    private static String format(double v) {
+        return Double.isNaN(v) ? "-" : String.format("%.2f", v);
     }
 
 private void showQuestionForm(Question question) {
@@ -214,6 +295,9 @@ private void showQuestionForm(Question question) {
             ps.setString(6, d);
             ps.setString(7, correct);
             ps.executeUpdate();
+            ExamCache.bumpVersion(conn, examId);
+            ExamCache.invalidate(examId); // Autocommit: the bump is already committed
+            StatsService.onQuestionsChanged(1);
             loadQuestions();
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error adding question: " + ex.getMessage());
@@ -232,12 +316,23 @@ private void showQuestionForm(Question question) {
             ps.setString(6, correct);
             ps.setInt(7, id);
             ps.executeUpdate();
+            bumpSelectedExamVersion(conn);
             loadQuestions();
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error updating question: " + ex.getMessage());
         }
     }
 
+    /** The table only shows the selected exam's questions, so edits there belong to it. */
+    private void bumpSelectedExamVersion(Connection conn) throws java.sql.SQLException {
+        int examIdx = examComboBox.getSelectedIndex();
+        if (examIdx != -1 && examIdx < examIds.size()) {
+            int examId = examIds.get(examIdx);
+            ExamCache.bumpVersion(conn, examId);
+            ExamCache.invalidate(examId); // Autocommit: the bump is already committed
+        }
+    }
+
     private void editSelectedQuestion() {
         int row = questionTable.getSelectedRow();
         if (row == -1) {
@@ -269,7 +364,8 @@ private void showQuestionForm(Question question) {
                 String sql = "DELETE FROM questions WHERE id=?";
                 PreparedStatement ps = conn.prepareStatement(sql);
                 ps.setInt(1, id);
-                ps.executeUpdate();
+                StatsService.onQuestionsChanged(-ps.executeUpdate());
+                bumpSelectedExamVersion(conn);
                 loadQuestions();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error deleting question: " + ex.getMessage());
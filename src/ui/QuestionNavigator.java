@@ -0,0 +1,185 @@
+package ui;
+
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import javax.swing.*;
+
+/**
+ * Question navigator grid painted as one component: each question is a cell
+ * coloured current / answered / unanswered. Hit-testing is done here, and a
+ * state change repaints only the cells it affects, so moving between
+ * questions costs the same at 10 or 1000 questions.
+ */
+public class QuestionNavigator extends JComponent implements Scrollable {
+    private static final long serialVersionUID = 1L;
+    private static final int COLUMNS = 5;
+    private static final int GAP = 5;
+    private static final int CELL_H = 30;
+
+    private final Color currentColor;
+    private final Color answeredColor;
+    private final Color unansweredColor;
+    private final BitSet answered = new BitSet();
+    private int count = 0;
+    private int current = -1;
+    private int hover = -1;
+    private IntConsumer onSelect;
+
+    public QuestionNavigator(Color currentColor, Color answeredColor, Color unansweredColor) {
+        this.currentColor = currentColor;
+        this.answeredColor = answeredColor;
+        this.unansweredColor = unansweredColor;
+        setFont(new Font("Segoe UI", Font.BOLD, 12));
+        setToolTipText("");
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int i = cellAt(e.getPoint());
+                if (i >= 0 && onSelect != null) onSelect.accept(i);
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setHover(cellAt(e.getPoint()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setHover(-1);
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+    }
+
+    /** Called with the question index when a cell is clicked. */
+    public void setOnSelect(IntConsumer onSelect) {
+        this.onSelect = onSelect;
+    }
+
+    /** Replaces the whole state, e.g. after questions are loaded or an attempt is recovered. */
+    public void setState(int count, int current, BitSet answered) {
+        boolean resized = count != this.count;
+        this.count = count;
+        this.answered.clear();
+        this.answered.or(answered);
+        this.current = current;
+        if (resized) revalidate();
+        repaint();
+    }
+
+    public void setCurrent(int index) {
+        if (index == current) return;
+        int old = current;
+        current = index;
+        repaintCell(old);
+        repaintCell(index);
+        if (index >= 0 && index < count) scrollRectToVisible(cellBounds(index));
+    }
+
+    public void setAnswered(int index, boolean isAnswered) {
+        if (answered.get(index) == isAnswered) return;
+        answered.set(index, isAnswered);
+        repaintCell(index);
+    }
+
+    private void setHover(int index) {
+        if (index == hover) return;
+        int old = hover;
+        hover = index;
+        repaintCell(old);
+        repaintCell(index);
+    }
+
+    private void repaintCell(int index) {
+        if (index >= 0 && index < count) repaint(cellBounds(index));
+    }
+
+    private int cellWidth() {
+        return Math.max(1, (getWidth() - GAP * (COLUMNS + 1)) / COLUMNS);
+    }
+
+    Rectangle cellBounds(int index) {
+        int w = cellWidth();
+        return new Rectangle(GAP + (index % COLUMNS) * (w + GAP), GAP + (index / COLUMNS) * (CELL_H + GAP), w, CELL_H);
+    }
+
+    private int cellAt(Point p) {
+        int w = cellWidth();
+        int col = (p.x - GAP) / (w + GAP);
+        int row = (p.y - GAP) / (CELL_H + GAP);
+        if (p.x < GAP || p.y < GAP || col >= COLUMNS) return -1;
+        int index = row * COLUMNS + col;
+        return index < count && cellBounds(index).contains(p) ? index : -1;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        FontMetrics fm = g2.getFontMetrics(getFont());
+        g2.setFont(getFont());
+        // Only the rows that intersect the clip
+        int firstRow = Math.max(0, (clip.y - GAP) / (CELL_H + GAP));
+        int lastRow = (clip.y + clip.height) / (CELL_H + GAP);
+        int end = Math.min(count, (lastRow + 1) * COLUMNS);
+        for (int i = firstRow * COLUMNS; i < end; i++) {
+            Rectangle r = cellBounds(i);
+            if (!clip.intersects(r)) continue;
+            Color fill = i == current ? currentColor : answered.get(i) ? answeredColor : unansweredColor;
+            g2.setColor(i == hover ? fill.darker() : fill);
+            g2.fillRect(r.x, r.y, r.width, r.height);
+            g2.setColor(Color.GRAY);
+            g2.drawRect(r.x, r.y, r.width - 1, r.height - 1);
+            String label = String.valueOf(i + 1);
+            g2.setColor(Color.WHITE);
+            g2.drawString(label, r.x + (r.width - fm.stringWidth(label)) / 2,
+                    r.y + (r.height - fm.getHeight()) / 2 + fm.getAscent());
+        }
+        g2.dispose();
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int i = cellAt(e.getPoint());
+        if (i < 0) return null;
+        return "Question " + (i + 1) + (answered.get(i) ? " (answered)" : " (not answered)");
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int rows = (count + COLUMNS - 1) / COLUMNS;
+        return new Dimension(GAP + COLUMNS * (20 + GAP), GAP + rows * (CELL_H + GAP));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return CELL_H + GAP;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+}
@@ -1,12 +1,14 @@
 package ui;
 
 import db.DBConnection;
+import db.ResultRegrader;
+import util.ExamArchive;
+import util.TableExporter;
 import util.ThemeManager;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.io.FileWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -18,7 +20,7 @@ public class ResultManagementPanel extends JPanel {
     private JComboBox<String> studentComboBox, examComboBox;
     private Vector<Integer> studentIds = new Vector<>();
     private Vector<Integer> examIds = new Vector<>();
-    private JButton refreshButton, exportButton;
+    private JButton refreshButton, exportButton, activityButton, archiveButton, regradeButton;
 
     public ResultManagementPanel() {
         setLayout(new BorderLayout());
@@ -34,8 +36,14 @@ public class ResultManagementPanel extends JPanel {
         filterPanel.add(examComboBox);
         refreshButton = new JButton("Refresh");
         filterPanel.add(refreshButton);
-        exportButton = new JButton("Export CSV");
+        exportButton = new JButton("Export");
         filterPanel.add(exportButton);
+        activityButton = new JButton("Screen Activity");
+        filterPanel.add(activityButton);
+        archiveButton = new JButton("Archive Exam");
+        filterPanel.add(archiveButton);
+        regradeButton = new JButton("Re-grade Exam");
+        filterPanel.add(regradeButton);
         add(filterPanel, BorderLayout.NORTH);
         // Table setup
         tableModel = new DefaultTableModel(new String[]{"ID", "Student", "Exam", "Score", "Taken At"}, 0) {
@@ -49,6 +57,9 @@ public class ResultManagementPanel extends JPanel {
         studentComboBox.addActionListener(e -> loadResults());
         examComboBox.addActionListener(e -> loadResults());
         exportButton.addActionListener(e -> exportToCSV());
+        activityButton.addActionListener(e -> showScreenActivity());
+        archiveButton.addActionListener(e -> archiveExam());
+        regradeButton.addActionListener(e -> regradeExam());
         loadStudents();
         loadExams();
         loadResults();
@@ -114,28 +125,174 @@ public class ResultManagementPanel extends JPanel {
         }
     }
 
-    private void exportToCSV() {
+    /** Opens the screenshot change timeline for the selected result's student and exam. */
+    private void showScreenActivity() {
+        int row = resultTable.getSelectedRow();
+        if (row == -1) {
+            JOptionPane.showMessageDialog(this, "Select a result first.");
+            return;
+        }
+        int modelRow = resultTable.convertRowIndexToModel(row);
+        int resultId = (int) tableModel.getValueAt(modelRow, 0);
+        String title = tableModel.getValueAt(modelRow, 1) + " / " + tableModel.getValueAt(modelRow, 2);
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT student_id, exam_id FROM results WHERE id = ?")) {
+            ps.setInt(1, resultId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    new ScreenActivityDialog(SwingUtilities.getWindowAncestor(this), rs.getInt(1), rs.getInt(2), title)
+                        .setVisible(true);
+                }
+            }
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error loading screen activity: " + ex.getMessage());
+        }
+    }
+
+    /** Re-scores the selected exam's stored attempts against its current answer key. */
+    private void regradeExam() {
+        if (examComboBox.getSelectedIndex() <= 0) {
+            JOptionPane.showMessageDialog(this, "Select an exam to re-grade.");
+            return;
+        }
+        int examId = examIds.get(examComboBox.getSelectedIndex() - 1);
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Re-score every attempt at \"" + examComboBox.getSelectedItem() + "\" against the current answer key?",
+                "Re-grade Exam", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) return;
+        regradeButton.setEnabled(false);
+        new SwingWorker<ResultRegrader.Outcome, Void>() {
+            protected ResultRegrader.Outcome doInBackground() throws Exception {
+                return ResultRegrader.regrade(examId);
+            }
+
+            protected void done() {
+                regradeButton.setEnabled(true);
+                try {
+                    ResultRegrader.Outcome outcome = get();
+                    loadResults();
+                    String message = String.format("Re-graded %d attempt(s); %d score(s) changed.",
+                            outcome.regraded, outcome.changed);
+                    if (outcome.skipped > 0) {
+                        message += String.format("\n%d older result(s) have no stored answers and were left as they are.",
+                                outcome.skipped);
+                    }
+                    JOptionPane.showMessageDialog(ResultManagementPanel.this, message);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(ResultManagementPanel.this, "Error re-grading exam: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Writes the selected exam's results, activity log and students into a
+     * columnar archive (see util.ExamArchive) for analytics away from MySQL.
+     */
+    private void archiveExam() {
+        if (examComboBox.getSelectedIndex() <= 0) {
+            JOptionPane.showMessageDialog(this, "Select an exam to archive.");
+            return;
+        }
+        int examId = examIds.get(examComboBox.getSelectedIndex() - 1);
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Save Results as CSV");
-        int userSelection = fileChooser.showSaveDialog(this);
-        if (userSelection == JFileChooser.APPROVE_OPTION) {
-            try (FileWriter csvWriter = new FileWriter(fileChooser.getSelectedFile())) {
-                for (int i = 0; i < tableModel.getColumnCount(); i++) {
-                    csvWriter.append(tableModel.getColumnName(i));
-                    if (i < tableModel.getColumnCount() - 1) csvWriter.append(",");
+        fileChooser.setDialogTitle("Archive Exam");
+        fileChooser.setSelectedFile(new java.io.File("exam-" + examId + "." + ExamArchive.EXTENSION));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        java.nio.file.Path target = fileChooser.getSelectedFile().toPath();
+        archiveButton.setEnabled(false);
+        new SwingWorker<int[], Void>() {
+            protected int[] doInBackground() throws Exception {
+                java.util.Map<String, String> metadata = new java.util.LinkedHashMap<>();
+                ExamArchive.TableBuilder results = new ExamArchive.TableBuilder("results")
+                        .column("id", ExamArchive.ColumnType.SEQUENCE)
+                        .column("student_id", ExamArchive.ColumnType.ID)
+                        .column("exam_id", ExamArchive.ColumnType.ID)
+                        .column("score", ExamArchive.ColumnType.INT)
+                        .column("total_questions", ExamArchive.ColumnType.INT)
+                        .column("taken_at", ExamArchive.ColumnType.TIME);
+                ExamArchive.TableBuilder log = new ExamArchive.TableBuilder("activity_log")
+                        .column("id", ExamArchive.ColumnType.SEQUENCE)
+                        .column("student_id", ExamArchive.ColumnType.ID)
+                        .column("exam_id", ExamArchive.ColumnType.ID)
+                        .column("event_time", ExamArchive.ColumnType.TIME)
+                        .column("event_type", ExamArchive.ColumnType.STRING)
+                        .column("description", ExamArchive.ColumnType.STRING);
+                ExamArchive.TableBuilder students = new ExamArchive.TableBuilder("students")
+                        .column("id", ExamArchive.ColumnType.SEQUENCE)
+                        .column("username", ExamArchive.ColumnType.STRING)
+                        .column("full_name", ExamArchive.ColumnType.STRING);
+                try (Connection conn = DBConnection.getConnection()) {
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "SELECT id, title, start_time, end_time, end_time > NOW() FROM exams WHERE id = ?")) {
+                        ps.setInt(1, examId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (!rs.next()) throw new java.sql.SQLException("Exam " + examId + " no longer exists");
+                            metadata.put("exam_id", String.valueOf(examId));
+                            metadata.put("exam_title", rs.getString(2));
+                            if (rs.getString(3) != null) metadata.put("start_time", rs.getString(3));
+                            if (rs.getString(4) != null) metadata.put("end_time", rs.getString(4));
+                            metadata.put("still_open", String.valueOf(rs.getBoolean(5)));
+                        }
+                    }
+                    metadata.put("archived_at", new java.sql.Timestamp(System.currentTimeMillis()).toString());
+                    fill(conn, results, "SELECT id, student_id, exam_id, score, total_questions, taken_at FROM results "
+                            + "WHERE exam_id = ? ORDER BY taken_at, id", 1);
+                    fill(conn, log, "SELECT id, student_id, exam_id, event_time, event_type, description FROM activity_log "
+                            + "WHERE exam_id = ? ORDER BY event_time, id", 1);
+                    fill(conn, students, "SELECT id, username, full_name FROM users WHERE id IN "
+                            + "(SELECT student_id FROM results WHERE exam_id = ? UNION SELECT student_id FROM activity_log WHERE exam_id = ?) "
+                            + "ORDER BY id", 2);
                 }
-                csvWriter.append("\n");
-                for (int row = 0; row < tableModel.getRowCount(); row++) {
-                    for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                        csvWriter.append(String.valueOf(tableModel.getValueAt(row, col)));
-                        if (col < tableModel.getColumnCount() - 1) csvWriter.append(",");
+                ExamArchive.write(target, metadata, java.util.Arrays.asList(results, log, students));
+                return new int[]{results.getRowCount(), log.getRowCount()};
+            }
+
+            /** Streams the query (each of its {@code binds} parameters is examId) into the table, unbuffered. */
+            private void fill(Connection conn, ExamArchive.TableBuilder table, String sql, int binds) throws Exception {
+                try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    ps.setFetchSize(Integer.MIN_VALUE);
+                    for (int i = 1; i <= binds; i++) ps.setInt(i, examId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) table.addRow(rs);
                     }
-                    csvWriter.append("\n");
                 }
-                JOptionPane.showMessageDialog(this, "Results exported successfully.");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error exporting CSV: " + ex.getMessage());
             }
+
+            protected void done() {
+                archiveButton.setEnabled(true);
+                try {
+                    int[] counts = get();
+                    JOptionPane.showMessageDialog(ResultManagementPanel.this, String.format(
+                            "Archived %,d results and %,d log events to:\n%s", counts[0], counts[1], target));
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(ResultManagementPanel.this, "Error archiving exam: " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void exportToCSV() {
+        Integer studentId = null, examId = null;
+        if (studentComboBox.getSelectedIndex() > 0) studentId = studentIds.get(studentComboBox.getSelectedIndex() - 1);
+        if (examComboBox.getSelectedIndex() > 0) examId = examIds.get(examComboBox.getSelectedIndex() - 1);
+        StringBuilder sql = new StringBuilder("SELECT results.id, u.full_name, e.title, results.score, results.taken_at FROM results LEFT JOIN users u ON results.student_id=u.id LEFT JOIN exams e ON results.exam_id=e.id WHERE 1=1");
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        if (studentId != null) {
+            sql.append(" AND results.student_id=?");
+            params.add(studentId);
+        }
+        if (examId != null) {
+            sql.append(" AND results.exam_id=?");
+            params.add(examId);
         }
+        sql.append(" ORDER BY results.taken_at DESC");
+        TableExporter exporter = new TableExporter(new String[]{"ID", "Student", "Exam", "Score", "Taken At"},
+                sql.toString(), params.toArray());
+        ExportTask.start(this, "Save Results", "results_export.csv", exporter, tableModel.getRowCount());
     }
 }
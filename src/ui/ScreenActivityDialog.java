@@ -0,0 +1,182 @@
+package ui;
+
+import db.DBConnection;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+import util.ScreenshotDelta;
+import util.ScreenshotStore;
+
+/**
+ * Per-student change-score timeline for one exam: one bar per capture, tall
+ * when the screen changed a lot. Clicking a bar shows that frame.
+ */
+public class ScreenActivityDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private final TimelineChart chart = new TimelineChart();
+    private final JLabel preview = new JLabel("Click the timeline to view a capture", SwingConstants.CENTER);
+    private final JLabel summary = new JLabel(" ");
+    private ScreenshotStore store;
+
+    public ScreenActivityDialog(Window owner, int studentId, int examId, String title) {
+        super(owner, "Screen Activity - " + title, ModalityType.MODELESS);
+        setLayout(new BorderLayout(0, 6));
+        chart.setPreferredSize(new Dimension(900, 140));
+        add(chart, BorderLayout.NORTH);
+        add(new JScrollPane(preview), BorderLayout.CENTER);
+        add(summary, BorderLayout.SOUTH);
+        setSize(960, 720);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        loadTimeline(studentId, examId);
+    }
+
+    private void loadTimeline(int studentId, int examId) {
+        new SwingWorker<Void, Void>() {
+            private final List<Frame> frames = new ArrayList<>();
+
+            @Override
+            protected Void doInBackground() throws Exception {
+                store = new ScreenshotStore(DBConnection.getConfig().getProperty("SCREENSHOT_DIR", "screenshots"));
+                String sql = "SELECT captured_at, change_score, frame_type, image_path FROM screenshots "
+                           + "WHERE exam_id = ? AND student_id = ? ORDER BY captured_at";
+                try (Connection conn = DBConnection.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, examId);
+                    ps.setInt(2, studentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            frames.add(new Frame(rs.getTimestamp(1).getTime(), rs.getFloat(2),
+                                    rs.getString(3), rs.getString(4)));
+                        }
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(ScreenActivityDialog.this, "Error loading screenshots: " + ex.getMessage());
+                    return;
+                }
+                chart.setFrames(frames);
+                int stored = 0;
+                for (Frame f : frames) {
+                    if (!"DUPLICATE".equals(f.type)) stored++;
+                }
+                summary.setText(String.format("  %d captures, %d stored (%d dropped as unchanged)",
+                        frames.size(), stored, frames.size() - stored));
+            }
+        }.execute();
+    }
+
+    private void showFrame(Frame frame) {
+        preview.setText("Loading...");
+        preview.setIcon(null);
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                return ScreenshotDelta.render(store, frame.path);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    preview.setIcon(new ImageIcon(get()));
+                    preview.setText(null);
+                } catch (Exception ex) {
+                    preview.setText("Capture unavailable: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private static class Frame {
+        final long time;
+        final float score;
+        final String type;
+        final String path;
+
+        Frame(long time, float score, String type, String path) {
+            this.time = time;
+            this.score = score;
+            this.type = type;
+            this.path = path;
+        }
+    }
+
+    /** Bar chart of change scores over the attempt; keyframes drawn darker. */
+    private class TimelineChart extends JComponent {
+        private static final long serialVersionUID = 1L;
+        private List<Frame> frames = new ArrayList<>();
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm");
+
+        TimelineChart() {
+            setToolTipText("");
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    Frame f = frameAt(e.getX());
+                    if (f != null) showFrame(f);
+                }
+            });
+        }
+
+        void setFrames(List<Frame> frames) {
+            this.frames = frames;
+            repaint();
+        }
+
+        private Frame frameAt(int x) {
+            if (frames.isEmpty()) return null;
+            int i = (int) ((long) x * frames.size() / Math.max(1, getWidth()));
+            return frames.get(Math.max(0, Math.min(frames.size() - 1, i)));
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            Frame f = frameAt(e.getX());
+            return f == null ? null : String.format("%s  change %.0f%%  (%s)",
+                    timeFormat.format(f.time), f.score * 100, f.type.toLowerCase());
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            int w = getWidth();
+            int h = getHeight() - 16;
+            g2.setColor(new Color(37, 37, 38));
+            g2.fillRect(0, 0, w, getHeight());
+            if (frames.isEmpty()) {
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawString("No screenshots recorded", 10, h / 2);
+                return;
+            }
+            int n = frames.size();
+            for (int i = 0; i < n; i++) {
+                Frame f = frames.get(i);
+                int x0 = (int) ((long) i * w / n);
+                int x1 = Math.max(x0 + 1, (int) ((long) (i + 1) * w / n));
+                int bar = Math.max(1, Math.round(f.score * h));
+                g2.setColor("KEYFRAME".equals(f.type) ? new Color(41, 128, 185)
+                        : "DELTA".equals(f.type) ? new Color(52, 152, 219) : new Color(90, 90, 90));
+                g2.fillRect(x0, h - bar, x1 - x0, bar);
+            }
+            g2.setColor(Color.LIGHT_GRAY);
+            g2.drawString(timeFormat.format(frames.get(0).time), 4, getHeight() - 3);
+            String end = timeFormat.format(frames.get(n - 1).time);
+            g2.drawString(end, w - g2.getFontMetrics().stringWidth(end) - 4, getHeight() - 3);
+        }
+    }
+}
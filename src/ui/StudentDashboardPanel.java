@@ -11,6 +11,7 @@ import javax.swing.border.MatteBorder;
 import model.Exam;
 import model.ExamTransfer;
 import model.User;
+import net.ExamClient;
 
 public class StudentDashboardPanel extends JPanel {
     private JPanel content;
@@ -440,13 +441,11 @@ public class StudentDashboardPanel extends JPanel {
     public void fetchExamFromServer(String serverIp, int port) {
         new Thread(() -> {
             try {
-                Socket socket = new Socket(serverIp, port);
-                ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-                ExamTransfer transfer = (ExamTransfer) in.readObject();
-                socket.close();
+                ExamTransfer transfer = ExamClient.fetchExam(serverIp, port);
 
                 SwingUtilities.invokeLater(() -> {
                     ExamTakingPanel examPanel = new ExamTakingPanel(studentUser, transfer.exam, this);
+                    examPanel.setLanServer(serverIp, port);
                     examPanel.loadQuestionsFromTransfer(transfer.questions);
                     content.removeAll();
                     content.add(examPanel, BorderLayout.CENTER);
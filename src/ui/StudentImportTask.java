@@ -0,0 +1,97 @@
+package ui;
+
+import db.StatsService;
+import util.StudentImporter;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.*;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a StudentImporter in the background behind a small progress dialog
+ * with a Cancel button, then reports how many accounts were created and
+ * where the rejected rows were written.
+ */
+public class StudentImportTask extends SwingWorker<StudentImporter.Outcome, Long> {
+    private final StudentImporter importer;
+    private final File file;
+    private final Component parent;
+    private final Runnable onFinished;
+    private final JDialog dialog;
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel progressLabel = new JLabel("Reading file...");
+
+    private StudentImportTask(Component parent, File file, Runnable onFinished) {
+        this.parent = parent;
+        this.file = file;
+        this.onFinished = onFinished;
+        this.importer = new StudentImporter(file.toPath());
+
+        dialog = new JDialog(SwingUtilities.getWindowAncestor(parent), "Import Students", Dialog.ModalityType.MODELESS);
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        content.add(progressLabel, BorderLayout.NORTH);
+        progressBar.setIndeterminate(true);
+        content.add(progressBar, BorderLayout.CENTER);
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> cancel(false));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.add(cancelButton);
+        content.add(buttons, BorderLayout.SOUTH);
+        dialog.setContentPane(content);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.setSize(380, 140);
+        dialog.setLocationRelativeTo(parent);
+    }
+
+    /** Asks for the CSV file, then starts the import; {@code onFinished} runs on the EDT afterwards. */
+    public static void start(Component parent, Runnable onFinished) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Students (CSV with username, password, full_name, email)");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("CSV (*.csv)", "csv"));
+        if (fileChooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        StudentImportTask task = new StudentImportTask(parent, fileChooser.getSelectedFile(), onFinished);
+        task.dialog.setVisible(true);
+        task.execute();
+    }
+
+    @Override
+    protected StudentImporter.Outcome doInBackground() throws Exception {
+        return importer.run(this::publish, this::isCancelled);
+    }
+
+    @Override
+    protected void process(List<Long> chunks) {
+        progressLabel.setText(String.format("Processed %,d rows", chunks.get(chunks.size() - 1)));
+    }
+
+    @Override
+    protected void done() {
+        dialog.dispose();
+        try {
+            StudentImporter.Outcome outcome = get();
+            StatsService.onStudentsChanged(outcome.imported);
+            String message = String.format("Imported %,d students from %s.", outcome.imported, file.getName());
+            if (outcome.errorFile != null) {
+                message += String.format("\n%,d rows were rejected; see:\n%s", outcome.rejected, outcome.errorFile);
+            }
+            JOptionPane.showMessageDialog(parent, message, "Import Students",
+                    outcome.errorFile != null ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+        } catch (CancellationException ex) {
+            // Chunks already committed stay; the totals are recounted from the database
+            StatsService.requestReconcile();
+            JOptionPane.showMessageDialog(parent, "Import cancelled. Students imported before cancelling were kept.");
+        } catch (InterruptedException | ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            cause.printStackTrace();
+            StatsService.requestReconcile();
+            JOptionPane.showMessageDialog(parent, "Error importing students: " + cause.getMessage(),
+                    "Import Error", JOptionPane.ERROR_MESSAGE);
+        }
+        onFinished.run();
+    }
+}
@@ -1,6 +1,7 @@
 package ui;
 
 import db.DBConnection;
+import db.StatsService;
 import java.awt.*;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -16,7 +17,7 @@ import util.PasswordUtils;
 public class StudentManagementPanel extends JPanel {
     private JTable studentTable;
     private DefaultTableModel tableModel;
-    private JButton addButton, editButton, deleteButton, resetPasswordButton, refreshButton;
+    private JButton addButton, importButton, editButton, deleteButton, resetPasswordButton, refreshButton;
     private JTextField searchField;
     private JLabel searchIcon;
     private ModernTableCellRenderer cellRenderer;
@@ -121,11 +122,13 @@ public class StudentManagementPanel extends JPanel {
         buttonPanel.setBorder(BorderFactory.createMatteBorder(1, 0, 0, 0, new Color(180, 180, 200)));
         refreshButton = new RoundedButton("Refresh", new Color(33, 150, 243), Color.WHITE);
         addButton = new RoundedButton("Add Student", new Color(76, 175, 80), Color.WHITE);
+        importButton = new RoundedButton("Import CSV", new Color(0, 150, 136), Color.WHITE);
         editButton = new RoundedButton("Edit Student", new Color(255, 193, 7), Color.WHITE);
         deleteButton = new RoundedButton("Delete Student", new Color(244, 67, 54), Color.WHITE);
         resetPasswordButton = new RoundedButton("Reset Password", new Color(3, 169, 244), Color.WHITE);
         buttonPanel.add(refreshButton);
         buttonPanel.add(addButton);
+        buttonPanel.add(importButton);
         buttonPanel.add(editButton);
         buttonPanel.add(deleteButton);
         buttonPanel.add(resetPasswordButton);
@@ -133,6 +136,7 @@ public class StudentManagementPanel extends JPanel {
 
         // Button actions
         addButton.addActionListener(e -> showStudentForm(null));
+        importButton.addActionListener(e -> StudentImportTask.start(this, this::loadStudents));
         editButton.addActionListener(e -> editSelectedStudent());
         deleteButton.addActionListener(e -> deleteSelectedStudent());
         resetPasswordButton.addActionListener(e -> resetSelectedStudentPassword());
@@ -295,6 +299,7 @@ public class StudentManagementPanel extends JPanel {
             ps.setString(3, fullName);
             ps.setString(4, email);
             ps.executeUpdate();
+            StatsService.onStudentsChanged(1);
             loadStudents();
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error adding student: " + ex.getMessage());
@@ -342,7 +347,7 @@ public class StudentManagementPanel extends JPanel {
                 String sql = "DELETE FROM users WHERE id=? AND role='student'";
                 PreparedStatement ps = conn.prepareStatement(sql);
                 ps.setInt(1, id);
-                ps.executeUpdate();
+                StatsService.onStudentsChanged(-ps.executeUpdate());
                 loadStudents();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error deleting student: " + ex.getMessage());
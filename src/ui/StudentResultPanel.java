@@ -2,12 +2,12 @@ package ui;
 
 import db.DBConnection;
 import model.User;
+import util.TableExporter;
 import util.ThemeManager;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.io.FileWriter;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -62,7 +62,7 @@ public class StudentResultPanel extends JPanel {
         buttonPanel.setOpaque(false);
 
         JButton refreshButton = createActionButton("Refresh", new Color(255, 255, 255, 120));
-        JButton exportButton = createActionButton("Export CSV", new Color(255, 255, 255, 120));
+        JButton exportButton = createActionButton("Export", new Color(255, 255, 255, 120));
 
         buttonPanel.add(refreshButton);
         buttonPanel.add(exportButton);
@@ -304,61 +304,14 @@ public class StudentResultPanel extends JPanel {
     }
 
     private void exportToCSVAsync() {
-        new SwingWorker<Void, Void>() {
-            protected Void doInBackground() {
-                try {
-                    exportToCSV();
-                } catch (Exception ex) {
-                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(StudentResultPanel.this,
-                            "Error exporting CSV: " + ex.getMessage(),
-                            "Export Error",
-                            JOptionPane.ERROR_MESSAGE));
-                }
-                return null;
-            }
-        }.execute();
-    }
-
-    private void exportToCSV() {
-        // All UI code must be on EDT
-        SwingUtilities.invokeLater(() -> {
-            JFileChooser fileChooser = new JFileChooser();
-            fileChooser.setDialogTitle("Save Results as CSV");
-            // Suggest a filename
-            fileChooser.setSelectedFile(new java.io.File(studentUser.getUsername() + "_exam_results.csv"));
-            // Set custom icon for dialog
-            java.net.URL iconUrl = getClass().getResource("/Icons/appIcons.png");
-            if (iconUrl != null) {
-                Window window = SwingUtilities.getWindowAncestor(this);
-                if (window instanceof JFrame) {
-                    ((JFrame) window).setIconImage(new ImageIcon(iconUrl).getImage());
-                }
-            }
-            if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-                try (FileWriter writer = new FileWriter(fileChooser.getSelectedFile())) {
-                    // Write header
-                    writer.append("Exam,Score,Percentage,Date\n");
-                    // Write data
-                    for (int i = 0; i < tableModel.getRowCount(); i++) {
-                        writer.append(String.format("\"%s\",%s,%s,%s\n",
-                                tableModel.getValueAt(i, 0),
-                                tableModel.getValueAt(i, 1),
-                                tableModel.getValueAt(i, 2),
-                                tableModel.getValueAt(i, 3)));
-                    }
-                    JOptionPane.showMessageDialog(this,
-                            "Results exported successfully to:\n" + fileChooser.getSelectedFile().getPath(),
-                            "Export Successful",
-                            JOptionPane.INFORMATION_MESSAGE,
-                            iconUrl != null ? new ImageIcon(iconUrl) : null);
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(this,
-                            "Error exporting CSV: " + ex.getMessage(),
-                            "Export Error",
-                            JOptionPane.ERROR_MESSAGE,
-                            iconUrl != null ? new ImageIcon(iconUrl) : null);
-                }
-            }
-        });
+        String sql = "SELECT e.title, CONCAT(r.score, '/', COALESCE(q.total, 0)), "
+                + "CONCAT(IF(q.total > 0, ROUND(r.score * 100 / q.total, 1), 0.0), '%'), r.taken_at "
+                + "FROM results r LEFT JOIN exams e ON r.exam_id=e.id "
+                + "LEFT JOIN (SELECT exam_id, COUNT(*) AS total FROM questions GROUP BY exam_id) q ON q.exam_id=r.exam_id "
+                + "WHERE r.student_id=? ORDER BY r.taken_at DESC";
+        TableExporter exporter = new TableExporter(new String[] { "Exam", "Score", "Percentage", "Date" },
+                sql, studentUser.getId());
+        ExportTask.start(this, "Save Results", studentUser.getUsername() + "_exam_results.csv", exporter,
+                tableModel.getRowCount());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,301 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of an in-progress exam attempt, one file per
+ * (student, exam). Callers only copy a fixed-size record into a memory buffer;
+ * a shared background thread appends it to the file and fsyncs in batches, so
+ * a power cut loses at most the last FLUSH_INTERVAL_MS of answers.
+ *
+ * Record layout (little overhead, fixed size):
+ *   type(1) questionId(4) answer(1) timeLeftSeconds(4) currentIndex(4) crc32(4)
+ */
+public class AnswerJournal implements AutoCloseable {
+    private static final String DIRECTORY = "journal";
+    private static final int MAGIC = 0x45584A31; // "EXJ1"
+    private static final int RECORD_SIZE = 18;
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final long COMPACT_THRESHOLD_BYTES = 256 * 1024;
+
+    private static final byte TYPE_ANSWER = 1;
+    private static final byte TYPE_CHECKPOINT = 2;
+    private static final byte TYPE_SUBMITTED = 3;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "answer-journal-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path path;
+    private final Object ioLock = new Object();
+    private final ScheduledFuture<?> flushTask;
+    private FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private ByteBuffer writing = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private final Map<Integer, Character> snapshotAnswers = new HashMap<>();
+    private int snapshotTimeLeft;
+    private int snapshotIndex;
+    private boolean closed = false;
+
+    /** State rebuilt from a journal left behind by an unfinished attempt. */
+    public static class RecoveredAttempt {
+        public final Map<Integer, String> answers;
+        public final int timeLeftSeconds;
+        public final int currentIndex;
+
+        RecoveredAttempt(Map<Integer, String> answers, int timeLeftSeconds, int currentIndex) {
+            this.answers = answers;
+            this.timeLeftSeconds = timeLeftSeconds;
+            this.currentIndex = currentIndex;
+        }
+    }
+
+    private AnswerJournal(Path path) throws IOException {
+        this.path = path;
+        boolean fresh = !Files.exists(path) || Files.size(path) < 4;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        if (fresh) {
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(MAGIC);
+            header.flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        channel.position(channel.size());
+        flushTask = FLUSHER.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static Path pathFor(int studentId, int examId) {
+        return Paths.get(DIRECTORY, "exam_" + examId + "_student_" + studentId + ".wal");
+    }
+
+    /**
+     * Opens (or creates) the journal for this attempt. Any surviving records are
+     * kept, so call {@link #recover} first if you want to restore them.
+     */
+    public static AnswerJournal open(int studentId, int examId) throws IOException {
+        Files.createDirectories(Paths.get(DIRECTORY));
+        RecoveredAttempt existing = recover(studentId, examId);
+        if (existing == null) {
+            // Submitted or unreadable leftovers: start a clean journal
+            Files.deleteIfExists(pathFor(studentId, examId));
+        }
+        AnswerJournal journal = new AnswerJournal(pathFor(studentId, examId));
+        if (existing != null) {
+            for (Map.Entry<Integer, String> e : existing.answers.entrySet()) {
+                journal.snapshotAnswers.put(e.getKey(), e.getValue().charAt(0));
+            }
+            journal.snapshotTimeLeft = existing.timeLeftSeconds;
+            journal.snapshotIndex = existing.currentIndex;
+            // Rewrite from the recovered state so new records never land behind a torn tail
+            synchronized (journal.ioLock) {
+                journal.compact();
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Replays the journal for an unfinished attempt. Returns null if there is no
+     * journal or the attempt was already submitted. A torn or corrupt tail
+     * (crash mid-write) is ignored; everything before it is recovered.
+     */
+    public static RecoveredAttempt recover(int studentId, int examId) throws IOException {
+        Path path = pathFor(studentId, examId);
+        if (!Files.exists(path)) return null;
+        byte[] data = Files.readAllBytes(path);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (buf.remaining() < 4 || buf.getInt() != MAGIC) return null;
+
+        Map<Integer, String> answers = new HashMap<>();
+        int timeLeft = -1;
+        int index = 0;
+        boolean any = false;
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= RECORD_SIZE) {
+            int start = buf.position();
+            crc.reset();
+            crc.update(data, start, RECORD_SIZE - 4);
+            byte type = buf.get();
+            int questionId = buf.getInt();
+            byte answer = buf.get();
+            int recordTimeLeft = buf.getInt();
+            int recordIndex = buf.getInt();
+            int storedCrc = buf.getInt();
+            if (storedCrc != (int) crc.getValue()) break;
+
+            if (type == TYPE_SUBMITTED) return null;
+            if (type == TYPE_ANSWER) {
+                if (answer == 0) {
+                    answers.remove(questionId);
+                } else {
+                    answers.put(questionId, String.valueOf((char) answer));
+                }
+            }
+            timeLeft = recordTimeLeft;
+            index = recordIndex;
+            any = true;
+        }
+        return any ? new RecoveredAttempt(answers, timeLeft, index) : null;
+    }
+
+    /** Records an answer change; a null or empty answer clears it. Cheap enough for the EDT. */
+    public void recordAnswer(int questionId, String answer, int timeLeftSeconds, int currentIndex) {
+        char letter = answer == null || answer.isEmpty() ? 0 : answer.charAt(0);
+        append(TYPE_ANSWER, questionId, letter, timeLeftSeconds, currentIndex);
+    }
+
+    /** Records the remaining time and current question, e.g. from the exam timer. */
+    public void recordCheckpoint(int timeLeftSeconds, int currentIndex) {
+        append(TYPE_CHECKPOINT, 0, (char) 0, timeLeftSeconds, currentIndex);
+    }
+
+    private synchronized void append(byte type, int questionId, char answer, int timeLeft, int currentIndex) {
+        if (closed) return;
+        if (pending.remaining() < RECORD_SIZE) {
+            ByteBuffer bigger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        int start = pending.position();
+        pending.put(type).putInt(questionId).put((byte) answer).putInt(timeLeft).putInt(currentIndex);
+        crc.reset();
+        crc.update(pending.array(), start, RECORD_SIZE - 4);
+        pending.putInt((int) crc.getValue());
+
+        if (type == TYPE_ANSWER) {
+            if (answer == 0) {
+                snapshotAnswers.remove(questionId);
+            } else {
+                snapshotAnswers.put(questionId, answer);
+            }
+        }
+        snapshotTimeLeft = timeLeft;
+        snapshotIndex = currentIndex;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Answer journal flush failed: " + e.getMessage());
+        }
+    }
+
+    /** Writes buffered records and fsyncs; runs on the flusher thread. */
+    public void flush() throws IOException {
+        synchronized (ioLock) {
+            ByteBuffer toWrite;
+            synchronized (this) {
+                if (pending.position() == 0 || !channel.isOpen()) return;
+                // Swap buffers so appends can continue while we write
+                toWrite = pending;
+                pending = writing;
+                writing = toWrite;
+                pending.clear();
+            }
+            toWrite.flip();
+            while (toWrite.hasRemaining()) channel.write(toWrite);
+            channel.force(false);
+            toWrite.clear();
+            if (channel.size() > COMPACT_THRESHOLD_BYTES) compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal as one record per answer plus a checkpoint and swaps
+     * it in with an atomic rename. The snapshot may already include records that
+     * are still buffered; replaying those again later is harmless.
+     */
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Integer, Character> answers;
+        int timeLeft;
+        int index;
+        synchronized (this) {
+            answers = new HashMap<>(snapshotAnswers);
+            timeLeft = snapshotTimeLeft;
+            index = snapshotIndex;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(4 + RECORD_SIZE * (answers.size() + 1));
+        buf.putInt(MAGIC);
+        CRC32 c = new CRC32();
+        for (Map.Entry<Integer, Character> e : answers.entrySet()) {
+            putRecord(buf, c, TYPE_ANSWER, e.getKey(), e.getValue(), timeLeft, index);
+        }
+        putRecord(buf, c, TYPE_CHECKPOINT, 0, (char) 0, timeLeft, index);
+        buf.flip();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) out.write(buf);
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.position(channel.size());
+    }
+
+    private static void putRecord(ByteBuffer buf, CRC32 c, byte type, int questionId, char answer, int timeLeft, int index) {
+        int start = buf.position();
+        buf.put(type).putInt(questionId).put((byte) answer).putInt(timeLeft).putInt(index);
+        c.reset();
+        c.update(buf.array(), start, RECORD_SIZE - 4);
+        buf.putInt((int) c.getValue());
+    }
+
+    /**
+     * Marks the attempt as submitted and removes the journal; there is nothing
+     * left to recover once the result is stored.
+     */
+    public void complete() {
+        append(TYPE_SUBMITTED, 0, (char) 0, 0, 0);
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Answer journal flush failed: " + e.getMessage());
+        }
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // A SUBMITTED record is already on disk, so recovery will ignore the file
+            new File(path.toString()).deleteOnExit();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushTask.cancel(false);
+        flushQuietly();
+        synchronized (this) {
+            closed = true;
+        }
+        synchronized (ioLock) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing useful to do on close
+            }
+        }
+    }
+}
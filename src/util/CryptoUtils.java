@@ -1,28 +1,347 @@
 package util;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+/**
+ * Encryption of .exam files.
+ *
+ * A file is a header followed by segments, each encrypted on its own with
+ * AES-256-GCM under a key derived from the admin's passphrase with PBKDF2:
+ * <pre>
+ *   header:  "OEPX" | format 1 | PBKDF2 iterations (int) | salt (16) | nonce prefix (8) | segment size (int)
+ *   segment: final flag (1) | ciphertext length (int) | ciphertext with 16-byte tag
+ * </pre>
+ * A segment's nonce is the file's nonce prefix plus the segment number, and
+ * the header and final flag are authenticated with it, so segments cannot be
+ * altered, reordered, dropped or cut off without the read failing. Since each
+ * segment stands alone, reading decrypts several ahead in parallel; both
+ * directions stream in constant memory.
+ *
+ * Files from older versions (Base64 text, AES/ECB under a built-in key) can
+ * still be read.
+ */
 public class CryptoUtils {
-    private static final String ALGORITHM = "AES";
-    // AES key must be 16, 24, or 32 bytes (128, 192, or 256 bits)
-    private static final String SECRET_KEY = "MySuperSecretKey"; // 16 chars = 128 bits
+    private static final byte[] MAGIC = {'O', 'E', 'P', 'X'};
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 16 + 8 + 4;
+    private static final int SALT_SIZE = 16;
+    private static final int NONCE_PREFIX_SIZE = 8;
+    private static final int TAG_BITS = 128;
+    private static final int TAG_SIZE = TAG_BITS / 8;
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+    private static final int ITERATIONS = 210_000;
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final int MAX_ITERATIONS = 10_000_000;
 
-    public static String encrypt(String data) throws Exception {
-        SecretKeySpec key = new SecretKeySpec(SECRET_KEY.getBytes(), ALGORITHM);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        cipher.init(Cipher.ENCRYPT_MODE, key);
-        byte[] encrypted = cipher.doFinal(data.getBytes("UTF-8"));
-        return Base64.getEncoder().encodeToString(encrypted);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Only for reading files written before the segmented format
+    private static final String LEGACY_ALGORITHM = "AES";
+    private static final String LEGACY_KEY = "MySuperSecretKey";
+
+    /**
+     * Returns a stream that encrypts everything written to it into
+     * {@code out}. Closing it writes the final segment and closes {@code out};
+     * without the close the file is unreadable.
+     */
+    public static OutputStream encryptingStream(OutputStream out, char[] passphrase) throws GeneralSecurityException {
+        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer h = ByteBuffer.wrap(header);
+        h.put(MAGIC).put((byte) FORMAT).putInt(ITERATIONS);
+        byte[] salt = new byte[SALT_SIZE];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        RANDOM.nextBytes(salt);
+        RANDOM.nextBytes(noncePrefix);
+        h.put(salt).put(noncePrefix).putInt(SEGMENT_SIZE);
+        return new SealingStream(out, deriveKey(passphrase, salt, ITERATIONS), header, noncePrefix);
+    }
+
+    /**
+     * Returns a stream of the decrypted content of an exam file. The
+     * passphrase is needed for the segmented format (see
+     * {@link #isPassphraseProtected}); a wrong one fails the first read. Legacy
+     * files use a key built into every copy of the app and carry no integrity
+     * check, so they are refused unless {@code allowLegacy} is set.
+     */
+    public static InputStream decryptingStream(InputStream encrypted, char[] passphrase, boolean allowLegacy)
+            throws IOException, GeneralSecurityException {
+        // The legacy Base64 decoder reads its input a byte at a time
+        InputStream in = new BufferedInputStream(encrypted, 64 * 1024);
+        in.mark(MAGIC.length);
+        byte[] magic = new byte[MAGIC.length];
+        int n = readFully(in, magic);
+        in.reset();
+        if (n < MAGIC.length || !Arrays.equals(magic, MAGIC)) {
+            if (!allowLegacy) throw new IOException("This is not a passphrase-protected exam file.");
+            return legacyDecryptingStream(in);
+        }
+        if (passphrase == null) throw new IOException("This exam file needs its passphrase.");
+        byte[] header = new byte[HEADER_SIZE];
+        if (readFully(in, header) < HEADER_SIZE) throw new IOException("The exam file is truncated.");
+        ByteBuffer h = ByteBuffer.wrap(header, MAGIC.length, HEADER_SIZE - MAGIC.length);
+        int format = h.get();
+        int iterations = h.getInt();
+        byte[] salt = new byte[SALT_SIZE];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+        h.get(salt).get(noncePrefix);
+        int segmentSize = h.getInt();
+        if (format != FORMAT) throw new IOException("Unsupported exam file format " + format + ".");
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS || segmentSize <= 0
+                || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IOException("The exam file header is damaged.");
+        }
+        return new OpeningStream(in, deriveKey(passphrase, salt, iterations), header, noncePrefix, segmentSize);
     }
 
-    public static String decrypt(String encryptedData) throws Exception {
-        SecretKeySpec key = new SecretKeySpec(SECRET_KEY.getBytes(), ALGORITHM);
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
+    /** Whether the file is in the segmented format, i.e. needs a passphrase to read. */
+    public static boolean isPassphraseProtected(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = new byte[MAGIC.length];
+            return readFully(in, magic) == MAGIC.length && Arrays.equals(magic, MAGIC);
+        }
+    }
+
+    private static InputStream legacyDecryptingStream(InputStream in) throws GeneralSecurityException {
+        SecretKeySpec key = new SecretKeySpec(LEGACY_KEY.getBytes(), LEGACY_ALGORITHM);
+        Cipher cipher = Cipher.getInstance(LEGACY_ALGORITHM);
         cipher.init(Cipher.DECRYPT_MODE, key);
-        byte[] decoded = Base64.getDecoder().decode(encryptedData);
-        byte[] decrypted = cipher.doFinal(decoded);
-        return new String(decrypted, "UTF-8");
+        // Line breaks in the Base64 text are ignored
+        return new CipherInputStream(Base64.getMimeDecoder().wrap(in), cipher);
+    }
+
+    private static SecretKey deriveKey(char[] passphrase, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, iterations, 256);
+        try {
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] nonce(byte[] prefix, int segment) {
+        return ByteBuffer.allocate(NONCE_PREFIX_SIZE + 4).put(prefix).putInt(segment).array();
+    }
+
+    private static int readFully(InputStream in, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            int r = in.read(b, n, b.length - n);
+            if (r < 0) break;
+            n += r;
+        }
+        return n;
+    }
+
+    /** Buffers one segment; a full segment is written when more data follows, the last one on close. */
+    private static final class SealingStream extends OutputStream {
+        private final DataOutputStream out;
+        private final SecretKey key;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final Cipher cipher;
+        private final byte[] buffer = new byte[SEGMENT_SIZE];
+        private int length;
+        private int segment;
+        private boolean headerWritten;
+        private boolean closed;
+
+        SealingStream(OutputStream out, SecretKey key, byte[] header, byte[] noncePrefix)
+                throws GeneralSecurityException {
+            this.out = new DataOutputStream(out);
+            this.key = key;
+            this.header = header;
+            this.noncePrefix = noncePrefix;
+            this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) throw new IOException("Stream closed");
+            writeHeader();
+            while (len > 0) {
+                if (length == buffer.length) seal(false);
+                int n = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            if (headerWritten) return;
+            out.write(header);
+            headerWritten = true;
+        }
+
+        private void seal(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce(noncePrefix, segment)));
+                cipher.updateAAD(header);
+                cipher.updateAAD(new byte[] {(byte) (last ? 1 : 0)});
+                byte[] sealed = cipher.doFinal(buffer, 0, length);
+                out.writeByte(last ? 1 : 0);
+                out.writeInt(sealed.length);
+                out.write(sealed);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encryption failed", e);
+            }
+            segment++;
+            length = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            try {
+                writeHeader();
+                seal(true);
+                closed = true;
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads segments in order on the caller's thread and decrypts up to one
+     * per core ahead on the common ForkJoinPool.
+     */
+    private static final class OpeningStream extends InputStream {
+        private final DataInputStream in;
+        private final SecretKey key;
+        private final byte[] header;
+        private final byte[] noncePrefix;
+        private final int segmentSize;
+        private final int readAhead = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private final ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+        private byte[] current = new byte[0];
+        private int position;
+        private int segment;
+        private boolean sawFinal;
+
+        OpeningStream(InputStream in, SecretKey key, byte[] header, byte[] noncePrefix, int segmentSize) {
+            this.in = new DataInputStream(in);
+            this.key = key;
+            this.header = header;
+            this.noncePrefix = noncePrefix;
+            this.segmentSize = segmentSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (position == current.length) {
+                if (!next()) return -1;
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean next() throws IOException {
+            while (!sawFinal && pending.size() < readAhead) {
+                pending.add(ForkJoinPool.commonPool().submit(readSegment()));
+            }
+            ForkJoinTask<byte[]> task = pending.poll();
+            if (task == null) return false;
+            try {
+                current = task.get();
+            } catch (ExecutionException e) {
+                // The pool wraps a Callable's checked exception in a RuntimeException
+                for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+                    if (t instanceof AEADBadTagException) {
+                        throw new IOException("The passphrase is wrong or the exam file is damaged.", t);
+                    }
+                }
+                throw new IOException("Decryption failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decrypting", e);
+            }
+            position = 0;
+            return true;
+        }
+
+        private Callable<byte[]> readSegment() throws IOException {
+            boolean last;
+            byte[] sealed;
+            try {
+                int flag = in.readUnsignedByte();
+                int length = in.readInt();
+                if (flag > 1 || length < TAG_SIZE || length > segmentSize + TAG_SIZE) {
+                    throw new IOException("The exam file is damaged.");
+                }
+                last = flag == 1;
+                sealed = new byte[length];
+                in.readFully(sealed);
+            } catch (EOFException e) {
+                throw new IOException("The exam file is truncated.", e);
+            }
+            if (last) {
+                sawFinal = true;
+                if (in.read() >= 0) throw new IOException("The exam file has data after its end.");
+            }
+            byte[] nonce = nonce(noncePrefix, segment++);
+            return () -> {
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+                cipher.updateAAD(header);
+                cipher.updateAAD(new byte[] {(byte) (last ? 1 : 0)});
+                return cipher.doFinal(sealed);
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ForkJoinTask<byte[]> task : pending) task.cancel(false);
+            pending.clear();
+            in.close();
+        }
     }
 }
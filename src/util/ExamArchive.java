@@ -0,0 +1,713 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar archive of a closed exam (its results, activity log and the
+ * students involved) for end-of-term analytics without MySQL. Each column is
+ * stored on its own, so a scan decodes only the columns it uses:
+ *
+ *   magic "XARC"(4) version(1) metadataCount metadata(key, value)*
+ *   tableCount table*  crc32(4) over everything before it
+ *   table:  name rowCount columnCount column*
+ *   column: name type(1) flags(1) nullCount min max rawLength storedLength data
+ *
+ * Numbers are varints (zigzag for min/max and deltas), strings are varint
+ * length + UTF-8. Column data by type:
+ *   ID       sorted dictionary of distinct values + bit-packed codes (exam/student ids)
+ *   INT      one zigzag varint per row (scores)
+ *   SEQUENCE zigzag delta from the previous row (row ids in insertion order)
+ *   TIME     like SEQUENCE, in epoch seconds (rows are written in time order)
+ *   STRING   dictionary in first-seen order (code 0 = null) + bit-packed codes
+ * A null bitmap precedes the data when nullCount > 0, and the data is
+ * deflated when that makes it smaller. min/max over the non-null values let
+ * a reader skip whole files, e.g. archives outside a date range.
+ */
+public final class ExamArchive {
+    public static final String EXTENSION = "xarc";
+    private static final int MAGIC = 0x58415243; // "XARC"
+    private static final int VERSION = 1;
+    private static final int FLAG_DEFLATE = 1;
+
+    public enum ColumnType { ID, INT, SEQUENCE, TIME, STRING }
+
+    private ExamArchive() {
+    }
+
+    // ---------------------------------------------------------------- writing
+
+    /** Collects a table row by row; column values are kept as primitives until written. */
+    public static class TableBuilder {
+        private final String name;
+        private final List<ColumnBuilder> columns = new ArrayList<>();
+        private int rows = 0;
+
+        public TableBuilder(String name) {
+            this.name = name;
+        }
+
+        public TableBuilder column(String name, ColumnType type) {
+            columns.add(new ColumnBuilder(name, type));
+            return this;
+        }
+
+        /** Appends the current row of {@code rs}; its columns must match this table's, in order. */
+        public void addRow(ResultSet rs) throws SQLException {
+            for (int c = 0; c < columns.size(); c++) {
+                ColumnBuilder col = columns.get(c);
+                switch (col.type) {
+                    case STRING:
+                        col.addString(rs.getString(c + 1));
+                        break;
+                    case TIME:
+                        Timestamp t = rs.getTimestamp(c + 1);
+                        col.addLong(t == null ? 0 : Math.floorDiv(t.getTime(), 1000L), t == null);
+                        break;
+                    default:
+                        long v = rs.getLong(c + 1);
+                        col.addLong(v, rs.wasNull());
+                        break;
+                }
+            }
+            rows++;
+        }
+
+        public int getRowCount() {
+            return rows;
+        }
+    }
+
+    private static class ColumnBuilder {
+        final String name;
+        final ColumnType type;
+        long[] values = new long[1024];
+        final List<String> dictionary = new ArrayList<>();
+        final Map<String, Integer> codes = new HashMap<>();
+        final BitSet nulls = new BitSet();
+        int size = 0;
+
+        ColumnBuilder(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        void addLong(long v, boolean isNull) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            if (isNull) nulls.set(size);
+            values[size++] = isNull ? 0 : v;
+        }
+
+        void addString(String s) {
+            int code = 0;
+            if (s != null) {
+                Integer known = codes.get(s);
+                if (known == null) {
+                    dictionary.add(s);
+                    known = dictionary.size();
+                    codes.put(s, known);
+                }
+                code = known;
+            } else {
+                nulls.set(size);
+            }
+            addLong(code, false);
+        }
+    }
+
+    /** Writes the tables to {@code target} (via a temp file, so a half-written archive never appears). */
+    public static void write(Path target, Map<String, String> metadata, List<TableBuilder> tables) throws IOException {
+        Buffer out = new Buffer(1 << 16);
+        out.putInt(MAGIC);
+        out.putByte(VERSION);
+        out.putVarint(metadata.size());
+        for (Map.Entry<String, String> e : metadata.entrySet()) {
+            out.putString(e.getKey());
+            out.putString(e.getValue());
+        }
+        out.putVarint(tables.size());
+        for (TableBuilder table : tables) {
+            out.putString(table.name);
+            out.putVarint(table.rows);
+            out.putVarint(table.columns.size());
+            for (ColumnBuilder col : table.columns) {
+                writeColumn(out, col, table.rows);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.data, 0, out.size);
+        out.putInt((int) crc.getValue());
+
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, ".archive", ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(tmp)) {
+                file.write(out.data, 0, out.size);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeColumn(Buffer out, ColumnBuilder col, int rows) {
+        int nullCount = col.nulls.cardinality();
+        long min = 0, max = 0;
+        if (col.type != ColumnType.STRING && nullCount < rows) {
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            for (int i = 0; i < rows; i++) {
+                if (col.nulls.get(i)) continue;
+                min = Math.min(min, col.values[i]);
+                max = Math.max(max, col.values[i]);
+            }
+        }
+
+        Buffer data = new Buffer(rows * 2 + 64);
+        if (nullCount > 0) {
+            byte[] bitmap = Arrays.copyOf(col.nulls.toByteArray(), (rows + 7) / 8);
+            data.put(bitmap, 0, bitmap.length);
+        }
+        switch (col.type) {
+            case ID: {
+                long[] dict = distinctSorted(col, rows);
+                data.putVarint(dict.length);
+                long prev = 0;
+                for (long v : dict) {
+                    data.putVarlong(zigzag(v - prev));
+                    prev = v;
+                }
+                int[] codes = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    codes[i] = col.nulls.get(i) ? 0 : Arrays.binarySearch(dict, col.values[i]);
+                }
+                data.putPacked(codes, bitsFor(dict.length - 1));
+                break;
+            }
+            case STRING: {
+                data.putVarint(col.dictionary.size());
+                for (String s : col.dictionary) data.putString(s);
+                int[] codes = new int[rows];
+                for (int i = 0; i < rows; i++) codes[i] = (int) col.values[i];
+                data.putPacked(codes, bitsFor(col.dictionary.size()));
+                break;
+            }
+            case INT:
+                for (int i = 0; i < rows; i++) data.putVarlong(zigzag(col.values[i]));
+                break;
+            default: { // SEQUENCE, TIME
+                long prev = 0;
+                for (int i = 0; i < rows; i++) {
+                    if (col.nulls.get(i)) continue;
+                    data.putVarlong(zigzag(col.values[i] - prev));
+                    prev = col.values[i];
+                }
+                break;
+            }
+        }
+
+        byte[] stored = data.data;
+        int storedLength = data.size;
+        int flags = 0;
+        byte[] packed = deflate(data.data, data.size);
+        if (packed.length < data.size) {
+            stored = packed;
+            storedLength = packed.length;
+            flags |= FLAG_DEFLATE;
+        }
+        out.putString(col.name);
+        out.putByte(col.type.ordinal());
+        out.putByte(flags);
+        out.putVarint(nullCount);
+        out.putVarlong(zigzag(min));
+        out.putVarlong(zigzag(max));
+        out.putVarint(data.size);
+        out.putVarint(storedLength);
+        out.put(stored, 0, storedLength);
+    }
+
+    private static long[] distinctSorted(ColumnBuilder col, int rows) {
+        long[] all = new long[rows - col.nulls.cardinality()];
+        int n = 0;
+        for (int i = 0; i < rows; i++) {
+            if (!col.nulls.get(i)) all[n++] = col.values[i];
+        }
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[distinct - 1]) all[distinct++] = all[i];
+        }
+        return Arrays.copyOf(all, distinct);
+    }
+
+    // ---------------------------------------------------------------- reading
+
+    /** An opened archive: the directory is parsed up front, column data only on demand. */
+    public static class Reader {
+        private final byte[] file;
+        private final Map<String, String> metadata = new LinkedHashMap<>();
+        private final Map<String, Table> tables = new LinkedHashMap<>();
+
+        private Reader(byte[] file) throws IOException {
+            this.file = file;
+            if (file.length < 9) throw new IOException("Not an exam archive");
+            CRC32 crc = new CRC32();
+            crc.update(file, 0, file.length - 4);
+            Cursor in = new Cursor(file, 0, file.length - 4);
+            if (in.getInt() != MAGIC) throw new IOException("Not an exam archive");
+            int version = in.getByte();
+            if (version != VERSION) throw new IOException("Unsupported archive version " + version);
+            if ((int) crc.getValue() != new Cursor(file, file.length - 4, file.length).getInt()) {
+                throw new IOException("Archive checksum mismatch (file damaged)");
+            }
+            int metaCount = in.getVarint();
+            for (int i = 0; i < metaCount; i++) {
+                metadata.put(in.getString(), in.getString());
+            }
+            int tableCount = in.getVarint();
+            for (int t = 0; t < tableCount; t++) {
+                Table table = new Table(in.getString(), in.getVarint());
+                int columnCount = in.getVarint();
+                for (int c = 0; c < columnCount; c++) {
+                    String name = in.getString();
+                    int type = in.getByte();
+                    if (type >= ColumnType.values().length) throw new IOException("Unknown column type " + type);
+                    ColumnInfo info = new ColumnInfo(table, name, ColumnType.values()[type], in.getByte(),
+                            in.getVarint(), unzigzag(in.getVarlong()), unzigzag(in.getVarlong()),
+                            in.getVarint(), in.getVarint(), in.pos);
+                    in.skip(info.storedLength);
+                    table.columns.put(name, info);
+                }
+                tables.put(table.name, table);
+            }
+        }
+
+        public static Reader open(Path path) throws IOException {
+            return new Reader(Files.readAllBytes(path));
+        }
+
+        public Map<String, String> getMetadata() {
+            return metadata;
+        }
+
+        public Table table(String name) throws IOException {
+            Table table = tables.get(name);
+            if (table == null) throw new IOException("Archive has no table " + name);
+            return table;
+        }
+
+        public List<String> getTableNames() {
+            return new ArrayList<>(tables.keySet());
+        }
+
+        /** One table's directory entry. */
+        public class Table {
+            public final String name;
+            public final int rowCount;
+            private final Map<String, ColumnInfo> columns = new LinkedHashMap<>();
+
+            Table(String name, int rowCount) {
+                this.name = name;
+                this.rowCount = rowCount;
+            }
+
+            public ColumnInfo info(String column) throws IOException {
+                ColumnInfo info = columns.get(column);
+                if (info == null) throw new IOException("Table " + name + " has no column " + column);
+                return info;
+            }
+
+            public List<String> getColumnNames() {
+                return new ArrayList<>(columns.keySet());
+            }
+
+            /** Decodes one column. */
+            public Column read(String column) throws IOException {
+                return info(column).decode();
+            }
+        }
+
+        /** Column statistics from the directory; available without decoding the data. */
+        public class ColumnInfo {
+            public final String name;
+            public final ColumnType type;
+            public final int nullCount;
+            public final long min;
+            public final long max;
+            public final int storedLength;
+            private final Table table;
+            private final int flags;
+            private final int rawLength;
+            private final int offset;
+
+            ColumnInfo(Table table, String name, ColumnType type, int flags, int nullCount, long min, long max,
+                       int rawLength, int storedLength, int offset) {
+                this.table = table;
+                this.name = name;
+                this.type = type;
+                this.flags = flags;
+                this.nullCount = nullCount;
+                this.min = min;
+                this.max = max;
+                this.rawLength = rawLength;
+                this.storedLength = storedLength;
+                this.offset = offset;
+            }
+
+            /** False when no row can hold a value in [from, to], so the scan can skip this table. */
+            public boolean mayContain(long from, long to) {
+                return nullCount < table.rowCount && max >= from && min <= to;
+            }
+
+            Column decode() throws IOException {
+                byte[] raw = file;
+                int start = offset;
+                int end = offset + storedLength;
+                if ((flags & FLAG_DEFLATE) != 0) {
+                    raw = inflate(file, offset, storedLength, rawLength);
+                    start = 0;
+                    end = rawLength;
+                }
+                int rows = table.rowCount;
+                Cursor in = new Cursor(raw, start, end);
+                BitSet nulls = new BitSet();
+                if (nullCount > 0) {
+                    nulls = BitSet.valueOf(Arrays.copyOfRange(raw, start, start + (rows + 7) / 8));
+                    in.skip((rows + 7) / 8);
+                }
+                long[] values = new long[rows];
+                String[] strings = null;
+                switch (type) {
+                    case ID: {
+                        long[] dict = new long[in.getVarint()];
+                        long prev = 0;
+                        for (int i = 0; i < dict.length; i++) {
+                            prev += unzigzag(in.getVarlong());
+                            dict[i] = prev;
+                        }
+                        int[] codes = in.getPacked(rows, bitsFor(dict.length - 1));
+                        for (int i = 0; i < rows; i++) {
+                            if (!nulls.get(i)) values[i] = dict[codes[i]];
+                        }
+                        break;
+                    }
+                    case STRING: {
+                        String[] dict = new String[in.getVarint() + 1];
+                        for (int i = 1; i < dict.length; i++) dict[i] = in.getString();
+                        int[] codes = in.getPacked(rows, bitsFor(dict.length - 1));
+                        strings = new String[rows];
+                        for (int i = 0; i < rows; i++) {
+                            strings[i] = dict[codes[i]];
+                            values[i] = codes[i];
+                        }
+                        break;
+                    }
+                    case INT:
+                        for (int i = 0; i < rows; i++) values[i] = unzigzag(in.getVarlong());
+                        break;
+                    default: {
+                        long prev = 0;
+                        for (int i = 0; i < rows; i++) {
+                            if (nulls.get(i)) continue;
+                            prev += unzigzag(in.getVarlong());
+                            values[i] = prev;
+                        }
+                        break;
+                    }
+                }
+                return new Column(type, values, strings, nulls);
+            }
+        }
+    }
+
+    /**
+     * A decoded column. Numeric types (and TIME, in epoch seconds) are in
+     * {@link #values}; STRING columns in {@link #strings}, with {@link #values}
+     * holding each row's dictionary code, which is cheaper to group by.
+     */
+    public static class Column {
+        public final ColumnType type;
+        public final long[] values;
+        public final String[] strings;
+        private final BitSet nulls;
+
+        Column(ColumnType type, long[] values, String[] strings, BitSet nulls) {
+            this.type = type;
+            this.values = values;
+            this.strings = strings;
+            this.nulls = nulls;
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+    }
+
+    /**
+     * Scans archives without a database and prints a per-exam summary:
+     * java util.ExamArchive exam-12.xarc [more.xarc ...]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java util.ExamArchive <archive." + EXTENSION + ">...");
+            return;
+        }
+        for (String arg : args) {
+            long started = System.nanoTime();
+            Reader archive = Reader.open(Paths.get(arg));
+            Reader.Table results = archive.table("results");
+            Column scores = results.read("score");
+            Column totals = results.read("total_questions");
+            long sum = 0, scored = 0, percentSum = 0, withTotal = 0;
+            for (int i = 0; i < results.rowCount; i++) {
+                if (scores.isNull(i)) continue;
+                sum += scores.values[i];
+                scored++;
+                if (!totals.isNull(i) && totals.values[i] > 0) {
+                    percentSum += scores.values[i] * 100 / totals.values[i];
+                    withTotal++;
+                }
+            }
+            Reader.Table log = archive.table("activity_log");
+            Column types = log.read("event_type");
+            Map<String, Integer> eventCounts = new TreeMap<>();
+            for (int i = 0; i < log.rowCount; i++) {
+                if (types.strings[i] != null) eventCounts.merge(types.strings[i], 1, Integer::sum);
+            }
+            long micros = (System.nanoTime() - started) / 1000;
+
+            System.out.println(arg + ": " + archive.getMetadata().getOrDefault("exam_title", "?")
+                    + " (exam " + archive.getMetadata().getOrDefault("exam_id", "?") + ")");
+            Reader.ColumnInfo scoreInfo = results.info("score");
+            System.out.printf("  results: %d, mean score %.2f (min %d, max %d)%s%n", results.rowCount,
+                    scored == 0 ? 0.0 : (double) sum / scored, scoreInfo.min, scoreInfo.max,
+                    withTotal == 0 ? "" : String.format(", mean %d%%", percentSum / withTotal));
+            System.out.printf("  activity events: %d%n", log.rowCount);
+            for (Map.Entry<String, Integer> e : eventCounts.entrySet()) {
+                System.out.printf("    %-24s %d%n", e.getKey(), e.getValue());
+            }
+            System.out.printf("  scanned in %.1f ms%n", micros / 1000.0);
+        }
+    }
+
+    // ---------------------------------------------------------------- encoding helpers
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Bits needed to store codes 0..maxCode. */
+    private static int bitsFor(int maxCode) {
+        return maxCode <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(maxCode);
+    }
+
+    private static byte[] deflate(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] out = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(out, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            if (n != rawLength) throw new IOException("Corrupt column data");
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Buffer {
+        byte[] data;
+        int size;
+
+        Buffer(int capacity) {
+            data = new byte[Math.max(16, capacity)];
+        }
+
+        void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void putByte(int b) {
+            ensure(1);
+            data[size++] = (byte) b;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            data[size++] = (byte) (v >>> 24);
+            data[size++] = (byte) (v >>> 16);
+            data[size++] = (byte) (v >>> 8);
+            data[size++] = (byte) v;
+        }
+
+        void putVarint(int v) {
+            putVarlong(v & 0xFFFFFFFFL);
+        }
+
+        void putVarlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                data[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        void putString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            putVarint(utf8.length);
+            put(utf8, 0, utf8.length);
+        }
+
+        void put(byte[] src, int off, int len) {
+            ensure(len);
+            System.arraycopy(src, off, data, size, len);
+            size += len;
+        }
+
+        /** Packs each code into {@code bits} bits, least significant first. */
+        void putPacked(int[] codes, int bits) {
+            if (bits == 0) return;
+            ensure((int) (((long) codes.length * bits + 7) / 8));
+            long acc = 0;
+            int filled = 0;
+            for (int code : codes) {
+                acc |= (long) code << filled;
+                filled += bits;
+                while (filled >= 8) {
+                    data[size++] = (byte) acc;
+                    acc >>>= 8;
+                    filled -= 8;
+                }
+            }
+            if (filled > 0) data[size++] = (byte) acc;
+        }
+    }
+
+    private static class Cursor {
+        final byte[] data;
+        int pos;
+        final int end;
+
+        Cursor(byte[] data, int pos, int end) {
+            this.data = data;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        private void need(int n) throws IOException {
+            if (n < 0 || end - pos < n) throw new IOException("Archive truncated");
+        }
+
+        int getByte() throws IOException {
+            need(1);
+            return data[pos++] & 0xFF;
+        }
+
+        int getInt() throws IOException {
+            need(4);
+            int v = ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16)
+                  | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            pos += 4;
+            return v;
+        }
+
+        int getVarint() throws IOException {
+            long v = getVarlong();
+            if (v > Integer.MAX_VALUE) throw new IOException("Archive field out of range");
+            return (int) v;
+        }
+
+        long getVarlong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = getByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("Malformed varint in archive");
+        }
+
+        String getString() throws IOException {
+            int len = getVarint();
+            need(len);
+            String s = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        void skip(int n) throws IOException {
+            need(n);
+            pos += n;
+        }
+
+        int[] getPacked(int count, int bits) throws IOException {
+            int[] codes = new int[count];
+            if (bits == 0) return codes;
+            need((int) (((long) count * bits + 7) / 8));
+            long acc = 0;
+            int filled = 0;
+            int mask = (1 << bits) - 1;
+            for (int i = 0; i < count; i++) {
+                while (filled < bits) {
+                    acc |= (long) (data[pos++] & 0xFF) << filled;
+                    filled += 8;
+                }
+                codes[i] = (int) (acc & mask);
+                acc >>>= bits;
+                filled -= bits;
+            }
+            return codes;
+        }
+    }
+}
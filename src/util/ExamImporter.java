@@ -0,0 +1,208 @@
+package util;
+
+import db.DBConnection;
+import db.ExamCache;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Imports an encrypted .exam file (an exam object whose "questions" array
+ * holds the question objects) without holding the file in memory: it is
+ * decrypted as it is read and walked with a JSONTokener, so only one question
+ * object exists at a time. Questions go through one reused statement in
+ * batches, and the exam and all its questions are one transaction: a failed
+ * or cancelled import leaves the database as it was.
+ *
+ * Files written by older versions may have "questions" before the exam
+ * fields; those questions are held back until the exam row can be written.
+ */
+public class ExamImporter {
+    private static final int BATCH_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String EXAM_SQL =
+            "INSERT INTO exams (id, title, description, start_time, end_time, duration_minutes, entry_password, exit_password) "
+          + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE title=VALUES(title), description=VALUES(description), "
+          + "start_time=VALUES(start_time), end_time=VALUES(end_time), duration_minutes=VALUES(duration_minutes), "
+          + "entry_password=VALUES(entry_password), exit_password=VALUES(exit_password)";
+    private static final String QUESTION_SQL =
+            "INSERT INTO questions (id, exam_id, question_text, option_a, option_b, option_c, option_d, correct_option) "
+          + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE question_text=VALUES(question_text), "
+          + "option_a=VALUES(option_a), option_b=VALUES(option_b), option_c=VALUES(option_c), "
+          + "option_d=VALUES(option_d), correct_option=VALUES(correct_option)";
+
+    /** What an import did. */
+    public static final class Outcome {
+        public final int examId;
+        public final String title;
+        public final int questions;
+
+        Outcome(int examId, String title, int questions) {
+            this.examId = examId;
+            this.title = title;
+            this.questions = questions;
+        }
+    }
+
+    private final Path source;
+    private final char[] passphrase;
+    private final boolean allowLegacy;
+    private final JSONObject exam = new JSONObject();
+    private final List<JSONObject> heldBack = new ArrayList<>();
+    private PreparedStatement questionStatement;
+    private int examKeysWritten = -1;
+    private int pending;
+    private int questions;
+
+    /**
+     * @param passphrase for files in the passphrase-protected format; null for older files
+     * @param allowLegacy whether an older, unauthenticated file may be read (the admin confirmed it)
+     */
+    public ExamImporter(Path source, char[] passphrase, boolean allowLegacy) {
+        this.source = source;
+        this.passphrase = passphrase;
+        this.allowLegacy = allowLegacy;
+    }
+
+    /**
+     * Runs the import on the calling thread. {@code progress} is told the
+     * number of questions written after every batch; once {@code cancelled}
+     * turns true the transaction is rolled back and a CancellationException
+     * is thrown.
+     */
+    public Outcome run(LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException, SQLException, GeneralSecurityException {
+        try (InputStream file = Files.newInputStream(source);
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     CryptoUtils.decryptingStream(file, passphrase, allowLegacy), StandardCharsets.UTF_8), BUFFER_SIZE);
+             Connection conn = DBConnection.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(QUESTION_SQL)) {
+                questionStatement = ps;
+                parse(new JSONTokener(in), conn, progress, cancelled);
+                if (!exam.has("id") || !exam.has("title")) {
+                    throw new IOException("Invalid exam file format.");
+                }
+                if (examKeysWritten < 0) {
+                    writeExam(conn);
+                    for (JSONObject q : heldBack) addQuestion(q, progress, cancelled);
+                    heldBack.clear();
+                } else if (exam.length() > examKeysWritten) {
+                    // Fields that came after the questions
+                    writeExam(conn);
+                }
+                flush(progress);
+                ExamCache.bumpVersion(conn, exam.getInt("id"));
+                conn.commit();
+                ExamCache.invalidate(exam.getInt("id"));
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid exam file: " + e.getMessage(), e);
+        }
+        return new Outcome(exam.getInt("id"), exam.getString("title"), questions);
+    }
+
+    /** Walks the top-level object; every member except "questions" is kept in {@link #exam}. */
+    private void parse(JSONTokener t, Connection conn, LongConsumer progress, BooleanSupplier cancelled)
+            throws SQLException {
+        if (t.nextClean() != '{') throw t.syntaxError("An exam file must start with '{'");
+        while (true) {
+            char c = t.nextClean();
+            if (c == '}') return;
+            if (c != '"') throw t.syntaxError("Expected a key");
+            String key = t.nextString('"');
+            if (t.nextClean() != ':') throw t.syntaxError("Expected ':' after " + key);
+            if (key.equals("questions")) {
+                parseQuestions(t, conn, progress, cancelled);
+            } else {
+                exam.put(key, t.nextValue());
+            }
+            c = t.nextClean();
+            if (c == '}') return;
+            if (c != ',') throw t.syntaxError("Expected ',' or '}'");
+        }
+    }
+
+    private void parseQuestions(JSONTokener t, Connection conn, LongConsumer progress, BooleanSupplier cancelled)
+            throws SQLException {
+        if (t.nextClean() != '[') throw t.syntaxError("\"questions\" must be an array");
+        if (exam.has("id") && exam.has("title")) writeExam(conn);
+        while (true) {
+            char c = t.nextClean();
+            if (c == ']') return;
+            if (c == ',') continue;
+            t.back();
+            JSONObject q = new JSONObject(t);
+            if (examKeysWritten < 0) {
+                heldBack.add(q);
+            } else {
+                addQuestion(q, progress, cancelled);
+            }
+        }
+    }
+
+    private void writeExam(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(EXAM_SQL)) {
+            ps.setInt(1, exam.getInt("id"));
+            ps.setString(2, exam.getString("title"));
+            ps.setString(3, exam.optString("description", ""));
+            ps.setString(4, exam.optString("start_time", null));
+            ps.setString(5, exam.optString("end_time", null));
+            ps.setInt(6, exam.optInt("duration_minutes", 0));
+            ps.setString(7, exam.optString("entry_password", ""));
+            ps.setString(8, exam.optString("exit_password", ""));
+            ps.executeUpdate();
+        }
+        examKeysWritten = exam.length();
+    }
+
+    private void addQuestion(JSONObject q, LongConsumer progress, BooleanSupplier cancelled) throws SQLException {
+        PreparedStatement ps = questionStatement;
+        ps.setInt(1, q.getInt("id"));
+        ps.setInt(2, exam.getInt("id"));
+        ps.setString(3, q.getString("question_text"));
+        ps.setString(4, q.getString("option_a"));
+        ps.setString(5, q.getString("option_b"));
+        ps.setString(6, q.getString("option_c"));
+        ps.setString(7, q.getString("option_d"));
+        ps.setString(8, q.getString("correct_option"));
+        ps.addBatch();
+        if (++pending == BATCH_SIZE) {
+            if (cancelled.getAsBoolean()) throw new CancellationException("Import cancelled");
+            flush(progress);
+        }
+    }
+
+    private void flush(LongConsumer progress) throws SQLException {
+        if (pending > 0) {
+            questionStatement.executeBatch();
+            questions += pending;
+            pending = 0;
+        }
+        progress.accept(questions);
+    }
+}
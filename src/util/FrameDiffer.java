@@ -0,0 +1,185 @@
+package util;
+
+/**
+ * Decides how each captured frame is stored. A 64-bit difference hash (dHash)
+ * finds frames that look the same as the last stored one; since exam screens
+ * are mostly flat colour (where dHash alone is blind), such a frame is only
+ * dropped if at most a few tiles (clock, cursor) really changed. Other frames are
+ * compared tile by tile against the current keyframe and stored as a delta of
+ * the changed tiles, or as a new keyframe when too much has changed.
+ *
+ * Not thread-safe: feed it frames in capture order from one thread.
+ */
+public class FrameDiffer {
+    public static final int TILE_SIZE = 32; // Multiple of 16 so JPEG blocks line up with tiles
+
+    public enum Kind { KEYFRAME, DELTA, DUPLICATE }
+
+    /** How to store one frame, plus its change score against the previous capture (0..1). */
+    public static class Result {
+        public final Kind kind;
+        public final double changeScore;
+        public final int hashDistance;
+        public final int[] changedTiles; // DELTA only: tile indexes that differ from the keyframe
+
+        Result(Kind kind, double changeScore, int hashDistance, int[] changedTiles) {
+            this.kind = kind;
+            this.changeScore = changeScore;
+            this.hashDistance = hashDistance;
+            this.changedTiles = changedTiles;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final int maxHashDistance;
+    private final int keyframeInterval;
+    private final double maxDeltaFraction;
+    private final double duplicateTileFraction;
+
+    private final int[] keyframe;
+    private final int[] lastCapture;
+    private final int[] lastStored;
+    private final int[] changed;
+    private boolean hasKeyframe = false;
+    private long lastStoredHash;
+    private int deltasSinceKeyframe = 0;
+    private boolean keyframeRequested = false;
+
+    /**
+     * @param maxHashDistance  frames within this many differing dHash bits of the last stored frame are dropped
+     * @param keyframeInterval force a keyframe after this many deltas, bounding how stale a keyframe gets
+     * @param maxDeltaFraction start a new keyframe when more than this fraction of tiles changed
+     * @param duplicateTileFraction a hash match is only a duplicate if at most this fraction of tiles changed
+     */
+    public FrameDiffer(int width, int height, int maxHashDistance, int keyframeInterval,
+                       double maxDeltaFraction, double duplicateTileFraction) {
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.maxHashDistance = maxHashDistance;
+        this.keyframeInterval = keyframeInterval;
+        this.maxDeltaFraction = maxDeltaFraction;
+        this.duplicateTileFraction = duplicateTileFraction;
+        this.keyframe = new int[width * height];
+        this.lastCapture = new int[width * height];
+        this.lastStored = new int[width * height];
+        this.changed = new int[tilesX * tilesY];
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    /** Classifies a frame (TYPE_INT_RGB pixels, row-major) and updates the reference frames. */
+    public Result analyze(int[] pixels) {
+        long hash = dHash(pixels, width, height);
+        if (!hasKeyframe) {
+            takeKeyframe(pixels, hash);
+            return new Result(Kind.KEYFRAME, 1.0, 64, null);
+        }
+        if (keyframeRequested) {
+            keyframeRequested = false;
+            double changeScore = (double) changedTiles(pixels, lastCapture) / changed.length;
+            takeKeyframe(pixels, hash);
+            return new Result(Kind.KEYFRAME, changeScore, 64, null);
+        }
+        double changeScore = (double) changedTiles(pixels, lastCapture) / changed.length;
+        System.arraycopy(pixels, 0, lastCapture, 0, pixels.length);
+
+        int distance = Long.bitCount(hash ^ lastStoredHash);
+        if (distance <= maxHashDistance && changedTiles(pixels, lastStored) <= changed.length * duplicateTileFraction) {
+            return new Result(Kind.DUPLICATE, changeScore, distance, null);
+        }
+        int count = changedTiles(pixels, keyframe);
+        if (deltasSinceKeyframe >= keyframeInterval || count > changed.length * maxDeltaFraction) {
+            takeKeyframe(pixels, hash);
+            return new Result(Kind.KEYFRAME, changeScore, distance, null);
+        }
+        deltasSinceKeyframe++;
+        lastStoredHash = hash;
+        System.arraycopy(pixels, 0, lastStored, 0, pixels.length);
+        int[] tiles = new int[count];
+        System.arraycopy(changed, 0, tiles, 0, count);
+        return new Result(Kind.DELTA, changeScore, distance, tiles);
+    }
+
+    /** Makes the next stored frame a keyframe, e.g. because the last one could not be saved. */
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    private void takeKeyframe(int[] pixels, long hash) {
+        System.arraycopy(pixels, 0, keyframe, 0, pixels.length);
+        System.arraycopy(pixels, 0, lastCapture, 0, pixels.length);
+        System.arraycopy(pixels, 0, lastStored, 0, pixels.length);
+        hasKeyframe = true;
+        lastStoredHash = hash;
+        deltasSinceKeyframe = 0;
+    }
+
+    /** Fills {@code changed} with the indexes of tiles that differ and returns how many there are. */
+    private int changedTiles(int[] a, int[] b) {
+        int count = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * TILE_SIZE;
+            int y1 = Math.min(height, y0 + TILE_SIZE);
+            for (int tx = 0; tx < tilesX; tx++) {
+                int x0 = tx * TILE_SIZE;
+                int x1 = Math.min(width, x0 + TILE_SIZE);
+                if (tileDiffers(a, b, x0, x1, y0, y1)) {
+                    changed[count++] = ty * tilesX + tx;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean tileDiffers(int[] a, int[] b, int x0, int x1, int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int i = row + x0, end = row + x1; i < end; i++) {
+                if (((a[i] ^ b[i]) & 0xFFFFFF) != 0) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 64-bit difference hash: the frame is averaged down to 9x8 luminance
+     * cells and each bit says whether a cell is brighter than its right
+     * neighbour. Near-identical frames differ in only a few bits.
+     */
+    public static long dHash(int[] pixels, int width, int height) {
+        long[] sum = new long[72];
+        int[] count = new int[72];
+        for (int y = 0; y < height; y++) {
+            int cy = y * 8 / height;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = pixels[row + x];
+                int luma = (((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8;
+                int cell = cy * 9 + x * 9 / width;
+                sum[cell] += luma;
+                count[cell]++;
+            }
+        }
+        long hash = 0;
+        for (int cy = 0; cy < 8; cy++) {
+            for (int cx = 0; cx < 8; cx++) {
+                int left = cy * 9 + cx;
+                long l = count[left] == 0 ? 0 : sum[left] / count[left];
+                long r = count[left + 1] == 0 ? 0 : sum[left + 1] / count[left + 1];
+                hash = (hash << 1) | (l > r ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,269 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bit-parallel multiple-choice grading. Questions are put in a fixed order
+ * (ascending question id) and each gets a 2-bit lane in a long, 32 questions
+ * per word: A=00, B=01, C=10, D=11. An attempt is packed the same way, so
+ * grading is an XOR against the key and a popcount, 32 questions at a time.
+ *
+ * Packed attempt layout: for each word w, {@code packed[2w]} holds the letters
+ * and {@code packed[2w+1]} has the low bit of a lane set when that question
+ * was answered (an unanswered lane reads as A and must not count).
+ */
+public final class GradingEngine {
+    public static final int QUESTIONS_PER_WORD = 32;
+    private static final long LANE_LOW_BITS = 0x5555555555555555L;
+    private static final int BULK_THRESHOLD = 4096; // attempts per fork/join leaf
+
+    private GradingEngine() {
+    }
+
+    /** Letter for lane value 0..3. */
+    public static char letter(int code) {
+        return (char) ('A' + code);
+    }
+
+    /** Lane value of an answer letter, or -1 if it is not A-D. */
+    public static int code(String letter) {
+        if (letter == null || letter.length() != 1) return -1;
+        int c = Character.toUpperCase(letter.charAt(0)) - 'A';
+        return c >= 0 && c < 4 ? c : -1;
+    }
+
+    /** The correct answers of one exam, packed. Immutable, so one key can grade from many threads. */
+    public static class AnswerKey {
+        private final int[] questionIds;
+        private final long[] key;
+        private final long[] keyed; // Lane low bit set for questions with a usable (A-D) key
+
+        /** @param correct correct letter per question id; a null or non A-D letter counts as never correct */
+        public AnswerKey(Map<Integer, String> correct) {
+            questionIds = new int[correct.size()];
+            int n = 0;
+            for (Integer id : correct.keySet()) questionIds[n++] = id;
+            Arrays.sort(questionIds);
+            int words = (questionIds.length + QUESTIONS_PER_WORD - 1) / QUESTIONS_PER_WORD;
+            key = new long[words];
+            keyed = new long[words];
+            for (int i = 0; i < questionIds.length; i++) {
+                int c = code(correct.get(questionIds[i]));
+                if (c < 0) continue;
+                int word = i / QUESTIONS_PER_WORD;
+                int shift = (i % QUESTIONS_PER_WORD) * 2;
+                key[word] |= (long) c << shift;
+                keyed[word] |= 1L << shift;
+            }
+        }
+
+        public int getQuestionCount() {
+            return questionIds.length;
+        }
+
+        /** Question ids in lane order. */
+        public int[] getQuestionIds() {
+            return questionIds.clone();
+        }
+
+        /** Lane of a question, or -1 if it is not part of this exam. */
+        public int indexOf(int questionId) {
+            int i = Arrays.binarySearch(questionIds, questionId);
+            return i >= 0 ? i : -1;
+        }
+
+        /** Correct answer code (0..3) of the question in lane {@code index}, or -1 if it has no usable key. */
+        public int correctOption(int index) {
+            int word = index / QUESTIONS_PER_WORD;
+            int shift = (index % QUESTIONS_PER_WORD) * 2;
+            if ((keyed[word] & (1L << shift)) == 0) return -1;
+            return (int) (key[word] >>> shift) & 3;
+        }
+
+        /** Length of a packed attempt for this key. */
+        public int packedLength() {
+            return key.length * 2;
+        }
+
+        /** Packs an attempt; answers to unknown questions and letters other than A-D are ignored. */
+        public long[] pack(Map<Integer, String> answers) {
+            long[] packed = new long[packedLength()];
+            for (Map.Entry<Integer, String> e : answers.entrySet()) {
+                int i = indexOf(e.getKey());
+                int c = code(e.getValue());
+                if (i >= 0 && c >= 0) set(packed, i, c);
+            }
+            return packed;
+        }
+
+        /** Records answer {@code code} (0..3) for the question in lane {@code index}. */
+        public static void set(long[] packed, int index, int code) {
+            int word = (index / QUESTIONS_PER_WORD) * 2;
+            int shift = (index % QUESTIONS_PER_WORD) * 2;
+            packed[word] = (packed[word] & ~(3L << shift)) | ((long) code << shift);
+            packed[word + 1] |= 1L << shift;
+        }
+
+        /** Answer code (0..3) in lane {@code index}, or -1 if unanswered. */
+        public static int get(long[] packed, int index) {
+            int word = (index / QUESTIONS_PER_WORD) * 2;
+            int shift = (index % QUESTIONS_PER_WORD) * 2;
+            if ((packed[word + 1] & (1L << shift)) == 0) return -1;
+            return (int) (packed[word] >>> shift) & 3;
+        }
+
+        /** Number of correct answers in a packed attempt. */
+        public int score(long[] packed) {
+            int score = 0;
+            for (int w = 0; w < key.length; w++) {
+                score += Long.bitCount(correctLanes(packed, w));
+            }
+            return score;
+        }
+
+        /**
+         * Low bit of each lane in word {@code w} set where the attempt matches
+         * the key: XOR leaves 00 only in matching lanes, then both bits of each
+         * lane are folded into the low one.
+         */
+        public long correctLanes(long[] packed, int w) {
+            long diff = packed[2 * w] ^ key[w];
+            return ~(diff | (diff >>> 1)) & LANE_LOW_BITS & packed[2 * w + 1] & keyed[w];
+        }
+
+        public int score(Map<Integer, String> answers) {
+            return score(pack(answers));
+        }
+
+        /**
+         * Stored form of a packed attempt (results.answer_vector), self-describing
+         * so it can be re-graded after questions are added or removed:
+         *   version(1) count(varint) firstId(varint) idDelta(varint)*(count-1)
+         *   letters: 2 bits per question, ceil(count/4) bytes
+         *   answered: 1 bit per question, ceil(count/8) bytes
+         */
+        public byte[] encode(long[] packed) {
+            int count = questionIds.length;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2 + 8);
+            out.write(VECTOR_VERSION);
+            writeVarint(out, count);
+            int prev = 0;
+            for (int id : questionIds) {
+                writeVarint(out, id - prev);
+                prev = id;
+            }
+            for (int i = 0; i < count; i += 4) {
+                int b = 0;
+                for (int k = 0; k < 4 && i + k < count; k++) {
+                    int c = get(packed, i + k);
+                    b |= (c < 0 ? 0 : c) << (k * 2);
+                }
+                out.write(b);
+            }
+            for (int i = 0; i < count; i += 8) {
+                int b = 0;
+                for (int k = 0; k < 8 && i + k < count; k++) {
+                    if (get(packed, i + k) >= 0) b |= 1 << k;
+                }
+                out.write(b);
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * Packed attempt in this key's lane order from a stored vector. Answers
+         * to questions no longer in the exam are dropped; new questions read as
+         * unanswered.
+         */
+        public long[] decode(byte[] vector) {
+            int[] pos = {0};
+            if (vector.length == 0 || vector[pos[0]++] != VECTOR_VERSION) {
+                throw new IllegalArgumentException("Unknown answer vector format");
+            }
+            int count = readVarint(vector, pos);
+            if (count > vector.length) throw new IllegalArgumentException("Malformed answer vector");
+            int[] ids = new int[count];
+            int prev = 0;
+            for (int i = 0; i < count; i++) {
+                prev += readVarint(vector, pos);
+                ids[i] = prev;
+            }
+            int letters = pos[0];
+            int answered = letters + (count + 3) / 4;
+            if (answered + (count + 7) / 8 > vector.length) {
+                throw new IllegalArgumentException("Truncated answer vector");
+            }
+            boolean sameQuestions = Arrays.equals(ids, questionIds);
+            long[] packed = new long[packedLength()];
+            for (int i = 0; i < count; i++) {
+                if ((vector[answered + i / 8] & (1 << (i % 8))) == 0) continue;
+                int lane = sameQuestions ? i : indexOf(ids[i]);
+                if (lane >= 0) set(packed, lane, (vector[letters + i / 4] >> ((i % 4) * 2)) & 3);
+            }
+            return packed;
+        }
+    }
+
+    private static final int VECTOR_VERSION = 1;
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(byte[] data, int[] pos) {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= data.length) throw new IllegalArgumentException("Truncated answer vector");
+            int b = data[pos[0]++] & 0xFF;
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Malformed answer vector");
+    }
+
+    /**
+     * Scores many packed attempts against one key, splitting the work over the
+     * common fork/join pool. Used to re-grade a sitting after a key correction.
+     */
+    public static int[] scoreAll(AnswerKey key, List<long[]> attempts) {
+        int[] scores = new int[attempts.size()];
+        ForkJoinPool.commonPool().invoke(new ScoreTask(key, attempts, scores, 0, scores.length));
+        return scores;
+    }
+
+    private static class ScoreTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final AnswerKey key;
+        private final List<long[]> attempts;
+        private final int[] scores;
+        private final int from;
+        private final int to;
+
+        ScoreTask(AnswerKey key, List<long[]> attempts, int[] scores, int from, int to) {
+            this.key = key;
+            this.attempts = attempts;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BULK_THRESHOLD) {
+                for (int i = from; i < to; i++) scores[i] = key.score(attempts.get(i));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ScoreTask(key, attempts, scores, from, mid), new ScoreTask(key, attempts, scores, mid, to));
+        }
+    }
+}
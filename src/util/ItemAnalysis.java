@@ -0,0 +1,254 @@
+package util;
+
+import db.DBConnection;
+import db.ResultRegrader;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Classical item analysis of an exam from the stored answer vectors
+ * (results.answer_vector): per question the p-value (share correct), the
+ * corrected point-biserial discrimination (correlation of the item with the
+ * rest of the test) and how often each option was picked; for the exam, KR-20
+ * reliability.
+ *
+ * One streaming pass over the results. Attempts are read in chunks and each
+ * chunk is folded into per-question accumulators in parallel, one task per
+ * 32-question word of the packed vector, so no two tasks touch the same
+ * accumulator. Reports are cached per exam and recomputed when the exam's
+ * results or answer key change.
+ */
+public final class ItemAnalysis {
+    private static final int CHUNK = 2048;
+    private static final Map<Integer, Report> CACHE = new ConcurrentHashMap<>();
+
+    private ItemAnalysis() {
+    }
+
+    /** Statistics of one question. */
+    public static class ItemStats {
+        public final int questionId;
+        public final int correctOption; // 0..3 for A..D, -1 if the question has no usable key
+        public final double difficulty; // p-value: share of attempts that got it right
+        public final double discrimination; // corrected point-biserial; NaN when undefined
+        public final int[] optionCounts; // picks of A..D
+        public final double[] optionMeanScores; // mean total score of those who picked A..D; NaN if nobody did
+        public final int unanswered;
+
+        ItemStats(int questionId, int correctOption, double difficulty, double discrimination,
+                  int[] optionCounts, double[] optionMeanScores, int unanswered) {
+            this.questionId = questionId;
+            this.correctOption = correctOption;
+            this.difficulty = difficulty;
+            this.discrimination = discrimination;
+            this.optionCounts = optionCounts;
+            this.optionMeanScores = optionMeanScores;
+            this.unanswered = unanswered;
+        }
+    }
+
+    /** Analysis of one exam; immutable. */
+    public static class Report {
+        public final int examId;
+        public final int attempts;
+        public final double meanScore;
+        public final double scoreStdDev;
+        public final double kr20; // NaN with fewer than 2 questions or no score variance
+        public final int skippedAttempts; // results without a stored answer vector
+        private final Map<Integer, ItemStats> items;
+        private final String fingerprint;
+
+        Report(int examId, int attempts, double meanScore, double scoreStdDev, double kr20, int skippedAttempts,
+               Map<Integer, ItemStats> items, String fingerprint) {
+            this.examId = examId;
+            this.attempts = attempts;
+            this.meanScore = meanScore;
+            this.scoreStdDev = scoreStdDev;
+            this.kr20 = kr20;
+            this.skippedAttempts = skippedAttempts;
+            this.items = Collections.unmodifiableMap(items);
+            this.fingerprint = fingerprint;
+        }
+
+        /** Stats for a question, or null if it is not in the analysed key. */
+        public ItemStats item(int questionId) {
+            return items.get(questionId);
+        }
+    }
+
+    /** The exam's report, from the cache unless results or the answer key changed since. Not for the EDT. */
+    public static Report get(int examId) throws SQLException, IOException {
+        try (Connection conn = DBConnection.getConnection()) {
+            String fingerprint = fingerprint(conn, examId);
+            Report cached = CACHE.get(examId);
+            if (cached != null && cached.fingerprint.equals(fingerprint)) return cached;
+            Report report = compute(conn, examId, fingerprint);
+            CACHE.put(examId, report);
+            return report;
+        }
+    }
+
+    /**
+     * Cheap change detector: attempt count, newest result and score total
+     * (a re-grade changes it), plus a checksum of the answer key.
+     */
+    private static String fingerprint(Connection conn, int examId) throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(SUM(score), 0), "
+                   + "(SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT(id, ':', COALESCE(correct_option, '')))), 0)) "
+                   + "FROM questions WHERE exam_id = ?) FROM results WHERE exam_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, examId);
+            ps.setInt(2, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) + "/" + rs.getLong(2) + "/" + rs.getLong(3) + "/" + rs.getString(4);
+            }
+        }
+    }
+
+    private static Report compute(Connection conn, int examId, String fingerprint) throws SQLException {
+        GradingEngine.AnswerKey key = ResultRegrader.loadKey(conn, examId);
+        int questions = key.getQuestionCount();
+        int words = key.packedLength() / 2;
+        WordAccumulator[] acc = new WordAccumulator[words];
+        for (int w = 0; w < words; w++) {
+            acc[w] = new WordAccumulator(Math.min(GradingEngine.QUESTIONS_PER_WORD, questions - w * GradingEngine.QUESTIONS_PER_WORD));
+        }
+
+        long n = 0, sumX = 0, sumX2 = 0;
+        int skipped = 0;
+        List<long[]> chunk = new ArrayList<>(CHUNK);
+        int[] scores = new int[CHUNK];
+        try (PreparedStatement ps = conn.prepareStatement("SELECT answer_vector FROM results WHERE exam_id = ?",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Stream rows instead of loading the whole exam
+            ps.setInt(1, examId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    byte[] vector = rs.getBytes(1);
+                    long[] packed;
+                    try {
+                        packed = vector != null ? key.decode(vector) : null;
+                    } catch (IllegalArgumentException e) {
+                        packed = null;
+                    }
+                    if (packed == null) {
+                        skipped++;
+                        continue;
+                    }
+                    int x = key.score(packed);
+                    scores[chunk.size()] = x;
+                    chunk.add(packed);
+                    n++;
+                    sumX += x;
+                    sumX2 += (long) x * x;
+                    if (chunk.size() == CHUNK) {
+                        fold(acc, key, chunk, scores);
+                        chunk.clear();
+                    }
+                }
+            }
+        }
+        fold(acc, key, chunk, scores);
+
+        double mean = n == 0 ? 0 : (double) sumX / n;
+        double variance = n == 0 ? 0 : (double) sumX2 / n - mean * mean;
+        int[] ids = key.getQuestionIds();
+        Map<Integer, ItemStats> items = new LinkedHashMap<>();
+        double sumPQ = 0;
+        int keyed = 0;
+        for (int i = 0; i < questions; i++) {
+            WordAccumulator a = acc[i / GradingEngine.QUESTIONS_PER_WORD];
+            int lane = i % GradingEngine.QUESTIONS_PER_WORD;
+            int correctOption = key.correctOption(i);
+            long c = a.correct[lane];
+            double p = n == 0 ? Double.NaN : (double) c / n;
+            if (correctOption >= 0 && n > 0) {
+                sumPQ += p * (1 - p);
+                keyed++;
+            }
+            int[] counts = new int[4];
+            double[] means = new double[4];
+            int answered = 0;
+            for (int o = 0; o < 4; o++) {
+                counts[o] = (int) a.optionCount[lane][o];
+                means[o] = counts[o] == 0 ? Double.NaN : (double) a.optionScoreSum[lane][o] / counts[o];
+                answered += counts[o];
+            }
+            items.put(ids[i], new ItemStats(ids[i], correctOption, p,
+                    discrimination(n, sumX, sumX2, c, a.correctScoreSum[lane]), counts, means, (int) n - answered));
+        }
+        double kr20 = keyed < 2 || variance <= 0 ? Double.NaN
+                : (double) keyed / (keyed - 1) * (1 - sumPQ / variance);
+        return new Report(examId, (int) n, mean, Math.sqrt(Math.max(0, variance)), kr20, skipped, items, fingerprint);
+    }
+
+    /**
+     * Correlation between the item (0/1) and the rest score (total minus the
+     * item), so the item does not correlate with itself. Needs only sums:
+     * the rest score R = X - x gives sum R = sum X - c, sum R^2 = sum X^2 -
+     * 2 sum(X | correct) + c and sum xR = sum(X | correct) - c.
+     */
+    private static double discrimination(long n, long sumX, long sumX2, long c, long sumXCorrect) {
+        if (n == 0 || c == 0 || c == n) return Double.NaN;
+        double p = (double) c / n;
+        double meanR = (double) (sumX - c) / n;
+        double varR = (double) (sumX2 - 2 * sumXCorrect + c) / n - meanR * meanR;
+        double cov = (double) (sumXCorrect - c) / n - p * meanR;
+        double denom = Math.sqrt(p * (1 - p) * varR);
+        return denom > 0 ? cov / denom : Double.NaN;
+    }
+
+    private static void fold(WordAccumulator[] acc, GradingEngine.AnswerKey key, List<long[]> chunk, int[] scores) {
+        if (chunk.isEmpty()) return;
+        IntStream.range(0, acc.length).parallel().forEach(w -> acc[w].add(key, w, chunk, scores));
+    }
+
+    /** Accumulators for the questions of one packed word; only ever touched by one task at a time. */
+    private static final class WordAccumulator {
+        final long[] correct;
+        final long[] correctScoreSum;
+        final long[][] optionCount;
+        final long[][] optionScoreSum;
+
+        WordAccumulator(int lanes) {
+            correct = new long[lanes];
+            correctScoreSum = new long[lanes];
+            optionCount = new long[lanes][4];
+            optionScoreSum = new long[lanes][4];
+        }
+
+        void add(GradingEngine.AnswerKey key, int w, List<long[]> chunk, int[] scores) {
+            for (int i = 0; i < chunk.size(); i++) {
+                long[] packed = chunk.get(i);
+                int x = scores[i];
+                long letters = packed[2 * w];
+                long answered = packed[2 * w + 1];
+                long right = key.correctLanes(packed, w);
+                while (answered != 0) {
+                    int bit = Long.numberOfTrailingZeros(answered);
+                    int lane = bit >>> 1;
+                    int option = (int) (letters >>> bit) & 3;
+                    optionCount[lane][option]++;
+                    optionScoreSum[lane][option] += x;
+                    if ((right & (1L << bit)) != 0) {
+                        correct[lane]++;
+                        correctScoreSum[lane] += x;
+                    }
+                    answered &= answered - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe for live proctoring events. Publishing calls
+ * every subscriber on the publisher's thread (often the LAN selector thread or
+ * the EDT), so subscribers must only record the event and return; the
+ * monitoring wall, for example, updates a tile and repaints later on a timer.
+ */
+public final class ProctorEventBus {
+    private static final ProctorEventBus INSTANCE = new ProctorEventBus();
+
+    private final List<Consumer<Event>> subscribers = new CopyOnWriteArrayList<>();
+
+    /** Event kinds; the code is what goes over the LAN sync link, so never renumber. */
+    public enum Type {
+        CONNECTED(1),
+        DISCONNECTED(2),
+        PROGRESS(3),
+        WINDOW_SWITCH(4),
+        INACTIVITY(5),
+        TIMER_WARNING(6),
+        TIME_UP(7),
+        SUBMITTED(8);
+
+        public final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+
+        public static Type fromCode(int code) {
+            for (Type t : values()) {
+                if (t.code == code) return t;
+            }
+            return null;
+        }
+
+        /** The event for an activity_log event type, or null if it is not one the proctor watches. */
+        public static Type forActivity(String eventType) {
+            switch (eventType) {
+                case "WINDOW_SWITCH": return WINDOW_SWITCH;
+                case "INACTIVITY": return INACTIVITY;
+                case "TIMER_WARNING": return TIMER_WARNING;
+                case "TIME_UP": return TIME_UP;
+                default: return null;
+            }
+        }
+    }
+
+    /** One event; progress fields are -1 when the event does not carry them. */
+    public static final class Event {
+        public final int examId;
+        public final int studentId;
+        public final Type type;
+        public final long time;
+        public final int answered;
+        public final int currentIndex;
+        public final int timeLeftSeconds;
+
+        public Event(int examId, int studentId, Type type, long time, int answered, int currentIndex,
+                     int timeLeftSeconds) {
+            this.examId = examId;
+            this.studentId = studentId;
+            this.type = type;
+            this.time = time;
+            this.answered = answered;
+            this.currentIndex = currentIndex;
+            this.timeLeftSeconds = timeLeftSeconds;
+        }
+
+        public static Event of(int examId, int studentId, Type type) {
+            return new Event(examId, studentId, type, System.currentTimeMillis(), -1, -1, -1);
+        }
+    }
+
+    private ProctorEventBus() {
+    }
+
+    public static ProctorEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    public void subscribe(Consumer<Event> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<Event> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public void publish(Event event) {
+        for (Consumer<Event> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                // One broken view must not stop the others or the publisher's thread
+                e.printStackTrace();
+            }
+        }
+    }
+}
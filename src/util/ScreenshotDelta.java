@@ -0,0 +1,106 @@
+package util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+
+/**
+ * Tile delta against a keyframe. The changed tiles are packed side by side
+ * into one mosaic image (a single JPEG compresses far better than many tiny
+ * ones) behind a small header:
+ *
+ *   magic "SDL1"(4) width(4) height(4) tileSize(2) keyframePath(UTF)
+ *   tileCount(4) tileIndex(4)*tileCount mosaicJpeg...
+ *
+ * Rendering a delta needs only its keyframe, never a chain of earlier deltas.
+ */
+public final class ScreenshotDelta {
+    public static final String EXTENSION = "dlt";
+    private static final int MAGIC = 0x53444C31; // "SDL1"
+
+    private ScreenshotDelta() {
+    }
+
+    /** Copies the listed tiles of {@code frame} into a compact grid image. */
+    public static BufferedImage buildMosaic(BufferedImage frame, int[] tiles, int tilesX, int tileSize) {
+        int cols = Math.max(1, (int) Math.ceil(Math.sqrt(tiles.length)));
+        int rows = Math.max(1, (tiles.length + cols - 1) / cols);
+        BufferedImage mosaic = new BufferedImage(cols * tileSize, rows * tileSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = mosaic.createGraphics();
+        try {
+            for (int i = 0; i < tiles.length; i++) {
+                int sx = (tiles[i] % tilesX) * tileSize;
+                int sy = (tiles[i] / tilesX) * tileSize;
+                int w = Math.min(tileSize, frame.getWidth() - sx);
+                int h = Math.min(tileSize, frame.getHeight() - sy);
+                int dx = (i % cols) * tileSize;
+                int dy = (i / cols) * tileSize;
+                g.drawImage(frame, dx, dy, dx + w, dy + h, sx, sy, sx + w, sy + h, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return mosaic;
+    }
+
+    public static byte[] pack(int width, int height, int tileSize, String keyframePath, int[] tiles,
+                              byte[] mosaicJpeg, int jpegLength) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(jpegLength + 64 + tiles.length * 4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeShort(tileSize);
+        out.writeUTF(keyframePath);
+        out.writeInt(tiles.length);
+        for (int tile : tiles) out.writeInt(tile);
+        out.write(mosaicJpeg, 0, jpegLength);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Loads a stored frame, rebuilding it from its keyframe if it is a delta. */
+    public static BufferedImage render(ScreenshotStore store, String path) throws IOException {
+        if (!path.endsWith("." + EXTENSION)) {
+            return ImageIO.read(store.resolve(path).toFile());
+        }
+        byte[] data = Files.readAllBytes(store.resolve(path));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC) throw new IOException("Not a screenshot delta: " + path);
+        int width = in.readInt();
+        int height = in.readInt();
+        int tileSize = in.readShort();
+        String keyframePath = in.readUTF();
+        int count = in.readInt();
+        if (count < 0 || count > data.length / 4) throw new IOException("Corrupt screenshot delta: " + path);
+        int[] tiles = new int[count];
+        for (int i = 0; i < count; i++) tiles[i] = in.readInt();
+        BufferedImage mosaic = ImageIO.read(in);
+        BufferedImage key = ImageIO.read(store.resolve(keyframePath).toFile());
+        if (key == null || mosaic == null) throw new IOException("Missing image data for " + path);
+
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.drawImage(key, 0, 0, null);
+            int tilesX = (width + tileSize - 1) / tileSize;
+            int cols = Math.max(1, (int) Math.ceil(Math.sqrt(count)));
+            for (int i = 0; i < count; i++) {
+                int dx = (tiles[i] % tilesX) * tileSize;
+                int dy = (tiles[i] / tilesX) * tileSize;
+                int sx = (i % cols) * tileSize;
+                int sy = (i / cols) * tileSize;
+                g.drawImage(mosaic, dx, dy, dx + tileSize, dy + tileSize, sx, sy, sx + tileSize, sy + tileSize, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,412 @@
+package util;
+
+import db.DBConnection;
+import java.awt.AWTException;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Robot;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import model.Screenshot;
+
+/**
+ * Periodic screen capture for a running exam. One scheduler thread grabs the
+ * screen with Robot and downscales it into a pooled BufferedImage; a small
+ * pool of low-priority workers JPEG-encodes it into the content-addressed
+ * {@link ScreenshotStore}; metadata rows are inserted into screenshots in
+ * batches. {@link FrameDiffer} drops near-identical frames and turns the rest
+ * into keyframes or tile deltas ({@link ScreenshotDelta}); every capture still
+ * gets a row with its change score, so the proctor's timeline has no gaps.
+ * If the encoders fall behind, captures are skipped rather than queued, so a
+ * slow machine never spends more than it can afford.
+ *
+ * Settings (db_config.properties): SCREENSHOT_ENABLED, SCREENSHOT_INTERVAL_S,
+ * SCREENSHOT_SCALE, SCREENSHOT_QUALITY, SCREENSHOT_ENCODER_THREADS, SCREENSHOT_DIR,
+ * SCREENSHOT_DEDUP_DISTANCE, SCREENSHOT_DUPLICATE_TILE_FRACTION, SCREENSHOT_KEYFRAME_INTERVAL,
+ * SCREENSHOT_MAX_DELTA_FRACTION.
+ */
+public class ScreenshotService implements AutoCloseable {
+    private static final int METADATA_BATCH_SIZE = 20;
+    private static final long METADATA_FLUSH_INTERVAL_MS = 60_000;
+    private static final int MAX_PENDING_ROWS = 5000;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO screenshots (student_id, exam_id, image_path, captured_at, frame_type, change_score) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Services not yet closed; their queued rows are written at exit, before the pool closes
+    private static final Set<ScreenshotService> RUNNING = ConcurrentHashMap.newKeySet();
+
+    static {
+        DBConnection.addShutdownFlush(() -> {
+            for (ScreenshotService s : RUNNING) s.flushMetadata();
+        });
+    }
+
+    private final int studentId;
+    private final int examId;
+    private final long intervalMillis;
+    private final double scale;
+    private final float quality;
+    private final Robot robot;
+    private final Rectangle screen;
+    private final ScreenshotStore store;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService encoders;
+    private final BlockingQueue<BufferedImage> freeImages;
+    private final ThreadLocal<Encoder> encoder = ThreadLocal.withInitial(Encoder::new);
+    private final ConcurrentLinkedQueue<Screenshot> pendingRows = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingRowCount = new AtomicInteger();
+    private long lastMetadataFlush = System.currentTimeMillis();
+
+    // Capture-thread state: which stored frames the next delta or duplicate refers to
+    private final FrameDiffer differ;
+    private CompletableFuture<String> keyframePath;
+    private CompletableFuture<String> lastStoredPath;
+    private volatile boolean keyframeFailed = false;
+
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong captureNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+
+    private ScreenshotService(int studentId, int examId, Properties config) throws AWTException, IOException {
+        this.studentId = studentId;
+        this.examId = examId;
+        this.intervalMillis = Math.max(1, intProp(config, "SCREENSHOT_INTERVAL_S", 30)) * 1000L;
+        this.scale = Math.min(1.0, Math.max(0.1, doubleProp(config, "SCREENSHOT_SCALE", 0.5)));
+        this.quality = (float) Math.min(1.0, Math.max(0.05, doubleProp(config, "SCREENSHOT_QUALITY", 0.6)));
+        int encoderThreads = Math.max(1, intProp(config, "SCREENSHOT_ENCODER_THREADS", 1));
+        this.store = new ScreenshotStore(config.getProperty("SCREENSHOT_DIR", "screenshots"));
+        this.robot = new Robot();
+        this.screen = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
+
+        // One image per encoder plus one being filled; anything more would just be a backlog
+        int width = Math.max(1, (int) Math.round(screen.width * scale));
+        int height = Math.max(1, (int) Math.round(screen.height * scale));
+        differ = new FrameDiffer(width, height,
+                intProp(config, "SCREENSHOT_DEDUP_DISTANCE", 5),
+                intProp(config, "SCREENSHOT_KEYFRAME_INTERVAL", 30),
+                doubleProp(config, "SCREENSHOT_MAX_DELTA_FRACTION", 0.5),
+                doubleProp(config, "SCREENSHOT_DUPLICATE_TILE_FRACTION", 0.005));
+        freeImages = new ArrayBlockingQueue<>(encoderThreads + 1);
+        for (int i = 0; i < encoderThreads + 1; i++) {
+            freeImages.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "screenshot-capture"));
+        AtomicInteger n = new AtomicInteger();
+        encoders = Executors.newFixedThreadPool(encoderThreads, r -> daemon(r, "screenshot-encoder-" + n.incrementAndGet()));
+        scheduler.scheduleWithFixedDelay(this::captureQuietly, intervalMillis / 2, intervalMillis, TimeUnit.MILLISECONDS);
+        RUNNING.add(this);
+    }
+
+    /**
+     * Starts capturing for this attempt, or returns null when capture is
+     * disabled or impossible here (headless, no screen access).
+     */
+    public static ScreenshotService start(int studentId, int examId) {
+        try {
+            Properties config = DBConnection.getConfig();
+            if (!Boolean.parseBoolean(config.getProperty("SCREENSHOT_ENABLED", "true"))) return null;
+            if (GraphicsEnvironment.isHeadless()) return null;
+            return new ScreenshotService(studentId, examId, config);
+        } catch (AWTException | IOException | SecurityException e) {
+            System.err.println("Screenshot capture unavailable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    }
+
+    private void captureQuietly() {
+        try {
+            capture();
+            if (pendingRowCount.get() >= METADATA_BATCH_SIZE
+                    || System.currentTimeMillis() - lastMetadataFlush >= METADATA_FLUSH_INTERVAL_MS) {
+                flushMetadata();
+            }
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            e.printStackTrace();
+        }
+    }
+
+    private void capture() {
+        if (keyframeFailed) {
+            keyframeFailed = false;
+            differ.requestKeyframe();
+        }
+        BufferedImage target = freeImages.poll();
+        if (target == null) {
+            skipped.incrementAndGet();
+            return;
+        }
+        long start = System.nanoTime();
+        long capturedAt = System.currentTimeMillis();
+        BufferedImage shot = robot.createScreenCapture(screen);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(shot, 0, 0, target.getWidth(), target.getHeight(), null);
+        } finally {
+            g.dispose();
+        }
+        shot.flush();
+        FrameDiffer.Result frame = differ.analyze(((DataBufferInt) target.getRaster().getDataBuffer()).getData());
+        captureNanos.addAndGet(System.nanoTime() - start);
+        captured.incrementAndGet();
+
+        switch (frame.kind) {
+            case DUPLICATE:
+                // Nothing new to store; the timeline row points at the last stored frame
+                freeImages.offer(target);
+                duplicates.incrementAndGet();
+                lastStoredPath.thenAccept(path -> queueRow(path, frame, capturedAt));
+                break;
+            case KEYFRAME:
+                CompletableFuture<String> key = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return storeJpeg(target);
+                    } finally {
+                        freeImages.offer(target);
+                    }
+                }, encoders);
+                key.whenComplete((path, error) -> {
+                    if (error != null) keyframeFailed = true;
+                });
+                keyframePath = key;
+                lastStoredPath = key;
+                key.thenAccept(path -> queueRow(path, frame, capturedAt)).exceptionally(this::storeFailed);
+                break;
+            default:
+                CompletableFuture<byte[]> mosaic = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        BufferedImage tiles = ScreenshotDelta.buildMosaic(target, frame.changedTiles,
+                                differ.getTilesX(), FrameDiffer.TILE_SIZE);
+                        Encoder enc = encoder.get();
+                        return Arrays.copyOf(enc.encode(tiles, quality), enc.size());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        freeImages.offer(target);
+                    }
+                }, encoders);
+                int width = target.getWidth();
+                int height = target.getHeight();
+                CompletableFuture<String> delta = mosaic.thenCombine(keyframePath, (jpeg, keyPath) -> {
+                    try {
+                        byte[] packed = ScreenshotDelta.pack(width, height, FrameDiffer.TILE_SIZE, keyPath,
+                                frame.changedTiles, jpeg, jpeg.length);
+                        return store.put(packed, packed.length, ScreenshotDelta.EXTENSION);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                lastStoredPath = delta;
+                delta.thenAccept(path -> queueRow(path, frame, capturedAt)).exceptionally(this::storeFailed);
+                break;
+        }
+    }
+
+    private String storeJpeg(BufferedImage image) {
+        long start = System.nanoTime();
+        try {
+            Encoder enc = encoder.get();
+            byte[] jpeg = enc.encode(image, quality);
+            String path = store.put(jpeg, enc.size(), "jpg");
+            encodeNanos.addAndGet(System.nanoTime() - start);
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Void storeFailed(Throwable error) {
+        failed.incrementAndGet();
+        System.err.println("Screenshot store failed: " + error.getMessage());
+        return null;
+    }
+
+    private void queueRow(String path, FrameDiffer.Result frame, long capturedAt) {
+        if (frame.kind != FrameDiffer.Kind.DUPLICATE) stored.incrementAndGet();
+        if (pendingRowCount.get() >= MAX_PENDING_ROWS) return;
+        Screenshot row = new Screenshot();
+        row.setStudentId(studentId);
+        row.setExamId(examId);
+        row.setImagePath(path);
+        row.setCapturedAt(new Timestamp(capturedAt).toString());
+        row.setFrameType(frame.kind.name());
+        row.setChangeScore(frame.changeScore);
+        pendingRows.add(row);
+        pendingRowCount.incrementAndGet();
+    }
+
+    /** Inserts queued metadata rows in one batch; rows stay queued if the DB is unavailable. */
+    private synchronized void flushMetadata() {
+        lastMetadataFlush = System.currentTimeMillis();
+        List<Screenshot> batch = new ArrayList<>();
+        for (Iterator<Screenshot> it = pendingRows.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+        }
+        if (batch.isEmpty()) return;
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            conn.setAutoCommit(false);
+            for (Screenshot s : batch) {
+                ps.setInt(1, s.getStudentId());
+                ps.setInt(2, s.getExamId());
+                ps.setString(3, s.getImagePath());
+                ps.setTimestamp(4, Timestamp.valueOf(s.getCapturedAt()));
+                ps.setString(5, s.getFrameType());
+                ps.setDouble(6, s.getChangeScore());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+            for (int i = 0; i < batch.size(); i++) {
+                pendingRows.poll();
+            }
+            pendingRowCount.addAndGet(-batch.size());
+        } catch (SQLException | IOException e) {
+            System.err.println("Screenshot metadata flush failed, will retry: " + e.getMessage());
+        }
+    }
+
+    public Stats getStats() {
+        long n = captured.get();
+        long s = stored.get();
+        return new Stats(n, skipped.get(), s, duplicates.get(), failed.get(), pendingRowCount.get(),
+                n == 0 ? 0 : captureNanos.get() / n / 1_000_000.0,
+                s == 0 ? 0 : encodeNanos.get() / s / 1_000_000.0);
+    }
+
+    /** Stops capturing, lets in-flight encodes finish and writes the remaining metadata. */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            encoders.shutdown();
+            encoders.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushMetadata();
+        RUNNING.remove(this);
+    }
+
+    /** Immutable snapshot of capture counters and average per-shot costs. */
+    public static class Stats {
+        public final long captured;
+        public final long skipped;
+        public final long stored;
+        public final long duplicates;
+        public final long failed;
+        public final int pendingRows;
+        public final double avgCaptureMillis;
+        public final double avgEncodeMillis;
+
+        Stats(long captured, long skipped, long stored, long duplicates, long failed, int pendingRows,
+              double avgCaptureMillis, double avgEncodeMillis) {
+            this.captured = captured;
+            this.skipped = skipped;
+            this.stored = stored;
+            this.duplicates = duplicates;
+            this.failed = failed;
+            this.pendingRows = pendingRows;
+            this.avgCaptureMillis = avgCaptureMillis;
+            this.avgEncodeMillis = avgEncodeMillis;
+        }
+    }
+
+    /** Per-thread JPEG writer and output buffer, reused across captures. */
+    private static class Encoder {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        final ImageWriteParam param = writer.getDefaultWriteParam();
+        final Buffer out = new Buffer();
+
+        byte[] encode(BufferedImage image, float quality) throws IOException {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            out.reset();
+            try (MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.setOutput(null);
+            }
+            return out.array();
+        }
+
+        int size() {
+            return out.size();
+        }
+    }
+
+    /** ByteArrayOutputStream that exposes its backing array instead of copying it. */
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(256 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private static int intProp(Properties props, String key, int def) {
+        try {
+            return Integer.parseInt(props.getProperty(key, String.valueOf(def)).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static double doubleProp(Properties props, String key, double def) {
+        try {
+            return Double.parseDouble(props.getProperty(key, String.valueOf(def)).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
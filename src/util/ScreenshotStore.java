@@ -0,0 +1,72 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content-addressed image store: each image is saved once under the SHA-256
+ * of its bytes (ab/cdef...jpg), so identical captures cost no extra disk and
+ * a path always identifies exactly one content.
+ */
+public class ScreenshotStore {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path root;
+
+    public ScreenshotStore(String directory) throws IOException {
+        this.root = Paths.get(directory);
+        Files.createDirectories(root);
+    }
+
+    /**
+     * Stores the bytes if this content is new and returns its path relative to
+     * the store root. Safe to call from several threads.
+     */
+    public String put(byte[] data, int length, String extension) throws IOException {
+        String hash = sha256Hex(data, length);
+        String relative = hash.substring(0, 2) + "/" + hash.substring(2) + "." + extension;
+        Path target = root.resolve(relative);
+        if (Files.exists(target)) return relative;
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), hash.substring(2, 10), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                out.write(data, 0, length);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return relative;
+    }
+
+    public boolean contains(String relativePath) {
+        return Files.exists(root.resolve(relativePath));
+    }
+
+    public Path resolve(String relativePath) {
+        return root.resolve(relativePath);
+    }
+
+    private static String sha256Hex(byte[] data, int length) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(data, 0, length);
+            byte[] digest = md.digest();
+            char[] out = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                out[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                out[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(out);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
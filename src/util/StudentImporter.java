@@ -0,0 +1,329 @@
+package util;
+
+import db.DBConnection;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Creates student accounts from a CSV file with a header row naming at least
+ * username and password (full_name and email are optional, any order).
+ *
+ * The file is read one record at a time and handled in chunks: duplicate
+ * usernames (already in the database, or earlier in the file) are rejected
+ * before anything is written, the chunk's passwords are hashed in parallel on
+ * the common ForkJoinPool, and the rows go in as one batched INSERT (rewritten
+ * to multi-row statements by the driver) in one transaction per chunk. If a
+ * chunk still fails, it is rolled back and retried row by row so only the bad
+ * rows are lost. Rejected rows are listed with their line number and reason
+ * in an error file beside the input.
+ */
+public class StudentImporter {
+    private static final int CHUNK_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_USERNAME = 50;
+    private static final int MAX_NAME = 100;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO users (username, password_hash, role, full_name, email) VALUES (?, ?, 'student', ?, ?)";
+
+    /** What an import did. */
+    public static final class Outcome {
+        public final int imported;
+        public final int rejected;
+        /** Null when every row was imported. */
+        public final Path errorFile;
+
+        Outcome(int imported, int rejected, Path errorFile) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errorFile = errorFile;
+        }
+    }
+
+    private static final class Row {
+        final long line;
+        final String username;
+        final String password;
+        final String fullName;
+        final String email;
+        String passwordHash;
+
+        Row(long line, String username, String password, String fullName, String email) {
+            this.line = line;
+            this.username = username;
+            this.password = password;
+            this.fullName = fullName;
+            this.email = email;
+        }
+    }
+
+    private final Path source;
+    private final Path errorFile;
+    private final Set<String> taken = new HashSet<>();
+    private Writer errors;
+    private int imported;
+    private int rejected;
+
+    public StudentImporter(Path source) {
+        this.source = source;
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.errorFile = source.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".errors.csv");
+    }
+
+    /**
+     * Runs the import on the calling thread. {@code progress} is told the
+     * number of records handled after every chunk; once {@code cancelled}
+     * turns true no further chunk is started (committed chunks stay) and a
+     * CancellationException is thrown.
+     */
+    public Outcome run(LongConsumer progress, BooleanSupplier cancelled) throws IOException, SQLException {
+        Files.deleteIfExists(errorFile);
+        try (BufferedReader in = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             Connection conn = DBConnection.getConnection()) {
+            CsvReader csv = new CsvReader(in);
+            String[] header = csv.next();
+            if (header == null) throw new IOException("The file is empty.");
+            int username = column(header, "username");
+            int password = column(header, "password");
+            int fullName = column(header, "full_name");
+            int email = column(header, "email");
+            if (username < 0 || password < 0) {
+                throw new IOException("The header row must name the columns username and password.");
+            }
+            loadUsernames(conn);
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+                long records = 0;
+                String[] fields;
+                while (true) {
+                    fields = csv.next();
+                    if (fields != null) {
+                        records++;
+                        Row row = validate(csv.line(), fields, username, password, fullName, email);
+                        if (row != null) chunk.add(row);
+                    }
+                    if (chunk.size() == CHUNK_SIZE || (fields == null && !chunk.isEmpty())) {
+                        if (cancelled.getAsBoolean()) throw new CancellationException("Import cancelled");
+                        write(conn, ps, chunk);
+                        chunk.clear();
+                        progress.accept(records);
+                    }
+                    if (fields == null) break;
+                }
+                progress.accept(records);
+            } catch (SQLException | IOException | RuntimeException e) {
+                // Do not let restoring auto-commit commit half a chunk
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } finally {
+            if (errors != null) errors.close();
+        }
+        return new Outcome(imported, rejected, rejected > 0 ? errorFile : null);
+    }
+
+    private static int column(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            String h = header[i].replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT); // Excel writes a BOM
+            if (h.equals(name)) return i;
+        }
+        return -1;
+    }
+
+    private static String field(String[] fields, int index) {
+        if (index < 0 || index >= fields.length || fields[index] == null) return null;
+        String value = fields[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /** Every existing username, lower-cased, as MySQL's default collation compares them. */
+    private void loadUsernames(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT username FROM users",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) taken.add(rs.getString(1).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private Row validate(long line, String[] fields, int usernameCol, int passwordCol, int fullNameCol,
+                         int emailCol) throws IOException {
+        String username = field(fields, usernameCol);
+        String password = field(fields, passwordCol);
+        String fullName = field(fields, fullNameCol);
+        String email = field(fields, emailCol);
+        String problem = null;
+        if (username == null) {
+            problem = "Missing username";
+        } else if (password == null) {
+            problem = "Missing password";
+        } else if (username.length() > MAX_USERNAME) {
+            problem = "Username longer than " + MAX_USERNAME + " characters";
+        } else if ((fullName != null && fullName.length() > MAX_NAME) || (email != null && email.length() > MAX_NAME)) {
+            problem = "Full name or email longer than " + MAX_NAME + " characters";
+        } else if (!taken.add(username.toLowerCase(Locale.ROOT))) {
+            problem = "Username already exists";
+        }
+        if (problem != null) {
+            reject(line, username, problem);
+            return null;
+        }
+        return new Row(line, username, password, fullName, email);
+    }
+
+    private void write(Connection conn, PreparedStatement ps, List<Row> chunk) throws IOException, SQLException {
+        // SHA-256 per row is the only CPU work; spread it over the cores
+        Row[] rows = chunk.toArray(new Row[0]);
+        IntStream.range(0, rows.length).parallel()
+                .forEach(i -> rows[i].passwordHash = PasswordUtils.hashPassword(rows[i].password));
+        try {
+            for (Row row : rows) {
+                bind(ps, row);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+            imported += rows.length;
+        } catch (BatchUpdateException e) {
+            // Someone else inserted one of these names meanwhile, or a row broke a constraint
+            ps.clearBatch();
+            conn.rollback();
+            for (Row row : rows) {
+                try {
+                    bind(ps, row);
+                    ps.executeUpdate();
+                    conn.commit();
+                    imported++;
+                } catch (SQLException rowError) {
+                    conn.rollback();
+                    reject(row.line, row.username, rowError.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Row row) throws SQLException {
+        ps.setString(1, row.username);
+        ps.setString(2, row.passwordHash);
+        ps.setString(3, row.fullName);
+        ps.setString(4, row.email);
+    }
+
+    private void reject(long line, String username, String reason) throws IOException {
+        if (errors == null) {
+            errors = new BufferedWriter(Files.newBufferedWriter(errorFile, StandardCharsets.UTF_8), BUFFER_SIZE);
+            TableExporter.writeCsvRow(errors, new String[] {"line", "username", "error"});
+        }
+        TableExporter.writeCsvRow(errors, new String[] {String.valueOf(line), username, reason});
+        rejected++;
+    }
+
+    /** RFC 4180 records, one at a time: quoted fields may hold commas, doubled quotes and line breaks. */
+    static final class CsvReader {
+        private final Reader in;
+        private final StringBuilder field = new StringBuilder();
+        private long line = 1;
+        private long start = 1;
+        private int peeked = -2;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /** The line the record last returned by next() started on. */
+        long line() {
+            return start;
+        }
+
+        /** The next record, or null at end of input; blank lines are skipped. */
+        String[] next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean any = false;
+            start = line;
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    if (!any && fields.isEmpty()) return null;
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') line++;
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                    any = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    any = true;
+                } else if (c == '\r' || c == '\n') {
+                    if (c == '\r' && peek() == '\n') read();
+                    line++;
+                    if (!any && fields.isEmpty() && field.length() == 0) {
+                        start = line;
+                        continue;
+                    }
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                } else {
+                    field.append((char) c);
+                    any = true;
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) peeked = in.read();
+            return peeked;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package util;
+
+import db.DBConnection;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streaming risk scoring over proctoring events, live or replayed from the
+ * database. Every event adds a small weight to the candidate's score, and the
+ * windowed rules add more:
+ *   - FOCUS_BURST: FOCUS_BURST_COUNT window switches within FOCUS_BURST_WINDOW_MS
+ *   - IDLE_THEN_BURST: an inactivity warning followed, within IDLE_BURST_GAP_MS,
+ *     by ANSWER_BURST_COUNT answers inside ANSWER_BURST_WINDOW_MS
+ * The score halves every SCORE_HALF_LIFE_MS of event time, so old incidents
+ * fade; the peak is kept for after-the-fact review.
+ *
+ * State per candidate is a few primitives plus two fixed-size rings of
+ * timestamps, stored column-wise in flat arrays and located through an
+ * open-addressing table keyed by (exam, student), so the per-event path does
+ * not allocate. Events must arrive in time order per candidate. Not thread-safe;
+ * feed it from one thread.
+ */
+public final class SuspicionEngine {
+    public static final int WINDOW_SWITCH = 1;
+    public static final int INACTIVITY = 2;
+    public static final int ANSWER = 3;
+    public static final int TIME_UP = 4;
+
+    public static final int RULE_FOCUS_BURST = 1;
+    public static final int RULE_IDLE_THEN_BURST = 2;
+
+    static final int FOCUS_BURST_COUNT = 3;
+    static final long FOCUS_BURST_WINDOW_MS = 5 * 60_000L;
+    static final int ANSWER_BURST_COUNT = 8;
+    static final long ANSWER_BURST_WINDOW_MS = 60_000L;
+    static final long IDLE_BURST_GAP_MS = 3 * 60_000L;
+    static final long SCORE_HALF_LIFE_MS = 10 * 60_000L;
+
+    private static final double WINDOW_SWITCH_WEIGHT = 4;
+    private static final double INACTIVITY_WEIGHT = 6;
+    private static final double FOCUS_BURST_WEIGHT = 25;
+    private static final double IDLE_BURST_WEIGHT = 35;
+    public static final double FLAG_THRESHOLD = 40;
+
+    private static final double DECAY_PER_MS = Math.log(2) / SCORE_HALF_LIFE_MS;
+
+    // Open-addressing index from packed (exam, student) key to candidate slot
+    private long[] keys = new long[64];
+    private int[] slots = new int[64];
+    private int size = 0;
+
+    // Candidate state, one entry (or ring) per slot
+    private int[] examIds = new int[16];
+    private int[] studentIds = new int[16];
+    private double[] score = new double[16];
+    private double[] peak = new double[16];
+    private long[] lastTime = new long[16];
+    private long[] lastIdle = new long[16];
+    private int[] focusLosses = new int[16];
+    private int[] idleWarnings = new int[16];
+    private int[] answers = new int[16];
+    private int[] rules = new int[16]; // RULE_* bits that have fired
+    private long[] focusRing = new long[16 * FOCUS_BURST_COUNT];
+    private int[] focusHead = new int[16];
+    private long[] answerRing = new long[16 * ANSWER_BURST_COUNT];
+    private int[] answerHead = new int[16];
+
+    /** A candidate's standing at the time it was read; immutable. */
+    public static final class Score {
+        public final int examId;
+        public final int studentId;
+        public final double score;
+        public final double peak;
+        public final int focusLosses;
+        public final int idleWarnings;
+        public final int answers;
+        public final int rules;
+
+        Score(int examId, int studentId, double score, double peak, int focusLosses, int idleWarnings, int answers,
+              int rules) {
+            this.examId = examId;
+            this.studentId = studentId;
+            this.score = score;
+            this.peak = peak;
+            this.focusLosses = focusLosses;
+            this.idleWarnings = idleWarnings;
+            this.answers = answers;
+            this.rules = rules;
+        }
+
+        public boolean isFlagged() {
+            return peak >= FLAG_THRESHOLD;
+        }
+
+        /** Human-readable list of the rules that fired. */
+        public String reasons() {
+            List<String> reasons = new ArrayList<>();
+            if ((rules & RULE_FOCUS_BURST) != 0) {
+                reasons.add(FOCUS_BURST_COUNT + "+ window switches within " + FOCUS_BURST_WINDOW_MS / 60_000 + " min");
+            }
+            if ((rules & RULE_IDLE_THEN_BURST) != 0) reasons.add("answer burst after inactivity");
+            return String.join("; ", reasons);
+        }
+    }
+
+    /** Engine event for an activity_log event type, or 0 if it does not affect the score. */
+    public static int eventFor(String activityType) {
+        if (activityType == null) return 0;
+        switch (activityType) {
+            case "WINDOW_SWITCH": return WINDOW_SWITCH;
+            case "INACTIVITY": return INACTIVITY;
+            case "ANSWER": return ANSWER;
+            case "TIME_UP": return TIME_UP;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Replays stored events through a fresh engine: the scored activity_log
+     * events merged in time order with answer times from student_answers
+     * (the latest change per question, which is what is kept). Null filters
+     * mean all exams or all students. Not for the EDT.
+     */
+    public static SuspicionEngine replay(Integer examId, Integer studentId, BooleanSupplier cancelled)
+            throws SQLException, IOException {
+        StringBuilder filter = new StringBuilder();
+        List<Integer> params = new ArrayList<>();
+        if (examId != null) {
+            filter.append(" AND exam_id = ?");
+            params.add(examId);
+        }
+        if (studentId != null) {
+            filter.append(" AND student_id = ?");
+            params.add(studentId);
+        }
+        String sql = "SELECT exam_id, student_id, event_type, event_time FROM activity_log "
+                   + "WHERE event_type IN ('WINDOW_SWITCH', 'INACTIVITY', 'TIME_UP')" + filter
+                   + " UNION ALL SELECT exam_id, student_id, 'ANSWER', answered_at FROM student_answers WHERE 1=1" + filter
+                   + " ORDER BY event_time";
+        SuspicionEngine engine = new SuspicionEngine();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Stream rows instead of buffering the whole log
+            for (int i = 0; i < params.size() * 2; i++) ps.setInt(i + 1, params.get(i % params.size()));
+            try (ResultSet rs = ps.executeQuery()) {
+                int rows = 0;
+                while (rs.next()) {
+                    if ((++rows & 0xFFF) == 0 && cancelled.getAsBoolean()) {
+                        ps.cancel();
+                        throw new CancellationException();
+                    }
+                    engine.accept(rs.getInt(1), rs.getInt(2), eventFor(rs.getString(3)), rs.getTimestamp(4).getTime());
+                }
+            }
+        }
+        return engine;
+    }
+
+    /** Applies one event; returns the candidate's score after it. */
+    public double accept(int examId, int studentId, int event, long time) {
+        int s = slot(examId, studentId);
+        double current = score[s];
+        long dt = time - lastTime[s];
+        if (dt > 0 && current > 0) current *= Math.exp(-dt * DECAY_PER_MS);
+        if (dt > 0) lastTime[s] = time;
+
+        switch (event) {
+            case WINDOW_SWITCH: {
+                focusLosses[s]++;
+                current += WINDOW_SWITCH_WEIGHT;
+                int base = s * FOCUS_BURST_COUNT;
+                int head = focusHead[s];
+                // The slot after head holds the switch FOCUS_BURST_COUNT-1 switches back, i.e. the first of
+                // the FOCUS_BURST_COUNT switches the ring holds once this one is written at head
+                long oldest = focusRing[base + (head + 1) % FOCUS_BURST_COUNT];
+                focusRing[base + head] = time;
+                focusHead[s] = (head + 1) % FOCUS_BURST_COUNT;
+                if (oldest != 0 && time - oldest <= FOCUS_BURST_WINDOW_MS) {
+                    current += FOCUS_BURST_WEIGHT;
+                    rules[s] |= RULE_FOCUS_BURST;
+                    Arrays.fill(focusRing, base, base + FOCUS_BURST_COUNT, 0); // Next burst needs fresh switches
+                }
+                break;
+            }
+            case INACTIVITY:
+                idleWarnings[s]++;
+                current += INACTIVITY_WEIGHT;
+                lastIdle[s] = time;
+                break;
+            case ANSWER: {
+                answers[s]++;
+                int base = s * ANSWER_BURST_COUNT;
+                int head = answerHead[s];
+                answerRing[base + head] = time;
+                answerHead[s] = (head + 1) % ANSWER_BURST_COUNT;
+                long oldest = answerRing[base + answerHead[s]]; // ANSWER_BURST_COUNT answers ago, including this one
+                long idle = lastIdle[s];
+                if (idle != 0 && oldest != 0 && oldest >= idle && oldest - idle <= IDLE_BURST_GAP_MS
+                        && time - oldest <= ANSWER_BURST_WINDOW_MS) {
+                    current += IDLE_BURST_WEIGHT;
+                    rules[s] |= RULE_IDLE_THEN_BURST;
+                    lastIdle[s] = 0; // One burst per inactivity warning
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        score[s] = current;
+        if (current > peak[s]) peak[s] = current;
+        return current;
+    }
+
+    /** Standing of one candidate, or null if no event has been seen for them. */
+    public Score score(int examId, int studentId) {
+        int s = find(examId, studentId);
+        return s < 0 ? null : snapshot(s);
+    }
+
+    /** Every candidate seen so far, highest peak first. */
+    public List<Score> scores() {
+        List<Score> result = new ArrayList<>(size);
+        for (int s = 0; s < size; s++) result.add(snapshot(s));
+        result.sort((a, b) -> Double.compare(b.peak, a.peak));
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Score snapshot(int s) {
+        return new Score(examIds[s], studentIds[s], score[s], peak[s], focusLosses[s], idleWarnings[s], answers[s],
+                rules[s]);
+    }
+
+    private static long key(int examId, int studentId) {
+        return ((long) examId << 32) | (studentId & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & mask;
+    }
+
+    private int find(int examId, int studentId) {
+        long k = key(examId, studentId);
+        int mask = keys.length - 1;
+        for (int i = hash(k, mask); ; i = (i + 1) & mask) {
+            int slot = slots[i] - 1; // 0 marks an empty bucket
+            if (slot < 0) return -1;
+            if (keys[i] == k) return slot;
+        }
+    }
+
+    private int slot(int examId, int studentId) {
+        long k = key(examId, studentId);
+        int mask = keys.length - 1;
+        int i = hash(k, mask);
+        for (; slots[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == k) return slots[i] - 1;
+        }
+        int s = size++;
+        if (s == examIds.length) growState();
+        examIds[s] = examId;
+        studentIds[s] = studentId;
+        keys[i] = k;
+        slots[i] = s + 1;
+        if (size * 2 > keys.length) rehash();
+        return s;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[oldKeys.length * 2];
+        slots = new int[oldSlots.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldSlots[j] == 0) continue;
+            int i = hash(oldKeys[j], mask);
+            while (slots[i] != 0) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            slots[i] = oldSlots[j];
+        }
+    }
+
+    private void growState() {
+        int n = examIds.length * 2;
+        examIds = Arrays.copyOf(examIds, n);
+        studentIds = Arrays.copyOf(studentIds, n);
+        score = Arrays.copyOf(score, n);
+        peak = Arrays.copyOf(peak, n);
+        lastTime = Arrays.copyOf(lastTime, n);
+        lastIdle = Arrays.copyOf(lastIdle, n);
+        focusLosses = Arrays.copyOf(focusLosses, n);
+        idleWarnings = Arrays.copyOf(idleWarnings, n);
+        answers = Arrays.copyOf(answers, n);
+        rules = Arrays.copyOf(rules, n);
+        focusRing = Arrays.copyOf(focusRing, n * FOCUS_BURST_COUNT);
+        focusHead = Arrays.copyOf(focusHead, n);
+        answerRing = Arrays.copyOf(answerRing, n * ANSWER_BURST_COUNT);
+        answerHead = Arrays.copyOf(answerHead, n);
+    }
+}
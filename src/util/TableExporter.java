@@ -0,0 +1,213 @@
+package util;
+
+import db.DBConnection;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a query straight to a CSV (RFC 4180) or JSON file, optionally
+ * gzipped. Rows come off a forward-only cursor one at a time and go out
+ * through a buffered writer, so memory stays flat however many rows there
+ * are. The file is written beside the target and moved into place at the
+ * end; a failed or cancelled export leaves nothing behind.
+ */
+public class TableExporter {
+    public enum Format { CSV, JSON }
+
+    // Connector/J streams rows instead of buffering the whole result only for this fetch size
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int PROGRESS_INTERVAL = 5000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String[] headers;
+    private final String sql;
+    private final Object[] params;
+
+    /** @param headers one name per selected column, used as the CSV header row and JSON keys */
+    public TableExporter(String[] headers, String sql, Object... params) {
+        this.headers = headers;
+        this.sql = sql;
+        this.params = params;
+    }
+
+    /** Picks CSV or JSON, and gzip, from a name like results.csv or logs.json.gz. */
+    public static Format formatFor(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+        return name.endsWith(".json") ? Format.JSON : Format.CSV;
+    }
+
+    public static boolean gzipFor(String fileName) {
+        return fileName.toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * Runs the export on the calling thread and returns the number of rows
+     * written. {@code progress} is told the row count every few thousand rows;
+     * once {@code cancelled} turns true the query is killed and a
+     * CancellationException is thrown.
+     */
+    public long export(Path target, Format format, boolean gzip, LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException, SQLException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, ".export", ".tmp");
+        try {
+            long rows;
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE);
+                 OutputStream out = gzip ? new GZIPOutputStream(file, BUFFER_SIZE) : file;
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                rows = stream(writer, format, progress, cancelled);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            return rows;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private long stream(Writer w, Format format, LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException, SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(STREAMING_FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                boolean[] numeric = numericColumns(rs.getMetaData());
+                if (format == Format.CSV) {
+                    writeCsvRow(w, headers);
+                } else {
+                    w.write('[');
+                }
+                String[] row = new String[headers.length];
+                long count = 0;
+                while (rs.next()) {
+                    if (cancelled.getAsBoolean()) {
+                        // Closing a streaming result set reads it to the end; kill the query instead
+                        ps.cancel();
+                        throw new CancellationException("Export cancelled");
+                    }
+                    for (int c = 0; c < row.length; c++) {
+                        row[c] = rs.getString(c + 1);
+                    }
+                    if (format == Format.CSV) {
+                        writeCsvRow(w, row);
+                    } else {
+                        writeJsonObject(w, row, numeric, count > 0);
+                    }
+                    if (++count % PROGRESS_INTERVAL == 0) progress.accept(count);
+                }
+                if (format == Format.JSON) w.write(count > 0 ? "\n]\n" : "]\n");
+                progress.accept(count);
+                return count;
+            }
+        }
+    }
+
+    private boolean[] numericColumns(ResultSetMetaData meta) throws SQLException {
+        if (meta.getColumnCount() != headers.length) {
+            throw new SQLException("Export has " + headers.length + " headers but the query returns "
+                    + meta.getColumnCount() + " columns");
+        }
+        boolean[] numeric = new boolean[headers.length];
+        for (int c = 0; c < numeric.length; c++) {
+            switch (meta.getColumnType(c + 1)) {
+                case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+                case Types.FLOAT: case Types.REAL: case Types.DOUBLE: case Types.DECIMAL: case Types.NUMERIC:
+                    numeric[c] = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return numeric;
+    }
+
+    /** Writes one CSV record; fields with commas, quotes or line breaks are quoted, quotes doubled. */
+    static void writeCsvRow(Writer w, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) w.write(',');
+            String f = fields[i];
+            if (f == null) continue;
+            boolean quote = false;
+            for (int k = 0; k < f.length() && !quote; k++) {
+                char ch = f.charAt(k);
+                quote = ch == ',' || ch == '"' || ch == '\r' || ch == '\n';
+            }
+            if (!quote) {
+                w.write(f);
+                continue;
+            }
+            w.write('"');
+            int start = 0;
+            for (int k = 0; k < f.length(); k++) {
+                if (f.charAt(k) == '"') {
+                    w.write(f, start, k + 1 - start);
+                    w.write('"');
+                    start = k + 1;
+                }
+            }
+            w.write(f, start, f.length() - start);
+            w.write('"');
+        }
+        w.write("\r\n");
+    }
+
+    private void writeJsonObject(Writer w, String[] row, boolean[] numeric, boolean comma) throws IOException {
+        w.write(comma ? ",\n{" : "\n{");
+        for (int c = 0; c < row.length; c++) {
+            if (c > 0) w.write(',');
+            writeJsonString(w, headers[c]);
+            w.write(':');
+            if (row[c] == null) {
+                w.write("null");
+            } else if (numeric[c]) {
+                w.write(row[c]);
+            } else {
+                writeJsonString(w, row[c]);
+            }
+        }
+        w.write('}');
+    }
+
+    static void writeJsonString(Writer w, String s) throws IOException {
+        w.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\') continue;
+            w.write(s, start, i - start);
+            switch (ch) {
+                case '"': w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default: w.write(String.format("\\u%04x", (int) ch)); break;
+            }
+            start = i + 1;
+        }
+        w.write(s, start, s.length() - start);
+        w.write('"');
+    }
+}